@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.benchmarks;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.jboss.tools.lsp.testlang.DocumentManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link DocumentManager#didChange(String, List)} with edits at random
+ * positions. The edits keep the size of the document, so the document is the
+ * same in every iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DidChangeBenchmark {
+
+	private static final int EDITS = 1024;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int lines;
+
+	private DocumentManager documentManager;
+	private List<List<TextDocumentContentChangeEvent>> singleCharEdits;
+	private List<List<TextDocumentContentChangeEvent>> multiLineEdits;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(17);
+		singleCharEdits = new ArrayList<>(EDITS);
+		multiLineEdits = new ArrayList<>(EDITS);
+		for (int i = 0; i < EDITS; i++) {
+			// type over the first character of a line, every line has one
+			int line = random.nextInt(lines);
+			singleCharEdits.add(change(line, 0, line, 1, i % 2 == 0 ? "x" : "y"));
+
+			// replace three lines by three other lines
+			int first = random.nextInt(lines - 3);
+			StringBuilder text = new StringBuilder();
+			for (int j = 0; j < 3; j++) {
+				Documents.appendLine(text, random);
+				text.append('\n');
+			}
+			multiLineEdits.add(change(first, 0, first + 3, 0, text.toString()));
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void open() throws IOException, URISyntaxException {
+		documentManager = new DocumentManager();
+		documentManager.didOpen(Documents.URI, Documents.generate(lines, 42));
+	}
+
+	@Benchmark
+	public void singleCharEdit() {
+		documentManager.didChange(Documents.URI, singleCharEdits.get(next++ % EDITS));
+	}
+
+	@Benchmark
+	public void multiLineEdit() {
+		documentManager.didChange(Documents.URI, multiLineEdits.get(next++ % EDITS));
+	}
+
+	private static List<TextDocumentContentChangeEvent> change(int startLine, int startColumn, int endLine,
+			int endColumn, String text) {
+		TextDocumentContentChangeEvent change = new TextDocumentContentChangeEvent();
+		change.setRange(new Range(new Position(startLine, startColumn), new Position(endLine, endColumn)));
+		change.setText(text);
+		return Collections.singletonList(change);
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.benchmarks;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.DocumentSymbolParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.jboss.tools.lsp.testlang.DocumentManager;
+import org.jboss.tools.lsp.testlang.TestLanguageServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>textDocument/documentSymbol</code> on an open document, including the
+ * hand-off to the request pool: repeated on the same version, which is
+ * answered from the cache, and after typing a character, as when an editor
+ * refreshes its outline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentSymbolBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int lines;
+
+	private TestLanguageServer server;
+	private DocumentManager documentManager;
+	private DocumentSymbolParams params;
+	private int next;
+
+	@Setup
+	public void setUp() throws IOException, URISyntaxException {
+		documentManager = new DocumentManager();
+		documentManager.didOpen(Documents.URI, Documents.generate(lines, 42));
+		server = Documents.newServer(documentManager);
+		params = new DocumentSymbolParams(new TextDocumentIdentifier(Documents.URI));
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.shutdown();
+	}
+
+	@Benchmark
+	public List<? extends SymbolInformation> documentSymbol() throws InterruptedException, ExecutionException {
+		return server.getTextDocumentService().documentSymbol(params).get();
+	}
+
+	@Benchmark
+	public List<? extends SymbolInformation> documentSymbolAfterChange()
+			throws InterruptedException, ExecutionException {
+		// type over the first character of a line, every line has one
+		int line = Math.floorMod(next++ * 7919, lines);
+		TextDocumentContentChangeEvent change = new TextDocumentContentChangeEvent();
+		change.setRange(new Range(new Position(line, 0), new Position(line, 1)));
+		change.setText(next % 2 == 0 ? "x" : "y");
+		documentManager.didChange(Documents.URI, Collections.singletonList(change));
+		return server.getTextDocumentService().documentSymbol(params).get();
+	}
+}
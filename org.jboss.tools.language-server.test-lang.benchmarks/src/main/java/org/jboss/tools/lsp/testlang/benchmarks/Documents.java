@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.benchmarks;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+import org.jboss.tools.lsp.ext.ExtendedLanguageClient;
+import org.jboss.tools.lsp.testlang.DocumentManager;
+import org.jboss.tools.lsp.testlang.TestLanguageServer;
+
+/**
+ * Generates the documents and workspaces the benchmarks run on. The content
+ * only depends on the seed, so runs are comparable.
+ */
+final class Documents {
+
+	static final String URI = "file:///benchmark.test";
+
+	/** A word which occurs about once every 20 lines. */
+	static final String RARE_WORD = "needle";
+
+	private static final String[] WORDS = { "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing",
+			"elit", "sed", "do", "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna",
+			"aliqua" };
+
+	private static final String[] COMMANDS = { "textDocument/badWord:Error:dolor:no dolor",
+			"textDocument/badWord:Warning:tempor:no tempor", "textDocument/snippet:lorem:lorem ipsum ${1:dolor}",
+			"window/showMessageNotification:Info:benchmark" };
+
+	private Documents() {
+	}
+
+	/**
+	 * @return a document of the given number of lines of 1 to 12 words
+	 */
+	static String generate(int lines, long seed) {
+		return generate(lines, seed, 0);
+	}
+
+	/**
+	 * @param commandEvery
+	 *            a command line is generated every that many lines, none if 0
+	 */
+	static String generate(int lines, long seed, int commandEvery) {
+		Random random = new Random(seed);
+		StringBuilder text = new StringBuilder(lines * 40);
+		for (int line = 0; line < lines; line++) {
+			if (line > 0) {
+				text.append('\n');
+			}
+			if (commandEvery > 0 && line % commandEvery == 0) {
+				text.append(COMMANDS[random.nextInt(COMMANDS.length)]);
+				continue;
+			}
+			appendLine(text, random);
+		}
+		return text.toString();
+	}
+
+	static void appendLine(StringBuilder text, Random random) {
+		int words = 1 + random.nextInt(12);
+		for (int i = 0; i < words; i++) {
+			if (i > 0) {
+				text.append(' ');
+			}
+			text.append(random.nextInt(240) == 0 ? RARE_WORD : WORDS[random.nextInt(WORDS.length)]);
+		}
+	}
+
+	/**
+	 * @return a server with the given document manager, connected to a client
+	 *         which ignores all messages
+	 */
+	static TestLanguageServer newServer(DocumentManager documentManager) {
+		TestLanguageServer server = new TestLanguageServer(documentManager);
+		server.connect((ExtendedLanguageClient) Proxy.newProxyInstance(Documents.class.getClassLoader(),
+				new Class<?>[] { ExtendedLanguageClient.class }, (proxy, method, args) -> null));
+		return server;
+	}
+
+	static void delete(Path root) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.benchmarks;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.DidSaveTextDocumentParams;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.jboss.tools.lsp.testlang.DocumentManager;
+import org.jboss.tools.lsp.testlang.TestLanguageServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The commands executed on <code>textDocument/didSave</code>: matching the
+ * command lines, collecting snippets and computing the bad word diagnostics.
+ * The diagnostics are sent to a client which ignores them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-DTESTLS_DIAGNOSTICS_DELAY=0")
+public class ExecuteCommandsBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int lines;
+
+	/** a command line every that many lines */
+	@Param({ "50" })
+	public int commandEvery;
+
+	private TestLanguageServer server;
+	private DidSaveTextDocumentParams params;
+
+	@Setup
+	public void setUp() throws IOException, URISyntaxException {
+		DocumentManager documentManager = new DocumentManager();
+		documentManager.didOpen(Documents.URI, Documents.generate(lines, 42, commandEvery));
+		server = Documents.newServer(documentManager);
+		params = new DidSaveTextDocumentParams();
+		params.setTextDocument(new TextDocumentIdentifier(Documents.URI));
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.shutdown();
+	}
+
+	@Benchmark
+	public void didSave() {
+		server.getTextDocumentService().didSave(params);
+	}
+}
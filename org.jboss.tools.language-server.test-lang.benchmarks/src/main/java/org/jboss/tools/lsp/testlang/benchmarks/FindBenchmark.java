@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.benchmarks;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.Position;
+import org.jboss.tools.lsp.testlang.CancellationToken;
+import org.jboss.tools.lsp.testlang.DocumentManager;
+import org.jboss.tools.lsp.testlang.DocumentSnapshot;
+import org.jboss.tools.lsp.testlang.SearchLimits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The lookups behind highlight, references and definition:
+ * {@link DocumentManager#findInDocument} for a word answered from the word
+ * index, for text which has to be scanned for, with and without limits,
+ * and {@link DocumentManager#getWordAtPosition}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int lines;
+
+	private ForkJoinPool searchPool;
+	private DocumentManager documentManager;
+	private DocumentSnapshot snapshot;
+	private Position[] positions;
+	private int next;
+
+	@Setup
+	public void setUp() throws IOException, URISyntaxException {
+		searchPool = new ForkJoinPool();
+		documentManager = new DocumentManager();
+		documentManager.setSearchPool(searchPool);
+		documentManager.didOpen(Documents.URI, Documents.generate(lines, 42));
+		snapshot = documentManager.getSnapshot(Documents.URI);
+		Random random = new Random(17);
+		positions = new Position[1024];
+		for (int i = 0; i < positions.length; i++) {
+			int line = random.nextInt(lines);
+			positions[i] = new Position(line, random.nextInt(snapshot.getText().getLine(line).length()));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		searchPool.shutdownNow();
+	}
+
+	@Benchmark
+	public void findRareWord(Blackhole blackhole) {
+		documentManager.findInDocument(snapshot, Documents.RARE_WORD, (document, range, text) -> {
+			blackhole.consume(range);
+			return true;
+		});
+	}
+
+	@Benchmark
+	public void findFrequentWord(Blackhole blackhole) {
+		documentManager.findInDocument(snapshot, "dolor", (document, range, text) -> {
+			blackhole.consume(range);
+			return true;
+		});
+	}
+
+	@Benchmark
+	public void findText(Blackhole blackhole) {
+		// not a word, so the document is scanned
+		documentManager.findInDocument(snapshot, "sit amet", (document, range, text) -> {
+			blackhole.consume(range);
+			return true;
+		});
+	}
+
+	@Benchmark
+	public void findFirstText(Blackhole blackhole) {
+		// as for definition, the scan stops at the first occurrence
+		documentManager.findInDocument(snapshot, "sit amet", SearchLimits.FIRST, (document, range, text) -> {
+			blackhole.consume(range);
+			return true;
+		}, CancellationToken.NONE);
+	}
+
+	@Benchmark
+	public void highlightText(Blackhole blackhole) {
+		// as for highlight with TESTLS_HIGHLIGHT_WINDOW=200
+		Position position = positions[next++ & (positions.length - 1)];
+		documentManager.findInDocument(snapshot, "sit amet", SearchLimits.around(position.getLine(), 200, -1),
+				(document, range, text) -> {
+					blackhole.consume(range);
+					return true;
+				}, CancellationToken.NONE);
+	}
+
+	@Benchmark
+	public String getWordAtPosition() {
+		return documentManager.getWordAtPosition(snapshot, positions[next++ & (positions.length - 1)]);
+	}
+}
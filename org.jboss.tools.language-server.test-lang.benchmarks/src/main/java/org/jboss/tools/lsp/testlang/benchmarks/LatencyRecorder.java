@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.benchmarks;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the latencies of the requests and the number of notifications per
+ * LSP method. All samples are kept, the percentiles are read from the sorted
+ * samples when the report is printed.
+ */
+final class LatencyRecorder {
+
+	private static final class Samples {
+		long[] latencies = new long[1024];
+		int size;
+		long notifications;
+		long errors;
+
+		synchronized void add(long nanos) {
+			if (size == latencies.length) {
+				latencies = Arrays.copyOf(latencies, size * 2);
+			}
+			latencies[size++] = nanos;
+		}
+
+		synchronized void notification() {
+			notifications++;
+		}
+
+		synchronized void error() {
+			errors++;
+		}
+
+		synchronized long[] sorted() {
+			long[] result = Arrays.copyOf(latencies, size);
+			Arrays.sort(result);
+			return result;
+		}
+	}
+
+	private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+	private volatile boolean recording;
+
+	/**
+	 * Discards what has been recorded so far, e.g. during the warm-up, and
+	 * starts recording.
+	 */
+	void start() {
+		samples.clear();
+		recording = true;
+	}
+
+	void stop() {
+		recording = false;
+	}
+
+	/**
+	 * Records the latency of a request, from the time it was meant to be sent
+	 * to the time its response was received.
+	 */
+	void request(String method, long nanos) {
+		if (recording) {
+			get(method).add(nanos);
+		}
+	}
+
+	void notification(String method) {
+		if (recording) {
+			get(method).notification();
+		}
+	}
+
+	void error(String method) {
+		if (recording) {
+			get(method).error();
+		}
+	}
+
+	private Samples get(String method) {
+		return samples.computeIfAbsent(method, m -> new Samples());
+	}
+
+	/**
+	 * @param seconds
+	 *            the duration of the measurement
+	 */
+	String report(double seconds) {
+		StringBuilder result = new StringBuilder();
+		result.append(String.format("%-34s %9s %9s %9s %9s %9s %9s %7s%n", "method", "count", "ops/s", "p50 ms",
+				"p99 ms", "p999 ms", "max ms", "errors"));
+		long total = 0;
+		for (Map.Entry<String, Samples> entry : new TreeMap<>(samples).entrySet()) {
+			Samples method = entry.getValue();
+			long[] sorted = method.sorted();
+			long count = sorted.length + method.notifications;
+			total += count;
+			result.append(String.format("%-34s %9d %9.1f ", entry.getKey(), count, count / seconds));
+			if (sorted.length == 0) {
+				result.append(String.format("%9s %9s %9s %9s ", "-", "-", "-", "-"));
+			} else {
+				result.append(String.format("%9.3f %9.3f %9.3f %9.3f ", millis(percentile(sorted, 0.5)),
+						millis(percentile(sorted, 0.99)), millis(percentile(sorted, 0.999)),
+						millis(sorted[sorted.length - 1])));
+			}
+			result.append(String.format("%7d%n", method.errors));
+		}
+		result.append(String.format("%-34s %9d %9.1f%n", "total", total, total / seconds));
+		return result.toString();
+	}
+
+	static long percentile(long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	private static double millis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
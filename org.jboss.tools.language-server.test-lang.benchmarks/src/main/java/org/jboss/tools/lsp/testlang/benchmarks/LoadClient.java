@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.lsp4j.CodeActionContext;
+import org.eclipse.lsp4j.CodeActionParams;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.DidSaveTextDocumentParams;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.TextDocumentPositionParams;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.services.LanguageServer;
+import org.jboss.tools.lsp.ext.ExtendedLanguageClient;
+import org.jboss.tools.lsp.ext.PartialResultParams;
+import org.jboss.tools.lsp.ext.StatusReport;
+import org.jboss.tools.lsp.testlang.TestLanguageServer;
+import org.jboss.tools.lsp.testlang.benchmarks.Workload.Action;
+
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+/**
+ * A simulated editor connected to its own {@link TestLanguageServer} over a
+ * pair of Unix sockets, the same way as the editors (and the tests'
+ * <code>FakeTestLangClient</code>) do. It edits one document of the
+ * workspace: typing, moving the cursor, saving and asking for code actions.
+ * <p>
+ * Requests are sent without waiting for the previous responses. Their latency
+ * is measured from the time they were scheduled, so a server falling behind
+ * shows in the latencies instead of slowing the load down.
+ */
+final class LoadClient implements ExtendedLanguageClient {
+
+	private static final String HIGHLIGHT = "textDocument/documentHighlight";
+	private static final String CODE_ACTION = "textDocument/codeAction";
+	private static final String DID_CHANGE = "textDocument/didChange";
+	private static final String DID_SAVE = "textDocument/didSave";
+
+	private static final String TYPED = "abcdefghijklmnopqrstuvwxyz     ";
+
+	private final Path workspace;
+	private final Path document;
+	private final String uri;
+	private final LatencyRecorder recorder;
+	private final Workload workload;
+	private final int burst;
+	private final Random random;
+
+	private UnixSocketChannel fromServer;
+	private UnixSocketChannel toServer;
+	private LanguageServer server;
+
+	/** the length of each line of the document as seen by the client */
+	private int[] lineLengths;
+	private int version;
+	private int line;
+	private int column;
+	private int remainingKeystrokes;
+	private volatile List<Diagnostic> diagnostics = Collections.emptyList();
+
+	LoadClient(int id, Path workspace, LatencyRecorder recorder, Workload workload, int burst) {
+		this.workspace = workspace;
+		this.document = workspace.resolve("client" + id + ".test");
+		this.uri = document.toUri().toString();
+		this.recorder = recorder;
+		this.workload = workload;
+		this.burst = burst;
+		this.random = new Random(id);
+	}
+
+	/**
+	 * Starts a server in this VM and connects to it through two Unix sockets
+	 * created in the given directory.
+	 */
+	void connect(Path socketDirectory) throws IOException {
+		File fromServerAddress = socketDirectory.resolve(document.getFileName() + ".out").toFile();
+		File toServerAddress = socketDirectory.resolve(document.getFileName() + ".in").toFile();
+		try (UnixServerSocketChannel fromServerSocket = listen(fromServerAddress);
+				UnixServerSocketChannel toServerSocket = listen(toServerAddress)) {
+			// the server reads the socket locations from the system properties
+			synchronized (LoadClient.class) {
+				System.setProperty(TestLanguageServer.STDOUT_PIPE_NAME, fromServerAddress.getAbsolutePath());
+				System.setProperty(TestLanguageServer.STDIN_PIPE_NAME, toServerAddress.getAbsolutePath());
+				new TestLanguageServer().start();
+			}
+			fromServer = fromServerSocket.accept();
+			toServer = toServerSocket.accept();
+		}
+		Launcher<LanguageServer> launcher = Launcher.createLauncher(this, LanguageServer.class,
+				Channels.newInputStream(fromServer), Channels.newOutputStream(toServer),
+				Executors.newCachedThreadPool(), consumer -> consumer);
+		server = launcher.getRemoteProxy();
+		launcher.startListening();
+	}
+
+	private static UnixServerSocketChannel listen(File socketFile) throws IOException {
+		socketFile.delete();
+		UnixServerSocketChannel channel = UnixServerSocketChannel.open();
+		channel.socket().bind(new UnixSocketAddress(socketFile));
+		return channel;
+	}
+
+	/**
+	 * Initializes the server with the workspace and opens a generated document
+	 * of the given number of lines.
+	 */
+	void open(int lines, int commandEvery)
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		String text = Documents.generate(lines, random.nextLong(), commandEvery);
+		Files.write(document, text.getBytes(StandardCharsets.UTF_8));
+		String[] split = text.split("\n", -1);
+		lineLengths = new int[split.length];
+		for (int i = 0; i < split.length; i++) {
+			lineLengths[i] = split[i].length();
+		}
+
+		InitializeParams params = new InitializeParams();
+		params.setRootPath(workspace.toString());
+		server.initialize(params).get(30, TimeUnit.SECONDS);
+		server.getTextDocumentService()
+				.didOpen(new DidOpenTextDocumentParams(new TextDocumentItem(uri, "test", version, text)));
+	}
+
+	/**
+	 * Performs the next step of the workload.
+	 *
+	 * @param scheduled
+	 *            the {@link System#nanoTime()} at which the step was meant to
+	 *            start
+	 */
+	void step(long scheduled) {
+		if (remainingKeystrokes > 0) {
+			remainingKeystrokes--;
+			type(scheduled);
+			return;
+		}
+		Action action = workload.next(random);
+		switch (action) {
+		case TYPE:
+			remainingKeystrokes = burst - 1;
+			type(scheduled);
+			break;
+		case MOVE:
+			line = random.nextInt(lineLengths.length);
+			column = random.nextInt(lineLengths[line] + 1);
+			highlight(scheduled);
+			break;
+		case SAVE:
+			DidSaveTextDocumentParams params = new DidSaveTextDocumentParams();
+			params.setTextDocument(new TextDocumentIdentifier(uri));
+			server.getTextDocumentService().didSave(params);
+			recorder.notification(DID_SAVE);
+			break;
+		case CODE_ACTION:
+			codeAction(scheduled);
+			break;
+		}
+	}
+
+	private void type(long scheduled) {
+		char c = TYPED.charAt(random.nextInt(TYPED.length()));
+		TextDocumentContentChangeEvent change = new TextDocumentContentChangeEvent();
+		change.setRange(new Range(new Position(line, column), new Position(line, column)));
+		change.setText(String.valueOf(c));
+		VersionedTextDocumentIdentifier identifier = new VersionedTextDocumentIdentifier();
+		identifier.setUri(uri);
+		identifier.setVersion(++version);
+		DidChangeTextDocumentParams params = new DidChangeTextDocumentParams();
+		params.setTextDocument(identifier);
+		params.setContentChanges(Collections.singletonList(change));
+		server.getTextDocumentService().didChange(params);
+		recorder.notification(DID_CHANGE);
+		lineLengths[line]++;
+		column++;
+		highlight(scheduled);
+	}
+
+	private void highlight(long scheduled) {
+		TextDocumentPositionParams params = new TextDocumentPositionParams();
+		params.setTextDocument(new TextDocumentIdentifier(uri));
+		params.setPosition(new Position(line, column));
+		time(HIGHLIGHT, scheduled, server.getTextDocumentService().documentHighlight(params));
+	}
+
+	private void codeAction(long scheduled) {
+		// like an editor, ask for the fixes of a diagnostic if there is one
+		List<Diagnostic> current = diagnostics;
+		List<Diagnostic> context = current.isEmpty() ? Collections.emptyList()
+				: Collections.singletonList(current.get(random.nextInt(current.size())));
+		Range range = context.isEmpty() ? new Range(new Position(line, column), new Position(line, column))
+				: context.get(0).getRange();
+		CodeActionParams params = new CodeActionParams(new TextDocumentIdentifier(uri), range,
+				new CodeActionContext(context));
+		time(CODE_ACTION, scheduled, server.getTextDocumentService().codeAction(params));
+	}
+
+	private void time(String method, long scheduled, CompletableFuture<?> response) {
+		response.whenComplete((result, error) -> {
+			if (error != null) {
+				recorder.error(method);
+			} else {
+				recorder.request(method, System.nanoTime() - scheduled);
+			}
+		});
+	}
+
+	void close() {
+		try {
+			if (server != null) {
+				server.shutdown().get(10, TimeUnit.SECONDS);
+			}
+		} catch (InterruptedException | ExecutionException | TimeoutException e) {
+			// the server is stopped with the VM anyway
+		}
+		closeChannel(fromServer);
+		closeChannel(toServer);
+	}
+
+	private static void closeChannel(UnixSocketChannel channel) {
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+		} catch (IOException e) {
+			// ignore, the run is over
+		}
+	}
+
+	@Override
+	public void publishDiagnostics(PublishDiagnosticsParams params) {
+		if (uri.equals(params.getUri())) {
+			diagnostics = params.getDiagnostics();
+		}
+	}
+
+	@Override
+	public void telemetryEvent(Object object) {
+	}
+
+	@Override
+	public void showMessage(MessageParams messageParams) {
+	}
+
+	@Override
+	public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public void logMessage(MessageParams message) {
+	}
+
+	@Override
+	public void statusEvent(StatusReport status) {
+	}
+
+	@Override
+	public void partialResult(PartialResultParams params) {
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jboss.tools.lsp.testlang.TestLanguageServer;
+
+/**
+ * Drives test-lang servers over the Unix socket transport with simulated
+ * editors and reports the latency of each LSP method and the throughput.
+ * Each client runs against its own server, all in this VM.
+ * <p>
+ * Usage: <code>java -cp target/benchmarks.jar
+ * org.jboss.tools.lsp.testlang.benchmarks.LoadGenerator [key=value...]</code>
+ * with the keys:
+ * <ul>
+ * <li><code>clients</code>: the number of simulated editors (4)</li>
+ * <li><code>rate</code>: the number of steps per second over all clients
+ * (200)</li>
+ * <li><code>warmup</code>, <code>duration</code>: in seconds (5, 30)</li>
+ * <li><code>lines</code>: the number of lines of each document (2000)</li>
+ * <li><code>commandEvery</code>: a command line every that many lines of the
+ * documents (100)</li>
+ * <li><code>burst</code>: the number of keystrokes of a typing burst (8)</li>
+ * <li><code>mix</code>: the weights of the actions, see {@link Workload}
+ * (type:70,move:20,save:5,codeAction:5)</li>
+ * </ul>
+ */
+public class LoadGenerator {
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected key=value: " + arg);
+			}
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		int clients = getInt(options, "clients", 4);
+		int rate = getInt(options, "rate", 200);
+		int warmup = getInt(options, "warmup", 5);
+		int duration = getInt(options, "duration", 30);
+		int lines = getInt(options, "lines", 2000);
+		int commandEvery = getInt(options, "commandEvery", 100);
+		int burst = getInt(options, "burst", 8);
+		Workload workload = Workload.parse(options.getOrDefault("mix", Workload.DEFAULT_MIX));
+
+		Path workspace = Files.createTempDirectory("test-lang-load");
+		Path sockets = Files.createTempDirectory("test-lang-sockets");
+		if (System.getProperty(TestLanguageServer.INDEX_DIR) == null) {
+			System.setProperty(TestLanguageServer.INDEX_DIR, sockets.toString());
+		}
+		System.out.printf("%d clients, %d steps/s, %d lines per document, mix %s%n", clients, rate, lines, workload);
+
+		LatencyRecorder recorder = new LatencyRecorder();
+		List<LoadClient> loadClients = new ArrayList<>();
+		try {
+			for (int i = 0; i < clients; i++) {
+				LoadClient client = new LoadClient(i, workspace, recorder, workload, burst);
+				client.connect(sockets);
+				client.open(lines, commandEvery);
+				loadClients.add(client);
+			}
+
+			long interval = TimeUnit.SECONDS.toNanos(1) * clients / rate;
+			long start = System.nanoTime();
+			long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+			long end = measureFrom + TimeUnit.SECONDS.toNanos(duration);
+			List<Thread> threads = new ArrayList<>();
+			for (int i = 0; i < clients; i++) {
+				LoadClient client = loadClients.get(i);
+				// spread the clients over the interval
+				long first = start + interval * i / clients;
+				Thread thread = new Thread(() -> run(client, first, interval, end), "load-client-" + i);
+				thread.start();
+				threads.add(thread);
+			}
+			LockSupport.parkNanos(measureFrom - System.nanoTime());
+			recorder.start();
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			// give the last responses some time to arrive
+			Thread.sleep(1000);
+			recorder.stop();
+			System.out.print(recorder.report(duration));
+		} finally {
+			for (LoadClient client : loadClients) {
+				client.close();
+			}
+			Documents.delete(workspace);
+			Documents.delete(sockets);
+		}
+		// the launchers' threads don't stop by themselves
+		System.exit(0);
+	}
+
+	/**
+	 * Performs the steps of one client at a fixed rate, whatever the response
+	 * times are.
+	 */
+	private static void run(LoadClient client, long first, long interval, long end) {
+		for (long next = first; next < end; next += interval) {
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			client.step(next);
+		}
+	}
+
+	private static int getInt(Map<String, String> options, String key, int defaultValue) {
+		String value = options.get(key);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+}
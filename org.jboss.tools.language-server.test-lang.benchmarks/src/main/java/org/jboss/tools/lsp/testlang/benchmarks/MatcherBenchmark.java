@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.tools.lsp.testlang.text.MultiStringMatcher;
+import org.jboss.tools.lsp.testlang.text.StringMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link StringMatcher} against a loop over {@link String#indexOf(String, int)}
+ * for short and long needles, in strings and in UTF-8 bytes, and
+ * {@link MultiStringMatcher} against one loop per needle, as for several
+ * <code>badWord</code> rules.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatcherBenchmark {
+
+	private static final List<String> WORDS = Arrays.asList("dolor", "amet", "elit", "tempor", "magna",
+			Documents.RARE_WORD);
+
+	@Param({ "sit", "consectetur adipiscing" })
+	public String needle;
+
+	private String[] lines;
+	private ByteBuffer bytes;
+	private StringMatcher matcher;
+	private MultiStringMatcher multiMatcher;
+
+	@Setup
+	public void setUp() {
+		String text = Documents.generate(10000, 42);
+		lines = text.split("\n");
+		bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+		matcher = StringMatcher.compile(needle);
+		multiMatcher = MultiStringMatcher.compile(WORDS);
+	}
+
+	@Benchmark
+	public void indexOf(Blackhole blackhole) {
+		for (String line : lines) {
+			for (int pos = line.indexOf(needle); pos >= 0; pos = line.indexOf(needle, pos + needle.length())) {
+				blackhole.consume(pos);
+			}
+		}
+	}
+
+	@Benchmark
+	public void matcher(Blackhole blackhole) {
+		for (String line : lines) {
+			for (int pos = matcher.indexOf(line, 0); pos >= 0; pos = matcher.indexOf(line, pos + needle.length())) {
+				blackhole.consume(pos);
+			}
+		}
+	}
+
+	@Benchmark
+	public void matcherBytes(Blackhole blackhole) {
+		int end = bytes.limit();
+		for (int pos = matcher.indexOf(bytes, 0, end); pos >= 0; pos = matcher.indexOf(bytes,
+				pos + matcher.byteLength(), end)) {
+			blackhole.consume(pos);
+		}
+	}
+
+	@Benchmark
+	public void indexOfPerWord(Blackhole blackhole) {
+		for (String line : lines) {
+			for (String word : WORDS) {
+				for (int pos = line.indexOf(word); pos >= 0; pos = line.indexOf(word, pos + word.length())) {
+					blackhole.consume(pos);
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public void multiMatcher(Blackhole blackhole) {
+		for (String line : lines) {
+			multiMatcher.match(line, (word, start) -> blackhole.consume(start));
+		}
+	}
+}
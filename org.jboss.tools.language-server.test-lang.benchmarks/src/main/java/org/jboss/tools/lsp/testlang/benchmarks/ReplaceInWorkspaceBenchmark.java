@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.WorkspaceEdit;
+import org.jboss.tools.lsp.testlang.handlers.ReplaceInWorkspaceHandler;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceFileCache;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceIndex;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceIndexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ReplaceInWorkspaceHandler} over a generated workspace, with and
+ * without the workspace index and the file cache. The files are in the page
+ * cache after the first iteration, so this measures the scan rather than the
+ * disk; the file cache saves opening and reading them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplaceInWorkspaceBenchmark {
+
+	private static final int DIRECTORIES = 20;
+
+	@Param({ "100", "1000" })
+	public int files;
+
+	@Param({ "200" })
+	public int linesPerFile;
+
+	@Param({ "false", "true" })
+	public boolean indexed;
+
+	@Param({ "false", "true" })
+	public boolean cached;
+
+	private Path root;
+	private Path storage;
+	private WorkspaceIndexer indexer;
+	private WorkspaceIndex index;
+	private WorkspaceFileCache cache;
+
+	@Setup
+	public void setUp() throws IOException, InterruptedException {
+		root = Files.createTempDirectory("test-lang-workspace");
+		for (int i = 0; i < files; i++) {
+			Path file = root.resolve("dir" + i % DIRECTORIES).resolve("file" + i + ".test");
+			Files.createDirectories(file.getParent());
+			Files.write(file, Documents.generate(linesPerFile, i).getBytes(StandardCharsets.UTF_8));
+		}
+		if (indexed) {
+			storage = Files.createTempFile("test-lang-index", ".idx");
+			Files.delete(storage);
+			indexer = new WorkspaceIndexer(root, storage);
+			indexer.start();
+			while (!indexer.getIndex().isReady()) {
+				Thread.sleep(10);
+			}
+			index = indexer.getIndex();
+		}
+		if (cached) {
+			cache = new WorkspaceFileCache(256L * 1024 * 1024);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if (indexer != null) {
+			indexer.shutdown();
+		}
+		Documents.delete(root);
+	}
+
+	@Benchmark
+	public WorkspaceEdit replaceRareWord() throws IOException {
+		return ReplaceInWorkspaceHandler.renameInWorkspace(scope(), Documents.RARE_WORD, "pin");
+	}
+
+	@Benchmark
+	public WorkspaceEdit replaceFrequentWord() throws IOException {
+		return ReplaceInWorkspaceHandler.renameInWorkspace(scope(), "dolor", "pain");
+	}
+
+	private ReplaceInWorkspaceHandler.Scope scope() {
+		return ReplaceInWorkspaceHandler.Scope.of(root.toFile()).withIndex(index).withCache(cache);
+	}
+}
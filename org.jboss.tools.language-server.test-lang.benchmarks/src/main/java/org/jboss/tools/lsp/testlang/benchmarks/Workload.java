@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.benchmarks;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The mix of actions a simulated editor performs, as relative weights. A mix
+ * is written as <code>type:70,move:20,save:5,codeAction:5</code>.
+ */
+final class Workload {
+
+	enum Action {
+		/** a burst of keystrokes, each one a <code>didChange</code> and a highlight */
+		TYPE("type"),
+		/** a cursor move, answered with a highlight */
+		MOVE("move"),
+		SAVE("save"),
+		CODE_ACTION("codeAction");
+
+		final String key;
+
+		Action(String key) {
+			this.key = key;
+		}
+	}
+
+	static final String DEFAULT_MIX = "type:70,move:20,save:5,codeAction:5";
+
+	private final Map<Action, Integer> weights;
+	private final int total;
+
+	private Workload(Map<Action, Integer> weights) {
+		this.weights = weights;
+		this.total = weights.values().stream().mapToInt(Integer::intValue).sum();
+		if (total <= 0) {
+			throw new IllegalArgumentException("The workload has no actions");
+		}
+	}
+
+	static Workload parse(String mix) {
+		Map<Action, Integer> weights = new EnumMap<>(Action.class);
+		for (String entry : mix.split(",")) {
+			String[] keyAndWeight = entry.trim().split(":");
+			if (keyAndWeight.length != 2) {
+				throw new IllegalArgumentException("Invalid workload entry: " + entry);
+			}
+			weights.put(action(keyAndWeight[0]), Integer.parseInt(keyAndWeight[1]));
+		}
+		return new Workload(weights);
+	}
+
+	private static Action action(String key) {
+		for (Action action : Action.values()) {
+			if (action.key.equals(key)) {
+				return action;
+			}
+		}
+		throw new IllegalArgumentException("Unknown action: " + key);
+	}
+
+	Action next(Random random) {
+		int value = random.nextInt(total);
+		for (Map.Entry<Action, Integer> entry : weights.entrySet()) {
+			value -= entry.getValue();
+			if (value < 0) {
+				return entry.getKey();
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (Map.Entry<Action, Integer> entry : weights.entrySet()) {
+			if (result.length() > 0) {
+				result.append(',');
+			}
+			result.append(entry.getKey().key).append(':').append(entry.getValue());
+		}
+		return result.toString();
+	}
+}
@@ -23,4 +23,11 @@ public interface ExtendedLanguageClient extends LanguageClient {
 	@JsonNotification("language/status")
 	void statusEvent(StatusReport status);
 
+	/**
+	 * Receives a chunk of the results of a request, when streaming has been
+	 * enabled with the <code>streaming</code> initialization option.
+	 */
+	@JsonNotification("language/partialResult")
+	void partialResult(PartialResultParams params);
+
 }
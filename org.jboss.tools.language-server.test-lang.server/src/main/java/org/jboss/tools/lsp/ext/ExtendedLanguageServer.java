@@ -8,4 +8,11 @@ import java.util.concurrent.CompletableFuture;
 public interface ExtendedLanguageServer extends LanguageServer {
     @JsonRequest
     CompletableFuture<String> getDocument(String uri);
+
+    /**
+     * Returns the latency and throughput of each method since the server
+     * started, and the current value of the gauges.
+     */
+    @JsonRequest("server/metrics")
+    CompletableFuture<MetricsReport> metrics();
 }
@@ -0,0 +1,78 @@
+package org.jboss.tools.lsp.ext;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * A summary of the latencies recorded for a method, in microseconds.
+ */
+public class LatencyReport {
+	public LatencyReport(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+
+	@SerializedName("count")
+	@Expose
+	private long count;
+
+	@SerializedName("mean")
+	@Expose
+	private double mean;
+
+	@SerializedName("p50")
+	@Expose
+	private long p50;
+
+	@SerializedName("p90")
+	@Expose
+	private long p90;
+
+	@SerializedName("p99")
+	@Expose
+	private long p99;
+
+	@SerializedName("p999")
+	@Expose
+	private long p999;
+
+	@SerializedName("max")
+	@Expose
+	private long max;
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	public long getMax() {
+		return max;
+	}
+}
@@ -0,0 +1,80 @@
+package org.jboss.tools.lsp.ext;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * The metrics of one LSP method or internal operation.
+ */
+public class MethodReport {
+	public MethodReport(long count, long errors, long cancelled, long rejected, LatencyReport queued,
+			LatencyReport executed) {
+		this.count = count;
+		this.errors = errors;
+		this.cancelled = cancelled;
+		this.rejected = rejected;
+		this.queued = queued;
+		this.executed = executed;
+	}
+
+	/**
+	 * The number of completed executions
+	 */
+	@SerializedName("count")
+	@Expose
+	private long count;
+
+	@SerializedName("errors")
+	@Expose
+	private long errors;
+
+	@SerializedName("cancelled")
+	@Expose
+	private long cancelled;
+
+	/**
+	 * The number of requests rejected because the server was overloaded
+	 */
+	@SerializedName("rejected")
+	@Expose
+	private long rejected;
+
+	/**
+	 * The time requests waited for a thread, empty for the operations run on
+	 * the thread which received them
+	 */
+	@SerializedName("queued")
+	@Expose
+	private LatencyReport queued;
+
+	/**
+	 * The time requests ran
+	 */
+	@SerializedName("executed")
+	@Expose
+	private LatencyReport executed;
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getCancelled() {
+		return cancelled;
+	}
+
+	public long getRejected() {
+		return rejected;
+	}
+
+	public LatencyReport getQueued() {
+		return queued;
+	}
+
+	public LatencyReport getExecuted() {
+		return executed;
+	}
+}
@@ -0,0 +1,46 @@
+package org.jboss.tools.lsp.ext;
+
+import java.util.Map;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * The answer to <code>server/metrics</code>: the metrics of each method and
+ * the current value of the gauges, such as <code>openDocuments</code> and
+ * <code>documentBytes</code>.
+ */
+public class MetricsReport {
+	public MetricsReport(long uptime, Map<String, MethodReport> methods, Map<String, Long> gauges) {
+		this.uptime = uptime;
+		this.methods = methods;
+		this.gauges = gauges;
+	}
+
+	/**
+	 * The time since the server started, in milliseconds
+	 */
+	@SerializedName("uptime")
+	@Expose
+	private long uptime;
+
+	@SerializedName("methods")
+	@Expose
+	private Map<String, MethodReport> methods;
+
+	@SerializedName("gauges")
+	@Expose
+	private Map<String, Long> gauges;
+
+	public long getUptime() {
+		return uptime;
+	}
+
+	public Map<String, MethodReport> getMethods() {
+		return methods;
+	}
+
+	public Map<String, Long> getGauges() {
+		return gauges;
+	}
+}
@@ -0,0 +1,121 @@
+package org.jboss.tools.lsp.ext;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextEdit;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * A chunk of the results of a request, sent with
+ * <code>language/partialResult</code> when the client asked for streaming.
+ * All chunks of a request share a token and are sent before its response;
+ * the last one is marked as done.
+ */
+public class PartialResultParams {
+	public PartialResultParams(String token, String method, String uri, Position position, Range range,
+			List<Location> locations, Map<String, List<TextEdit>> changes, boolean done) {
+		this.token = token;
+		this.method = method;
+		this.uri = uri;
+		this.position = position;
+		this.range = range;
+		this.locations = locations;
+		this.changes = changes;
+		this.done = done;
+	}
+
+	/**
+	 * Identifies the request the chunk belongs to
+	 */
+	@SerializedName("token")
+	@Expose
+	private String token;
+
+	/**
+	 * The method of the request, e.g. <code>textDocument/references</code>
+	 */
+	@SerializedName("method")
+	@Expose
+	private String method;
+
+	/**
+	 * The document of the request
+	 */
+	@SerializedName("uri")
+	@Expose
+	private String uri;
+
+	/**
+	 * The position of the request, if it has one
+	 */
+	@SerializedName("position")
+	@Expose
+	private Position position;
+
+	/**
+	 * The range of the request, if it has one
+	 */
+	@SerializedName("range")
+	@Expose
+	private Range range;
+
+	/**
+	 * The locations found, for <code>textDocument/references</code>
+	 */
+	@SerializedName("locations")
+	@Expose
+	private List<Location> locations;
+
+	/**
+	 * Workspace edits, by document URI. The edits of a document may be split
+	 * over several chunks.
+	 */
+	@SerializedName("changes")
+	@Expose
+	private Map<String, List<TextEdit>> changes;
+
+	/**
+	 * Whether this is the last chunk of the request
+	 */
+	@SerializedName("done")
+	@Expose
+	private boolean done;
+
+	public String getToken() {
+		return token;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	public Position getPosition() {
+		return position;
+	}
+
+	public Range getRange() {
+		return range;
+	}
+
+	public List<Location> getLocations() {
+		return locations;
+	}
+
+	public Map<String, List<TextEdit>> getChanges() {
+		return changes;
+	}
+
+	public boolean isDone() {
+		return done;
+	}
+}
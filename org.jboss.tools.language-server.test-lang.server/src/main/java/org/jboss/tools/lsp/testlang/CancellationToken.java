@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Tells long running work that its result is no longer needed, typically
+ * because the client sent <code>$/cancelRequest</code>. Cancellation is
+ * cooperative: the work polls the token between lines or files and stops by
+ * throwing a {@link CancellationException}.
+ */
+@FunctionalInterface
+public interface CancellationToken {
+
+	/** A token which is never cancelled. */
+	CancellationToken NONE = () -> false;
+
+	boolean isCancelled();
+
+	/**
+	 * @throws CancellationException
+	 *             if the work has been cancelled
+	 */
+	default void checkCancelled() {
+		if (isCancelled()) {
+			throw new CancellationException();
+		}
+	}
+}
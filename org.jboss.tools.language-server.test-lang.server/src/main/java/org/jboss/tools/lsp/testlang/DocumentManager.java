@@ -12,21 +12,30 @@
 package org.jboss.tools.lsp.testlang;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.IntStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.jboss.tools.lsp.testlang.handlers.TestTextDocumentService;
+import org.jboss.tools.lsp.testlang.metrics.Metrics;
+import org.jboss.tools.lsp.testlang.text.RopeTextBuffer;
+import org.jboss.tools.lsp.testlang.text.SegmentedSearch;
+import org.jboss.tools.lsp.testlang.text.StringMatcher;
+import org.jboss.tools.lsp.testlang.text.TextBuffer;
+import org.jboss.tools.lsp.testlang.text.WordIndex;
+import org.jboss.tools.lsp.testlang.text.WordOccurrence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,129 +45,443 @@ import org.slf4j.LoggerFactory;
 public class DocumentManager {
 	public static final Logger LOGGER = LoggerFactory.getLogger(DocumentManager.class);
 
-	public Map<String, List<String>> openFiles = new HashMap<String, List<String>>();
+	private final Map<String, OpenDocument> openFiles = new ConcurrentHashMap<String, OpenDocument>();
 
-	public List<String> getContent(String uri) throws IOException, URISyntaxException {
-		synchronized (openFiles) {
-			if (openFiles.containsKey(uri)) {
-				return Collections.unmodifiableList(openFiles.get(uri));
-			}
+	private final Function<String, ? extends TextBuffer> bufferFactory;
+
+	private Metrics metrics = new Metrics();
+
+	private ForkJoinPool searchPool;
+
+	/**
+	 * An open document. Every change publishes a new immutable
+	 * {@link DocumentSnapshot}, so readers only need a single volatile read and
+	 * never observe a partially applied <code>didChange</code>. Changes to the
+	 * same document are serialized on the document itself; operations on
+	 * different documents never contend.
+	 * <p>
+	 * The word indexes are updated in place by the writer. Readers use them
+	 * without locking and validate their result against
+	 * <code>indexStamp</code>, which is odd while an update is in progress.
+	 * The index of whitespace separated words, used for the document symbols,
+	 * is only created once they are asked for.
+	 */
+	private static class OpenDocument {
+		volatile DocumentSnapshot snapshot;
+		final WordIndex index = new WordIndex(Character::isAlphabetic);
+		volatile WordIndex symbolIndex;
+		volatile DocumentSnapshot indexedSnapshot;
+		volatile int indexStamp;
+
+		OpenDocument(DocumentSnapshot snapshot) {
+			this.snapshot = snapshot;
+			this.index.reset(snapshot.getText());
+			this.indexedSnapshot = snapshot;
 		}
-		return null;
+	}
+
+	public DocumentManager() {
+		this(RopeTextBuffer::of);
+	}
+
+	/**
+	 * @param bufferFactory
+	 *            creates the {@link TextBuffer} holding the content of a
+	 *            newly opened (or fully replaced) document
+	 */
+	public DocumentManager(Function<String, ? extends TextBuffer> bufferFactory) {
+		this.bufferFactory = bufferFactory;
+	}
+
+	/**
+	 * Records the operations of this document manager, and the number and
+	 * size of the open documents, in the given metrics.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+		metrics.gauge("openDocuments", openFiles::size);
+		metrics.gauge("documentBytes", this::getDocumentBytes);
+	}
+
+	/**
+	 * Searches the text of large documents in parallel on the given pool.
+	 * Without a pool, documents are always searched on the calling thread.
+	 */
+	public void setSearchPool(ForkJoinPool searchPool) {
+		this.searchPool = searchPool;
+	}
+
+	/**
+	 * @return the size of the open documents in memory, two bytes per
+	 *         character
+	 */
+	private long getDocumentBytes() {
+		long chars = 0;
+		for (OpenDocument document : openFiles.values()) {
+			chars += document.snapshot.getText().getLength();
+		}
+		return 2 * chars;
+	}
+
+	public List<String> getContent(String uri) throws IOException, URISyntaxException {
+		DocumentSnapshot snapshot = getSnapshot(uri);
+		return snapshot == null ? null : snapshot.getLines();
+	}
+
+	/**
+	 * @return the latest snapshot of the given document, or <code>null</code>
+	 *         if the document is not open
+	 */
+	public DocumentSnapshot getSnapshot(String uri) {
+		OpenDocument document = openFiles.get(uri);
+		return document == null ? null : document.snapshot;
+	}
+
+	/**
+	 * @return <code>true</code> if no change has been applied to the document
+	 *         since the given snapshot was taken
+	 */
+	public boolean isCurrent(DocumentSnapshot snapshot) {
+		return getSnapshot(snapshot.getUri()) == snapshot;
+	}
+
+	/**
+	 * @return <code>true</code> if the given document is open in the editor
+	 */
+	public boolean isOpen(String uri) {
+		return openFiles.containsKey(uri);
+	}
+
+	/**
+	 * @return the URIs of the open documents
+	 */
+	public List<String> getOpenUris() {
+		return new ArrayList<>(openFiles.keySet());
 	}
 
 	public void didOpen(String uri, String contents) throws IOException, URISyntaxException {
-		List<String> lines = parse(contents);
-		synchronized (openFiles) {
-			if (openFiles.containsKey(uri)) {
+		didOpen(uri, 0, contents);
+	}
+
+	public void didOpen(String uri, int version, String contents) throws IOException, URISyntaxException {
+		metrics.run("documentManager/didOpen", () -> {
+			TextBuffer buffer = bufferFactory.apply(contents);
+			if (openFiles.putIfAbsent(uri, new OpenDocument(new DocumentSnapshot(uri, version, buffer))) != null) {
 				throw new RuntimeException("File already open: " + uri);
 			}
-			openFiles.put(uri, lines);
-		}
+		});
 	}
 
-	private List<String> parse(String contents) {
-		ArrayList<String> result = new ArrayList<String>();
-		if (contents != null) {
-			try {
-				Utils.parse(new StringReader(contents), (String line, Integer lineNumber)-> {
-					result.add(line);
-				});
-			} catch (IOException e) {
-				// ignore, will not happen for StringReader
+	public void didChange(String uri, List<TextDocumentContentChangeEvent> list) {
+		metrics.run("documentManager/didChange", () -> {
+			OpenDocument document = getOpenDocument(uri);
+			synchronized (document) {
+				didChange(document, document.snapshot.getVersion() + 1, list);
 			}
-		}
-
-		return result;
+		});
 	}
 
-	public void didChange(String uri, List<TextDocumentContentChangeEvent> list) {
-		synchronized (openFiles) {
-			if (!openFiles.containsKey(uri)) {
-				throw new RuntimeException("File not open: " + uri);
+	public void didChange(String uri, int version, List<TextDocumentContentChangeEvent> list) {
+		metrics.run("documentManager/didChange", () -> {
+			OpenDocument document = getOpenDocument(uri);
+			synchronized (document) {
+				didChange(document, version, list);
 			}
-			List<String> content = openFiles.get(uri);
+		});
+	}
+
+	private void didChange(OpenDocument document, int version, List<TextDocumentContentChangeEvent> list) {
+		DocumentSnapshot snapshot = document.snapshot;
+		TextBuffer content = snapshot.getText();
+		document.indexStamp++;
+		try {
 			for (TextDocumentContentChangeEvent change : list) {
-				applyChange(content, change);
+				content = applyChange(document, content, change);
+			}
+			DocumentSnapshot newSnapshot = new DocumentSnapshot(snapshot.getUri(), version, content);
+			document.indexedSnapshot = newSnapshot;
+			document.snapshot = newSnapshot;
+		} catch (RuntimeException e) {
+			// the indexes may hold the changes applied before the failing
+			// one, while the snapshot is unchanged: index it again
+			document.indexedSnapshot = null;
+			document.index.reset(snapshot.getText());
+			WordIndex symbolIndex = document.symbolIndex;
+			if (symbolIndex != null) {
+				symbolIndex.reset(snapshot.getText());
 			}
+			document.indexedSnapshot = snapshot;
+			throw e;
+		} finally {
+			document.indexStamp++;
 		}
 	}
 
-	private void applyChange(List<String> content, TextDocumentContentChangeEvent change) {
-		if (change.getRange() == null) {
-			content.clear();
-			content.addAll(parse(change.getText()));
-		} else {
-			removeText(content, change.getRange());
-			insertText(content, change.getRange().getStart(), change.getText());
+	private TextBuffer applyChange(OpenDocument document, TextBuffer content, TextDocumentContentChangeEvent change) {
+		WordIndex symbolIndex = document.symbolIndex;
+		Range range = change.getRange();
+		if (range == null) {
+			TextBuffer newContent = bufferFactory.apply(change.getText());
+			document.index.reset(newContent);
+			if (symbolIndex != null) {
+				symbolIndex.reset(newContent);
+			}
+			return newContent;
+		}
+		TextBuffer newContent = content.replace(range.getStart().getLine(), range.getStart().getCharacter(),
+				range.getEnd().getLine(), range.getEnd().getCharacter(), change.getText());
+		int from = Math.min(range.getStart().getLine(), content.getLineCount());
+		int oldTo = Math.min(range.getEnd().getLine() + 1, content.getLineCount());
+		int newTo = oldTo + newContent.getLineCount() - content.getLineCount();
+		document.index.update(content, newContent, from, oldTo, newTo);
+		if (symbolIndex != null) {
+			symbolIndex.update(content, newContent, from, oldTo, newTo);
 		}
+		return newContent;
+	}
+
+	public void didClose(String uri) {
+		metrics.run("documentManager/didClose", () -> openFiles.remove(uri));
 	}
 
-	private void insertText(List<String> content, Position position, String text) {
-		String lines[] = text.split("\\r?\\n");
-		if (lines.length == 0) {
+	public void findInDocument(TextDocumentIdentifier document, String selectedWord, LocationConsumer f) {
+		findInDocument(getOpenDocument(document.getUri()).snapshot, selectedWord, f);
+	}
+
+	/**
+	 * Reports the occurrences of the given word in the given snapshot to the
+	 * consumer. The reported ranges refer to that snapshot, even if the
+	 * document has changed in the meantime.
+	 */
+	public void findInDocument(DocumentSnapshot snapshot, String selectedWord, LocationConsumer f) {
+		findInDocument(snapshot, selectedWord, f, CancellationToken.NONE);
+	}
+
+	/**
+	 * Same as {@link #findInDocument(DocumentSnapshot, String, LocationConsumer)},
+	 * stopping with a {@link java.util.concurrent.CancellationException} when
+	 * the given token is cancelled.
+	 */
+	public void findInDocument(DocumentSnapshot snapshot, String selectedWord, LocationConsumer f,
+			CancellationToken token) {
+		findInDocument(snapshot, selectedWord, SearchLimits.NONE, f, token);
+	}
+
+	/**
+	 * Same as
+	 * {@link #findInDocument(DocumentSnapshot, String, LocationConsumer, CancellationToken)},
+	 * looking only at the lines within the given limits and stopping once the
+	 * maximum number of occurrences has been reported, or the consumer
+	 * returns <code>false</code>.
+	 */
+	public void findInDocument(DocumentSnapshot snapshot, String selectedWord, SearchLimits limits,
+			LocationConsumer f, CancellationToken token) {
+		metrics.run("documentManager/findInDocument", () -> find(snapshot, selectedWord, limits, f, token));
+	}
+
+	private void find(DocumentSnapshot snapshot, String selectedWord, SearchLimits limits, LocationConsumer f,
+			CancellationToken token) {
+		final TextDocumentIdentifier document = new TextDocumentIdentifier(snapshot.getUri());
+		final int maxResults = limits.getMaxResults();
+		if (selectedWord.isEmpty() || maxResults <= 0) {
 			return;
 		}
-		if (content.isEmpty()) {
-			content.addAll(Arrays.asList(lines));
-		} else {
-			String firstLine = content.get(position.getLine());
-			String start = firstLine.substring(0, position.getCharacter());
-			String end = firstLine.substring(position.getCharacter());
-			content.set(position.getLine(), start + lines[0]);
-			int currentLine = position.getLine();
-			for (int i = 1; i < lines.length; i++) {
-				content.add(++currentLine, lines[i]);
+		long[] occurrences = findIndexed(snapshot, selectedWord, limits);
+		if (occurrences != null) {
+			report(document, selectedWord, occurrences, maxResults, f, token);
+			return;
+		}
+		final TextBuffer lines = snapshot.getText();
+		final int toLine = Math.min(limits.getToLine(), lines.getLineCount());
+		final StringMatcher matcher = StringMatcher.compile(selectedWord);
+		final ForkJoinPool pool = searchPool;
+		if (pool != null && maxResults == Integer.MAX_VALUE
+				&& SegmentedSearch.isParallel(toLine - limits.getFromLine())) {
+			// a capped search is better off stopping early on a single thread
+			for (long[] segment : SegmentedSearch.search(pool, limits.getFromLine(), toLine,
+					(from, to) -> scan(lines, matcher, from, to, token))) {
+				if (!report(document, selectedWord, segment, maxResults, f, token)) {
+					return;
+				}
+			}
+			return;
+		}
+		int found = 0;
+		for (int lineNumber = limits.getFromLine(); lineNumber < toLine; lineNumber++) {
+			token.checkCancelled();
+			final String line = lines.getLine(lineNumber);
+			for (int index = matcher.indexOf(line, 0); index != -1; index = matcher.indexOf(line,
+					index + selectedWord.length())) {
+				// in this implementation, the kind of highlight
+				// will always be 'Text'
+				if (!f.accept(document, new Range(new Position(lineNumber, index),
+						new Position(lineNumber, index + selectedWord.length())), selectedWord)
+						|| ++found == maxResults) {
+					return;
+				}
 			}
-			content.set(currentLine, content.get(currentLine) + end);
 		}
 	}
 
-	private void removeText(List<String> content, Range range) {
-		String firstLine = content.get(range.getStart().getLine());
-		String lastLine = content.get(range.getEnd().getLine());
-		String newLine = firstLine.substring(0, range.getStart().getCharacter())
-				+ lastLine.substring(range.getEnd().getCharacter());
-		content.set(range.getStart().getLine(), newLine);
-		int indexToRemove = range.getStart().getLine() + 1;
-		for (int i = indexToRemove; i <= range.getEnd().getLine(); i++) {
-			content.remove(indexToRemove);
+	/**
+	 * Reports the given occurrences to the consumer, at most
+	 * <code>maxResults</code> of them.
+	 * 
+	 * @return <code>false</code> if the consumer asked to stop
+	 */
+	private static boolean report(TextDocumentIdentifier document, String word, long[] occurrences, int maxResults,
+			LocationConsumer f, CancellationToken token) {
+		int count = Math.min(occurrences.length, maxResults);
+		for (int i = 0; i < count; i++) {
+			if ((i & 0xff) == 0) {
+				token.checkCancelled();
+			}
+			long occurrence = occurrences[i];
+			int line = WordIndex.line(occurrence);
+			int column = WordIndex.column(occurrence);
+			if (!f.accept(document, new Range(new Position(line, column), new Position(line, column + word.length())),
+					word)) {
+				return false;
+			}
 		}
+		return true;
 	}
 
-	public void didClose(String uri) {
-		synchronized (openFiles) {
-			openFiles.remove(uri);
+	/**
+	 * Finds the occurrences of the matcher's needle in the lines
+	 * <code>[from, to)</code>.
+	 * 
+	 * @return the occurrences packed as in {@link WordIndex#find(String)}
+	 */
+	private static long[] scan(TextBuffer lines, StringMatcher matcher, int from, int to, CancellationToken token) {
+		long[] result = new long[16];
+		int count = 0;
+		for (int lineNumber = from; lineNumber < to; lineNumber++) {
+			token.checkCancelled();
+			final String line = lines.getLine(lineNumber);
+			for (int index = matcher.indexOf(line, 0); index != -1; index = matcher.indexOf(line,
+					index + matcher.length())) {
+				if (count == result.length) {
+					result = Arrays.copyOf(result, count * 2);
+				}
+				result[count++] = (long) lineNumber << 32 | index;
+			}
 		}
+		return Arrays.copyOf(result, count);
 	}
 
-	public void findInDocument(TextDocumentIdentifier document, String selectedWord, LocationConsumer f) {
-		List<String> lines = openFiles.get(document.getUri());
-		IntStream.range(0, lines.size()).forEach(lineNumber -> {
-			int index = 0;
-			final String line = lines.get(lineNumber);
-			while ((index = line.indexOf(selectedWord, index)) != -1) {
-				// in this implementation, the kind of highlight
-				// will always be 'Text'
-				// (1)
-				if (!f.accept(document, new Range(new Position(lineNumber, index),
-						new Position(lineNumber, index + selectedWord.length())), selectedWord)) {
-					return;
+	/**
+	 * Looks the word up in the word index of the document, if the index
+	 * matches the given snapshot.
+	 * 
+	 * @return the occurrences within the lines of the given limits, as
+	 *         returned by {@link WordIndex#find(String, int, int)}, or
+	 *         <code>null</code> if the document has to be scanned instead
+	 */
+	private long[] findIndexed(DocumentSnapshot snapshot, String word, SearchLimits limits) {
+		OpenDocument document = openFiles.get(snapshot.getUri());
+		if (document == null) {
+			return null;
+		}
+		int stamp = document.indexStamp;
+		if ((stamp & 1) != 0 || document.indexedSnapshot != snapshot) {
+			return null;
+		}
+		long[] result = document.index.find(word, limits.getFromLine(), limits.getToLine());
+		return document.indexStamp == stamp ? result : null;
+	}
+
+	/**
+	 * Finds the distinct whitespace separated words of the given snapshot,
+	 * as listed by <code>textDocument/documentSymbol</code>.
+	 * 
+	 * @return the first occurrence of each word, in document order
+	 */
+	public List<WordOccurrence> getFirstOccurrences(DocumentSnapshot snapshot, CancellationToken token) {
+		return metrics.call("documentManager/getFirstOccurrences", () -> {
+			List<WordOccurrence> result = firstOccurrencesIndexed(snapshot);
+			return result != null ? result : firstOccurrences(snapshot, token);
+		});
+	}
+
+	/**
+	 * Reads the first occurrences from the symbol index of the document,
+	 * creating the index if needed.
+	 * 
+	 * @return the first occurrences, or <code>null</code> if the index does
+	 *         not match the given snapshot
+	 */
+	private List<WordOccurrence> firstOccurrencesIndexed(DocumentSnapshot snapshot) {
+		OpenDocument document = openFiles.get(snapshot.getUri());
+		if (document == null) {
+			return null;
+		}
+		if (document.symbolIndex == null) {
+			synchronized (document) {
+				if (document.symbolIndex == null && document.snapshot == snapshot) {
+					WordIndex symbolIndex = new WordIndex(c -> !Character.isWhitespace(c));
+					symbolIndex.reset(snapshot.getText());
+					document.symbolIndex = symbolIndex;
 				}
-				;
-				index += selectedWord.length();
 			}
-		});
+		}
+		WordIndex symbolIndex = document.symbolIndex;
+		int stamp = document.indexStamp;
+		if (symbolIndex == null || (stamp & 1) != 0 || document.indexedSnapshot != snapshot) {
+			return null;
+		}
+		List<WordOccurrence> result = new ArrayList<>();
+		symbolIndex.forEachFirstOccurrence((word, position) -> result
+				.add(new WordOccurrence(word, WordIndex.line(position), WordIndex.column(position))));
+		if (document.indexStamp != stamp) {
+			return null;
+		}
+		result.sort(Comparator.comparingInt(WordOccurrence::getLine).thenComparingInt(WordOccurrence::getColumn));
+		return result;
+	}
 
+	private static List<WordOccurrence> firstOccurrences(DocumentSnapshot snapshot, CancellationToken token) {
+		List<WordOccurrence> result = new ArrayList<>();
+		Set<String> found = new HashSet<>();
+		TextBuffer text = snapshot.getText();
+		for (int lineNumber = 0; lineNumber < text.getLineCount(); lineNumber++) {
+			token.checkCancelled();
+			String line = text.getLine(lineNumber);
+			int pos = 0;
+			while (pos < line.length()) {
+				while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+					pos++;
+				}
+				int start = pos;
+				while (pos < line.length() && !Character.isWhitespace(line.charAt(pos))) {
+					pos++;
+				}
+				if (pos > start) {
+					String word = line.substring(start, pos);
+					if (found.add(word)) {
+						result.add(new WordOccurrence(word, lineNumber, start));
+					}
+				}
+			}
+		}
+		return result;
 	}
 
 	public String getWordAtPosition(TextDocumentIdentifier document, Position position)
 			throws IOException, URISyntaxException {
-		final List<String> lines = getContent(document.getUri());
-		if (position.getLine() >= lines.size()) {
+		return getWordAtPosition(getOpenDocument(document.getUri()).snapshot, position);
+	}
+
+	public String getWordAtPosition(DocumentSnapshot snapshot, Position position) {
+		return metrics.call("documentManager/getWordAtPosition", () -> wordAtPosition(snapshot, position));
+	}
+
+	private String wordAtPosition(DocumentSnapshot snapshot, Position position) {
+		final TextBuffer lines = snapshot.getText();
+		if (position.getLine() >= lines.getLineCount()) {
 		  return "";
 		}
-		final String selectedLine = lines.get(position.getLine());
+		final String selectedLine = lines.getLine(position.getLine());
 		// find the selected word
 		if (position.getCharacter() >= selectedLine.length()) {
 		  return "";
@@ -166,6 +489,14 @@ public class DocumentManager {
 		return DocumentManager.findSelectedWord(position.getCharacter(), selectedLine);
 	}
 
+	private OpenDocument getOpenDocument(String uri) {
+		OpenDocument document = openFiles.get(uri);
+		if (document == null) {
+			throw new RuntimeException("File not open: " + uri);
+		}
+		return document;
+	}
+
 	public static String findSelectedWord(final int selectionPosition, final String selectedLine) {
 		LOGGER.debug("Looking for word at Position {} in '{}'", selectionPosition, selectedLine);
 
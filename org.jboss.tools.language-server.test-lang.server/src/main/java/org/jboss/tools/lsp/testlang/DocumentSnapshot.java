@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang;
+
+import java.util.List;
+
+import org.jboss.tools.lsp.testlang.text.TextBuffer;
+
+/**
+ * An immutable view of an open document at a given version. Snapshots share
+ * their structure with the previous version of the document, so publishing
+ * one on every change is cheap, and they can be read from any thread without
+ * locking.
+ */
+public final class DocumentSnapshot {
+
+	private final String uri;
+	private final int version;
+	private final TextBuffer text;
+
+	public DocumentSnapshot(String uri, int version, TextBuffer text) {
+		this.uri = uri;
+		this.version = version;
+		this.text = text;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	/**
+	 * @return the version of the document, as sent by the client
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	public TextBuffer getText() {
+		return text;
+	}
+
+	/**
+	 * @return a read-only list of the lines in this snapshot
+	 */
+	public List<String> getLines() {
+		return text.asList();
+	}
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.jboss.tools.lsp.testlang.metrics.MethodMetrics;
+import org.jboss.tools.lsp.testlang.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the requests of the language server off the message reader thread.
+ * Latency sensitive requests (highlight, completion, hover, navigation) and
+ * heavy ones (symbols, workspace wide code actions) get separate pools, so a
+ * workspace walk never delays the next highlight.
+ * <p>
+ * Both pools have a bounded number of threads and a bounded queue. When a
+ * queue is full, the request fails right away instead of blocking the
+ * caller: the reader thread must keep reading, if only to receive
+ * <code>$/cancelRequest</code>.
+ * <p>
+ * When {@link VirtualThreads#isEnabled() virtual threads} are enabled, each
+ * request runs on its own virtual thread instead and there is no queue to
+ * bound: blocked requests don't hold on to a platform thread.
+ * <p>
+ * Each request gets a {@link CancellationToken} which is cancelled when the
+ * returned future is cancelled, as lsp4j does on <code>$/cancelRequest</code>.
+ * <p>
+ * Requests which search a large document or the workspace in parallel fork
+ * their work on the {@link #getSearchPool() search pool} of the scheduler,
+ * rather than on the common fork-join pool shared with the rest of the JVM.
+ * <p>
+ * The time named requests wait in the queue and the time they run are
+ * recorded in the {@link Metrics} of the scheduler, along with the size of the
+ * search pool.
+ */
+public class RequestScheduler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RequestScheduler.class);
+
+	public static final String INTERACTIVE_THREADS = "TESTLS_INTERACTIVE_THREADS";
+	public static final String INTERACTIVE_QUEUE = "TESTLS_INTERACTIVE_QUEUE";
+	public static final String HEAVY_THREADS = "TESTLS_HEAVY_THREADS";
+	public static final String HEAVY_QUEUE = "TESTLS_HEAVY_QUEUE";
+	public static final String SEARCH_THREADS = "TESTLS_SEARCH_THREADS";
+
+	/** records the requests submitted without a method name, never reported */
+	private static final MethodMetrics UNNAMED = new MethodMetrics();
+
+	private final ExecutorService interactive;
+	private final ExecutorService heavy;
+	private final ForkJoinPool search;
+	private final Metrics metrics;
+
+	/**
+	 * Creates a scheduler running on virtual threads if they are enabled, or
+	 * sized from the environment variables or system properties, or from the
+	 * number of processors.
+	 */
+	public RequestScheduler() {
+		this(new Metrics());
+	}
+
+	/**
+	 * Same as {@link #RequestScheduler()}, recording into the given metrics.
+	 */
+	public RequestScheduler(Metrics metrics) {
+		this.metrics = metrics;
+		if (VirtualThreads.isEnabled()) {
+			LOGGER.info("Running requests on virtual threads");
+			this.interactive = VirtualThreads.newExecutor();
+			this.heavy = interactive;
+		} else {
+			this.interactive = createPool("test-lang-interactive",
+					getSize(INTERACTIVE_THREADS, Math.max(2, Runtime.getRuntime().availableProcessors() / 2)),
+					getSize(INTERACTIVE_QUEUE, 64));
+			this.heavy = createPool("test-lang-heavy", getSize(HEAVY_THREADS, 2), getSize(HEAVY_QUEUE, 16));
+		}
+		this.search = createSearchPool(metrics);
+	}
+
+	public RequestScheduler(int interactiveThreads, int interactiveQueue, int heavyThreads, int heavyQueue) {
+		this.interactive = createPool("test-lang-interactive", interactiveThreads, interactiveQueue);
+		this.heavy = createPool("test-lang-heavy", heavyThreads, heavyQueue);
+		this.metrics = new Metrics();
+		this.search = createSearchPool(metrics);
+	}
+
+	/**
+	 * Creates a scheduler running all requests on the given executor, which
+	 * is expected to start a new (virtual) thread per request.
+	 */
+	public RequestScheduler(ExecutorService executor) {
+		this.interactive = executor;
+		this.heavy = executor;
+		this.metrics = new Metrics();
+		this.search = createSearchPool(metrics);
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the pool on which requests fork their parallel searches
+	 */
+	public ForkJoinPool getSearchPool() {
+		return search;
+	}
+
+	/**
+	 * Runs a latency sensitive request.
+	 */
+	public <T> CompletableFuture<T> interactive(Function<CancellationToken, T> request) {
+		return submit(interactive, UNNAMED, request);
+	}
+
+	/**
+	 * Runs a latency sensitive request, recording its timings under the given
+	 * method name.
+	 */
+	public <T> CompletableFuture<T> interactive(String method, Function<CancellationToken, T> request) {
+		return submit(interactive, metrics.method(method), request);
+	}
+
+	/**
+	 * Runs a request which may take long.
+	 */
+	public <T> CompletableFuture<T> heavy(Function<CancellationToken, T> request) {
+		return submit(heavy, UNNAMED, request);
+	}
+
+	/**
+	 * Runs a request which may take long, recording its timings under the
+	 * given method name.
+	 */
+	public <T> CompletableFuture<T> heavy(String method, Function<CancellationToken, T> request) {
+		return submit(heavy, metrics.method(method), request);
+	}
+
+	public void shutdown() {
+		interactive.shutdownNow();
+		heavy.shutdownNow();
+		search.shutdownNow();
+	}
+
+	private static <T> CompletableFuture<T> submit(ExecutorService pool, MethodMetrics metrics,
+			Function<CancellationToken, T> request) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		CancellationToken token = result::isCancelled;
+		long submitted = System.nanoTime();
+		try {
+			pool.execute(() -> {
+				if (result.isDone()) {
+					// cancelled while queued
+					metrics.cancelled();
+					return;
+				}
+				long started = System.nanoTime();
+				try {
+					result.complete(request.apply(token));
+				} catch (Throwable t) {
+					if (t instanceof CancellationException) {
+						metrics.cancelled();
+					} else {
+						metrics.failed();
+					}
+					result.completeExceptionally(t);
+				} finally {
+					metrics.queued(started - submitted);
+					metrics.executed(System.nanoTime() - started);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			metrics.rejected();
+			if (pool instanceof ThreadPoolExecutor) {
+				LOGGER.warn("Rejecting request, {} queued requests", ((ThreadPoolExecutor) pool).getQueue().size());
+			} else {
+				LOGGER.warn("Rejecting request, the server is shutting down");
+			}
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	private static ThreadPoolExecutor createPool(String name, int threads, int queueSize) {
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize), factory, new ThreadPoolExecutor.AbortPolicy());
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	private static ForkJoinPool createSearchPool(Metrics metrics) {
+		AtomicInteger count = new AtomicInteger();
+		ForkJoinPool.ForkJoinWorkerThreadFactory factory = pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("test-lang-search-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		ForkJoinPool pool = new ForkJoinPool(getSize(SEARCH_THREADS, Runtime.getRuntime().availableProcessors()),
+				factory, null, false);
+		metrics.gauge("searchPool.parallelism", pool::getParallelism);
+		metrics.gauge("searchPool.threads", pool::getPoolSize);
+		return pool;
+	}
+
+	private static int getSize(String key, int defaultValue) {
+		return Math.max(1, Utils.getEnvVarOrSysProp(key, defaultValue));
+	}
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang;
+
+/**
+ * Restricts a search in a document to a window of lines and a maximum number
+ * of results. The search stops as soon as either limit is reached.
+ */
+public final class SearchLimits {
+
+	/** No restriction: all lines, all results. */
+	public static final SearchLimits NONE = new SearchLimits(0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+	/** The first result only, as for <code>textDocument/definition</code>. */
+	public static final SearchLimits FIRST = new SearchLimits(0, Integer.MAX_VALUE, 1);
+
+	private final int fromLine;
+	private final int toLine;
+	private final int maxResults;
+
+	/**
+	 * @param fromLine
+	 *            the first line searched
+	 * @param toLine
+	 *            the line after the last line searched
+	 * @param maxResults
+	 *            the maximum number of results reported
+	 */
+	public SearchLimits(int fromLine, int toLine, int maxResults) {
+		this.fromLine = Math.max(0, fromLine);
+		this.toLine = toLine;
+		this.maxResults = maxResults;
+	}
+
+	/**
+	 * @param radius
+	 *            the number of lines searched before and after the given
+	 *            line, or a negative value for the whole document
+	 * @param maxResults
+	 *            the maximum number of results, or a negative value for no
+	 *            limit
+	 * @return the limits for a search around the given line
+	 */
+	public static SearchLimits around(int line, int radius, int maxResults) {
+		int max = maxResults < 0 ? Integer.MAX_VALUE : maxResults;
+		if (radius < 0) {
+			return new SearchLimits(0, Integer.MAX_VALUE, max);
+		}
+		return new SearchLimits(line - radius, (int) Math.min(Integer.MAX_VALUE, (long) line + radius + 1), max);
+	}
+
+	public int getFromLine() {
+		return fromLine;
+	}
+
+	public int getToLine() {
+		return toLine;
+	}
+
+	public int getMaxResults() {
+		return maxResults;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + fromLine + ", " + toLine + ") max " + maxResults;
+	}
+}
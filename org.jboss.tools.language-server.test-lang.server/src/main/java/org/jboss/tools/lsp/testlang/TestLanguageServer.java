@@ -14,9 +14,12 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -29,7 +32,6 @@ import org.eclipse.lsp4j.InitializeResult;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.MessageType;
-import org.eclipse.lsp4j.PublishDiagnosticsParams;
 import org.eclipse.lsp4j.ServerCapabilities;
 import org.eclipse.lsp4j.ShowMessageRequestParams;
 import org.eclipse.lsp4j.SignatureHelpOptions;
@@ -39,13 +41,25 @@ import org.eclipse.lsp4j.services.TextDocumentService;
 import org.eclipse.lsp4j.services.WorkspaceService;
 import org.jboss.tools.lsp.ext.ExtendedLanguageClient;
 import org.jboss.tools.lsp.ext.ExtendedLanguageServer;
+import org.jboss.tools.lsp.ext.MetricsReport;
+import org.jboss.tools.lsp.ext.PartialResultParams;
 import org.jboss.tools.lsp.ext.ServiceStatus;
 import org.jboss.tools.lsp.ext.StatusReport;
+import org.jboss.tools.lsp.testlang.diagnostics.DiagnosticsPublisher;
 import org.jboss.tools.lsp.testlang.handlers.TestTextDocumentService;
 import org.jboss.tools.lsp.testlang.handlers.TestWorkspaceService;
+import org.jboss.tools.lsp.testlang.metrics.Metrics;
+import org.jboss.tools.lsp.testlang.workspace.FileChangeListener;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceFileCache;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceIndex;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceIndexer;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceWatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
 import jnr.unixsocket.UnixSocketChannel;
 
 /**
@@ -57,6 +71,8 @@ public class TestLanguageServer implements ExtendedLanguageServer {
     private static final Logger LOGGER = LoggerFactory.getLogger(TestLanguageServer.class);
 
     private final DocumentManager     documentManager;
+    private final Metrics             metrics;
+    private final RequestScheduler    requestScheduler;
     private final TextDocumentService textDocumentService;
     private final WorkspaceService    workspaceService;
 
@@ -66,8 +82,42 @@ public class TestLanguageServer implements ExtendedLanguageServer {
 
 	private File root;
 
+    private WorkspaceIndexer workspaceIndexer;
+
+    private WorkspaceWatcher workspaceWatcher;
+
+    private final WorkspaceFileCache fileCache = new WorkspaceFileCache();
+
+    private final DiagnosticsPublisher diagnosticsPublisher;
+
+    private volatile boolean streaming;
+
     public static final String STDOUT_PIPE_NAME = "STDOUT_PIPE_NAME";
     public static final String STDIN_PIPE_NAME  = "STDIN_PIPE_NAME";
+    /**
+     * The directory where the workspace indexes are saved, by default
+     * <code>~/.test-lang-server/index</code>.
+     */
+    public static final String INDEX_DIR = "TESTLS_INDEX_DIR";
+    /** The window in milliseconds within which diagnostics of a document are coalesced. */
+    public static final String DIAGNOSTICS_DELAY = "TESTLS_DIAGNOSTICS_DELAY";
+    private static final long DEFAULT_DIAGNOSTICS_DELAY = 50;
+    /**
+     * Set to <code>true</code> to stream the results of references and code
+     * actions, as with the <code>streaming</code> initialization option.
+     */
+    public static final String STREAMING = "TESTLS_STREAMING";
+    /** The maximum number of locations or edits per partial result. */
+    public static final String PARTIAL_RESULT_SIZE = "TESTLS_PARTIAL_RESULT_SIZE";
+    /**
+     * Set to <code>true</code> to watch the workspace for changes on the
+     * server side, as with the <code>watchFiles</code> initialization option,
+     * for clients which do not send <code>workspace/didChangeWatchedFiles</code>.
+     */
+    public static final String WATCH_FILES = "TESTLS_WATCH_FILES";
+    private static final int DEFAULT_PARTIAL_RESULT_SIZE = 1000;
+    /** Set to <code>true</code> to expose the metrics through JMX. */
+    public static final String JMX = "TESTLS_JMX";
 
     /**
      * Launcher for the command-line.
@@ -89,9 +139,20 @@ public class TestLanguageServer implements ExtendedLanguageServer {
         UnixSocketChannel readChannel = Utils.createChannel(stdInName);
         UnixSocketChannel writeChannel = Utils.createChannel(stdOutName);
         LOGGER.info("Create Launcher");
-        Launcher<ExtendedLanguageClient> launcher = Launcher.createLauncher(this, ExtendedLanguageClient.class,
-                                                                            Channels.newInputStream(readChannel),
-                                                                            Channels.newOutputStream(writeChannel));
+        Launcher<ExtendedLanguageClient> launcher;
+        if (VirtualThreads.isEnabled()) {
+            // the message reader runs on a virtual thread, the requests are
+            // handed to the RequestScheduler which starts one per request
+            LOGGER.info("Using virtual threads");
+            launcher = Launcher.createLauncher(this, ExtendedLanguageClient.class,
+                                               Channels.newInputStream(readChannel),
+                                               Channels.newOutputStream(writeChannel),
+                                               VirtualThreads.newExecutor(), consumer -> consumer);
+        } else {
+            launcher = Launcher.createLauncher(this, ExtendedLanguageClient.class,
+                                               Channels.newInputStream(readChannel),
+                                               Channels.newOutputStream(writeChannel));
+        }
         connect(launcher.getRemoteProxy());
         LOGGER.info("Start listening for messages");
         processor = launcher.startListening();
@@ -113,8 +174,27 @@ public class TestLanguageServer implements ExtendedLanguageServer {
      */
     public TestLanguageServer(final DocumentManager documentManager) {
         this.documentManager = documentManager;
-        this.textDocumentService = new TestTextDocumentService(this);
-        this.workspaceService = new TestWorkspaceService();
+        this.metrics = new Metrics();
+        documentManager.setMetrics(metrics);
+        metrics.gauge("fileCache.bytes", fileCache::getCachedBytes);
+        metrics.gauge("fileCache.hits", fileCache::getHits);
+        metrics.gauge("fileCache.misses", fileCache::getMisses);
+        this.requestScheduler = new RequestScheduler(metrics);
+        documentManager.setSearchPool(requestScheduler.getSearchPool());
+        this.textDocumentService = new TestTextDocumentService(this, requestScheduler);
+        this.workspaceService = new TestWorkspaceService(this, requestScheduler);
+        this.diagnosticsPublisher = new DiagnosticsPublisher(params -> languageClient.publishDiagnostics(params),
+                Utils.getEnvVarOrSysProp(DIAGNOSTICS_DELAY, DEFAULT_DIAGNOSTICS_DELAY));
+        if (Boolean.parseBoolean(Utils.getEnvVarOrSysProp(JMX, "false"))) {
+            metrics.registerMBean();
+        }
+    }
+
+    /**
+     * @return the metrics of this server.
+     */
+    public Metrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -154,14 +234,42 @@ public class TestLanguageServer implements ExtendedLanguageServer {
         return languageClient.showMessageRequest(new ShowMessageRequestParams(Arrays.asList(new MessageActionItem(command))));
     }
 
+    /**
+     * Publishes the diagnostics of the given document. Diagnostics published
+     * for the same document in quick succession are coalesced, only the
+     * latest ones are sent.
+     */
     public void publishDiagnostics(String uri, List<Diagnostic> diagnostics) {
-        languageClient.publishDiagnostics(new PublishDiagnosticsParams(uri, diagnostics));
+        diagnosticsPublisher.publish(uri, diagnostics);
     }
 
     public void sendStatus(final ServiceStatus serverStatus, final String status) {
         languageClient.statusEvent(new StatusReport(serverStatus, status));
     }
 
+    /**
+     * Sends a chunk of the results of a request to the client.
+     */
+    public void sendPartialResult(PartialResultParams params) {
+        languageClient.partialResult(params);
+    }
+
+    /**
+     * @return <code>true</code> if the client asked for the results of
+     *         references and code actions to be sent in chunks with
+     *         {@link #sendPartialResult(PartialResultParams)}
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * @return the maximum number of locations or edits per partial result
+     */
+    public int getPartialResultSize() {
+        return Math.max(1, Utils.getEnvVarOrSysProp(PARTIAL_RESULT_SIZE, DEFAULT_PARTIAL_RESULT_SIZE));
+    }
+
     public void connect(ExtendedLanguageClient client) {
         this.languageClient = client;
     }
@@ -170,7 +278,11 @@ public class TestLanguageServer implements ExtendedLanguageServer {
     public CompletableFuture<InitializeResult> initialize(InitializeParams params) {
         String rootPath = params.getRootPath();
         this.root= new File(rootPath);
+        this.streaming = Boolean.parseBoolean(Utils.getEnvVarOrSysProp(STREAMING, "false"))
+                || isOptionSet(params.getInitializationOptions(), "streaming");
         triggerInitialization(rootPath);
+        startIndexer(Boolean.parseBoolean(Utils.getEnvVarOrSysProp(WATCH_FILES, "false"))
+                || isOptionSet(params.getInitializationOptions(), "watchFiles"));
         final InitializeResult result = new InitializeResult();
         final ServerCapabilities capabilities = new ServerCapabilities();
         capabilities.setTextDocumentSync(TextDocumentSyncKind.Incremental);
@@ -178,7 +290,7 @@ public class TestLanguageServer implements ExtendedLanguageServer {
         capabilities.setHoverProvider(Boolean.TRUE);
         capabilities.setDocumentSymbolProvider(Boolean.TRUE);
         capabilities.setDefinitionProvider(Boolean.TRUE);
-        capabilities.setWorkspaceSymbolProvider(Boolean.FALSE);
+        capabilities.setWorkspaceSymbolProvider(Boolean.TRUE);
         capabilities.setReferencesProvider(Boolean.TRUE);
         capabilities.setDocumentHighlightProvider(Boolean.TRUE);
         capabilities.setDocumentFormattingProvider(Boolean.FALSE);
@@ -192,14 +304,55 @@ public class TestLanguageServer implements ExtendedLanguageServer {
 
     }
 
+    private static boolean isOptionSet(Object options, String name) {
+        if (options instanceof JsonObject) {
+            JsonElement option = ((JsonObject) options).get(name);
+            return option != null && option.isJsonPrimitive() && option.getAsBoolean();
+        } else if (options instanceof Map) {
+            return Boolean.TRUE.equals(((Map<?, ?>) options).get(name));
+        }
+        return false;
+    }
+
     private void triggerInitialization(final String root) {
         LOGGER.info("Triggering initialization from {}", root);
         sendStatus(ServiceStatus.Starting, "Init...");
         sendStatus(ServiceStatus.Started, "Ready");
     }
 
+    private void startIndexer(boolean watchFiles) {
+        String indexDir = Utils.getEnvVarOrSysProp(INDEX_DIR,
+                Paths.get(System.getProperty("user.home"), ".test-lang-server", "index").toString());
+        // one index file per workspace root
+        Path storage = Paths.get(indexDir)
+                .resolve(Integer.toHexString(root.getAbsolutePath().hashCode()) + ".idx");
+        workspaceIndexer = new WorkspaceIndexer(root.toPath(), storage,
+                path -> documentManager.isOpen(path.toUri().toString()));
+        workspaceIndexer.start();
+        if (watchFiles) {
+            workspaceWatcher = new WorkspaceWatcher(root.toPath(),
+                    FileChangeListener.all(workspaceIndexer, fileCache));
+            try {
+                workspaceWatcher.start();
+            } catch (IOException e) {
+                LOGGER.error("Failed to watch workspace " + root, e);
+                workspaceWatcher.stop();
+                workspaceWatcher = null;
+            }
+        }
+    }
+
     @Override
     public CompletableFuture<Object> shutdown() {
+        if (workspaceWatcher != null) {
+            workspaceWatcher.stop();
+        }
+        if (workspaceIndexer != null) {
+            workspaceIndexer.shutdown();
+        }
+        diagnosticsPublisher.shutdown();
+        requestScheduler.shutdown();
+        metrics.unregisterMBean();
         return CompletableFuture.supplyAsync(() -> {
             if (processor != null) {
                 return processor.cancel(true);
@@ -228,6 +381,30 @@ public class TestLanguageServer implements ExtendedLanguageServer {
 		return root;
 	}
 
+    /**
+     * @return the workspace indexer, or <code>null</code> if the server has
+     *         not been initialized yet
+     */
+    public WorkspaceIndexer getWorkspaceIndexer() {
+        return workspaceIndexer;
+    }
+
+    /**
+     * @return the cache of the content of workspace files, shared by the
+     *         features reading files which are not open
+     */
+    public WorkspaceFileCache getFileCache() {
+        return fileCache;
+    }
+
+    /**
+     * @return the workspace index, or <code>null</code> if the server has not
+     *         been initialized yet
+     */
+    public WorkspaceIndex getWorkspaceIndex() {
+        return workspaceIndexer == null ? null : workspaceIndexer.getIndex();
+    }
+
     @Override
     public CompletableFuture<String> getDocument(String uri) {
         try {
@@ -237,4 +414,9 @@ public class TestLanguageServer implements ExtendedLanguageServer {
         }
     }
 
+    @Override
+    public CompletableFuture<MetricsReport> metrics() {
+        return CompletableFuture.completedFuture(metrics.getReport());
+    }
+
 }
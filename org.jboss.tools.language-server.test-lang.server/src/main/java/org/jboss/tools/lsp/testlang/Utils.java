@@ -6,6 +6,7 @@ import java.io.Reader;
 import java.text.MessageFormat;
 import java.util.function.BiConsumer;
 
+import org.jboss.tools.lsp.testlang.text.LineScanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +39,71 @@ public class Utils {
 		throw new IllegalStateException(MessageFormat.format("Could not find required env var or sys prop {0}", key));
 	}
 
+	/**
+	 * Obtains the environment variable or system property, with preference to
+	 * the system property in the case both are defined.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return the value that was found, or the given default value
+	 */
+	public static String getEnvVarOrSysProp(final String key, final String defaultValue) {
+		final String property = System.getProperty(key);
+		if (property != null) {
+			return property;
+		}
+		final String env = System.getenv(key);
+		if (env != null) {
+			return env;
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Obtains the integer value of the environment variable or system
+	 * property, with preference to the system property in the case both are
+	 * defined.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return the value that was found, or the given default value if none
+	 *         was found or the value is not a number
+	 */
+	public static int getEnvVarOrSysProp(final String key, final int defaultValue) {
+		final String value = getEnvVarOrSysProp(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Invalid value for {}: {}", key, value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Obtains the long value of the environment variable or system property,
+	 * with preference to the system property in the case both are defined.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return the value that was found, or the given default value if none
+	 *         was found or the value is not a number
+	 */
+	public static long getEnvVarOrSysProp(final String key, final long defaultValue) {
+		final String value = getEnvVarOrSysProp(key, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Invalid value for {}: {}", key, value);
+			return defaultValue;
+		}
+	}
+
 	public static UnixSocketChannel createChannel(String fileName) throws IOException {
 		try {
 			File file = new File(fileName);
@@ -53,29 +119,19 @@ public class Utils {
 		}
 	}
 
+	/**
+	 * Reads the given contents and passes each line to the consumer.
+	 *
+	 * @see LineScanner
+	 */
 	public static void parse(Reader contents, BiConsumer<String, Integer> lineConsumer) throws IOException {
-		StringBuilder b = new StringBuilder();
-		int line = 0;
-		int ch = contents.read();
-		while (ch >= 0) {
-			if (ch == '\r') {
-				ch = contents.read();
-				if (ch == '\n') {
-					ch = contents.read();
-				}
-				lineConsumer.accept(b.toString(), line++);
-				b = new StringBuilder();
-			} else {
-				if (ch == '\n') {
-					lineConsumer.accept(b.toString(), line++);
-					b = new StringBuilder();
-				} else {
-					b.append((char)ch);
-				}
-				ch= contents.read();
-			}
+		StringBuilder text = new StringBuilder();
+		char[] buffer = new char[8192];
+		int read;
+		while ((read = contents.read(buffer)) >= 0) {
+			text.append(buffer, 0, read);
 		}
-		lineConsumer.accept(b.toString(), line++);
+		LineScanner.scan(text, (start, end, line) -> lineConsumer.accept(text.substring(start, end), line));
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Access to the virtual threads of Java 21 and later. The server is built for
+ * Java 8, so the factory is looked up reflectively; on older runtimes virtual
+ * threads are simply not available and the platform thread pools are used.
+ */
+public final class VirtualThreads {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+
+	/** Set to <code>true</code> to run requests and file scans on virtual threads. */
+	public static final String VIRTUAL_THREADS = "TESTLS_VIRTUAL_THREADS";
+
+	private static final Method NEW_EXECUTOR = findFactory();
+	private static final boolean ENABLED = resolveEnabled();
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * @return <code>true</code> if virtual threads have been requested and are
+	 *         available on this runtime. The setting is read once, when the
+	 *         class is loaded.
+	 */
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	private static boolean resolveEnabled() {
+		if (!Boolean.parseBoolean(Utils.getEnvVarOrSysProp(VIRTUAL_THREADS, "false"))) {
+			return false;
+		}
+		if (NEW_EXECUTOR == null) {
+			LOGGER.warn("Virtual threads are not available on Java {}", System.getProperty("java.version"));
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return an executor starting a new virtual thread for each task
+	 * @throws IllegalStateException
+	 *             if virtual threads are not available
+	 */
+	public static ExecutorService newExecutor() {
+		if (NEW_EXECUTOR == null) {
+			throw new IllegalStateException("Virtual threads are not available");
+		}
+		try {
+			return (ExecutorService) NEW_EXECUTOR.invoke(null);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException("Could not create a virtual thread executor", e);
+		}
+	}
+
+	private static Method findFactory() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.jboss.tools.lsp.testlang.DocumentSnapshot;
+import org.jboss.tools.lsp.testlang.text.LineScanner;
+import org.jboss.tools.lsp.testlang.text.LineTree;
+import org.jboss.tools.lsp.testlang.text.MultiStringMatcher;
+import org.jboss.tools.lsp.testlang.text.SegmentedSearch;
+import org.jboss.tools.lsp.testlang.text.TextBuffer;
+
+/**
+ * Computes the <code>badWord</code> diagnostics of the open documents.
+ * <p>
+ * The rules of a document are set when its <code>textDocument/badWord</code>
+ * lines are executed. The matches of each line are kept in a
+ * {@link LineTree} parallel to the lines of the document, so that a
+ * <code>didChange</code> only re-matches the changed lines, while the matches
+ * of the other lines move along with them. The diagnostics of all rules are
+ * published together, once per update. The words of all rules are matched in
+ * a single pass over each line with a {@link MultiStringMatcher}. Matching all
+ * lines of a large
+ * document is split over the threads of the given pool with
+ * {@link SegmentedSearch}.
+ */
+public class DiagnosticsEngine {
+
+	private static final int[] NO_MATCHES = new int[0];
+	private static final ToIntFunction<int[]> MATCH_WEIGHER = matches -> matches.length;
+
+	/**
+	 * Marks the occurrences of a word with a diagnostic.
+	 */
+	public static final class Rule {
+		final DiagnosticSeverity severity;
+		final String word;
+		final String message;
+
+		public Rule(DiagnosticSeverity severity, String word, String message) {
+			this.severity = severity;
+			this.word = word;
+			this.message = message;
+		}
+	}
+
+	private static final class DocumentDiagnostics {
+		final List<Rule> rules;
+		final MultiStringMatcher matcher;
+		/**
+		 * the matches of each line, packed as <code>(rule, column)</code>
+		 * pairs and weighed by their length, so that publishing skips the
+		 * lines without matches
+		 */
+		LineTree<int[]> matches;
+		boolean published;
+
+		DocumentDiagnostics(List<Rule> rules) {
+			this.rules = rules;
+			List<String> words = new ArrayList<>(rules.size());
+			for (Rule rule : rules) {
+				words.add(rule.word);
+			}
+			this.matcher = MultiStringMatcher.compile(words);
+		}
+	}
+
+	private final Map<String, DocumentDiagnostics> documents = new ConcurrentHashMap<>();
+	private final BiConsumer<String, List<Diagnostic>> publisher;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates an engine matching all lines on the calling thread.
+	 *
+	 * @param publisher
+	 *            sends the diagnostics of a document to the client
+	 */
+	public DiagnosticsEngine(BiConsumer<String, List<Diagnostic>> publisher) {
+		this(publisher, null);
+	}
+
+	/**
+	 * @param publisher
+	 *            sends the diagnostics of a document to the client
+	 * @param pool
+	 *            matches the lines of large documents in parallel, or
+	 *            <code>null</code> to match them on the calling thread
+	 */
+	public DiagnosticsEngine(BiConsumer<String, List<Diagnostic>> publisher, ForkJoinPool pool) {
+		this.publisher = publisher;
+		this.pool = pool;
+	}
+
+	/**
+	 * Replaces the rules of the given document, recomputes all its
+	 * diagnostics and publishes them. Nothing is published if the document
+	 * had no diagnostics and has no rules.
+	 */
+	public void setRules(String uri, List<Rule> rules, List<String> lines) {
+		if (rules.isEmpty()) {
+			DocumentDiagnostics previous = documents.remove(uri);
+			if (previous != null && previous.published) {
+				publisher.accept(uri, Collections.emptyList());
+			}
+			return;
+		}
+		DocumentDiagnostics document = new DocumentDiagnostics(new ArrayList<>(rules));
+		synchronized (document) {
+			document.matches = LineTree.of(match(document.matcher, lines, 0, lines.size()), MATCH_WEIGHER);
+			documents.put(uri, document);
+			publish(uri, document, true);
+		}
+	}
+
+	/**
+	 * Updates the diagnostics of a document after the given changes have been
+	 * applied to it. Only the lines touched by the changes are matched again.
+	 *
+	 * @param snapshot
+	 *            the snapshot of the document with the changes applied
+	 */
+	public void didChange(String uri, List<TextDocumentContentChangeEvent> changes, DocumentSnapshot snapshot) {
+		DocumentDiagnostics document = documents.get(uri);
+		if (document == null || snapshot == null) {
+			return;
+		}
+		synchronized (document) {
+			TextBuffer text = snapshot.getText();
+			LineTree<int[]> matches = document.matches;
+			// the line ranges to match again, as sorted, disjoint [from, to) pairs
+			List<int[]> dirty = new ArrayList<>();
+			for (TextDocumentContentChangeEvent change : changes) {
+				Range range = change.getRange();
+				if (range == null) {
+					matches = null;
+					break;
+				}
+				int lineCount = matches.size();
+				int from = Math.min(range.getStart().getLine(), lineCount);
+				int oldTo = Math.min(range.getEnd().getLine() + 1, lineCount);
+				int inserted = LineScanner.count(change.getText());
+				matches = matches.replace(from, oldTo, Collections.nCopies(inserted, NO_MATCHES));
+				addDirtyRange(dirty, from, oldTo, from + inserted);
+			}
+			if (matches == null || matches.size() != text.getLineCount()) {
+				matches = LineTree.of(match(document.matcher, text.asList(), 0, text.getLineCount()), MATCH_WEIGHER);
+			} else {
+				for (int[] range : dirty) {
+					matches = matches.replace(range[0], range[1], match(document.matcher, text.asList(), range[0], range[1]));
+				}
+			}
+			document.matches = matches;
+			publish(uri, document, document.published);
+		}
+	}
+
+	public void didClose(String uri) {
+		documents.remove(uri);
+	}
+
+	/**
+	 * Records that the lines <code>[from, oldTo)</code> have been replaced by
+	 * <code>[from, newTo)</code>, moving and merging the dirty ranges of the
+	 * previous changes.
+	 */
+	private static void addDirtyRange(List<int[]> dirty, int from, int oldTo, int newTo) {
+		int delta = newTo - oldTo;
+		int start = from;
+		int end = newTo;
+		List<int[]> result = new ArrayList<>(dirty.size() + 1);
+		for (int[] range : dirty) {
+			if (range[1] < from) {
+				result.add(range);
+			} else if (range[0] > oldTo) {
+				result.add(new int[] { range[0] + delta, range[1] + delta });
+			} else {
+				// overlaps or touches the replaced lines
+				start = Math.min(start, range[0]);
+				end = Math.max(end, range[1] <= oldTo ? newTo : range[1] + delta);
+			}
+		}
+		int index = 0;
+		while (index < result.size() && result.get(index)[0] < start) {
+			index++;
+		}
+		result.add(index, new int[] { start, end });
+		dirty.clear();
+		dirty.addAll(result);
+	}
+
+	private List<int[]> match(MultiStringMatcher matcher, List<String> lines, int from, int to) {
+		if (pool == null || !SegmentedSearch.isParallel(to - from)) {
+			return matchSegment(matcher, lines, from, to);
+		}
+		List<int[]> result = new ArrayList<>(to - from);
+		for (List<int[]> segment : SegmentedSearch.search(pool, from, to,
+				(segmentFrom, segmentTo) -> matchSegment(matcher, lines, segmentFrom, segmentTo))) {
+			result.addAll(segment);
+		}
+		return result;
+	}
+
+	private static List<int[]> matchSegment(MultiStringMatcher matcher, List<String> lines, int from, int to) {
+		List<int[]> result = new ArrayList<>(to - from);
+		for (String line : lines.subList(from, to)) {
+			result.add(match(matcher, line));
+		}
+		return result;
+	}
+
+	private static int[] match(MultiStringMatcher matcher, String line) {
+		LineMatches matches = new LineMatches();
+		matcher.match(line, matches);
+		return matches.toArray();
+	}
+
+	/**
+	 * Collects the matches of a line as <code>(rule, column)</code> pairs,
+	 * ordered by rule and then by column.
+	 */
+	private static final class LineMatches implements MultiStringMatcher.MatchConsumer {
+		int[] matches = NO_MATCHES;
+		int count;
+
+		@Override
+		public void accept(int rule, int start) {
+			if (count == matches.length) {
+				matches = Arrays.copyOf(matches, Math.max(4, count * 2));
+			}
+			// the matcher reports by end column: insert after the matches of
+			// lower or equal rules, which keeps the columns of a rule in order
+			int index = count;
+			while (index > 0 && matches[index - 2] > rule) {
+				matches[index] = matches[index - 2];
+				matches[index + 1] = matches[index - 1];
+				index -= 2;
+			}
+			matches[index] = rule;
+			matches[index + 1] = start;
+			count += 2;
+		}
+
+		int[] toArray() {
+			return count == matches.length ? matches : Arrays.copyOf(matches, count);
+		}
+	}
+
+	/**
+	 * @param force
+	 *            publish even if there are no diagnostics
+	 */
+	private void publish(String uri, DocumentDiagnostics document, boolean force) {
+		int count = document.matches.weight() / 2;
+		if (count == 0 && !force) {
+			return;
+		}
+		List<Diagnostic> diagnostics = new ArrayList<>(count);
+		document.matches.forEachWeighted((line, matches) -> {
+			for (int i = 0; i < matches.length; i += 2) {
+				diagnostics.add(createDiagnostic(document.rules.get(matches[i]), line, matches[i + 1]));
+			}
+		});
+		if (diagnostics.isEmpty() && !force) {
+			return;
+		}
+		document.published = !diagnostics.isEmpty();
+		publisher.accept(uri, diagnostics);
+	}
+
+	private static Diagnostic createDiagnostic(Rule rule, int line, int start) {
+		Diagnostic diagnostic = new Diagnostic();
+		diagnostic.setCode("badWord");
+		diagnostic.setSeverity(rule.severity);
+		diagnostic.setRange(new Range(new Position(line, start), new Position(line, start + rule.word.length())));
+		diagnostic.setMessage(rule.message);
+		return diagnostic;
+	}
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.diagnostics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+
+/**
+ * Coalesces the diagnostics published for a document. The first update of a
+ * document opens a window of a fixed length; updates arriving within the
+ * window replace the pending diagnostics, and only the latest ones are sent
+ * when the window closes. So at most one notification per document is sent
+ * per window, and superseded diagnostics are never serialized.
+ */
+public class DiagnosticsPublisher {
+
+	private static final class Pending {
+		volatile List<Diagnostic> diagnostics;
+
+		Pending(List<Diagnostic> diagnostics) {
+			this.diagnostics = diagnostics;
+		}
+	}
+
+	private final Consumer<PublishDiagnosticsParams> client;
+	private final long delayMillis;
+	private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "test-lang-diagnostics");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * @param client
+	 *            sends the notification to the client
+	 * @param delayMillis
+	 *            the length of the window, diagnostics are sent immediately
+	 *            if it is <code>0</code>
+	 */
+	public DiagnosticsPublisher(Consumer<PublishDiagnosticsParams> client, long delayMillis) {
+		this.client = client;
+		this.delayMillis = delayMillis;
+	}
+
+	public void publish(String uri, List<Diagnostic> diagnostics) {
+		if (delayMillis <= 0 || executor.isShutdown()) {
+			client.accept(new PublishDiagnosticsParams(uri, diagnostics));
+			return;
+		}
+		pending.compute(uri, (key, current) -> {
+			if (current != null) {
+				current.diagnostics = diagnostics;
+				return current;
+			}
+			executor.schedule(() -> send(uri), delayMillis, TimeUnit.MILLISECONDS);
+			return new Pending(diagnostics);
+		});
+	}
+
+	/**
+	 * Sends all pending diagnostics and stops the publisher.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		for (String uri : pending.keySet()) {
+			send(uri);
+		}
+	}
+
+	private void send(String uri) {
+		Pending current = pending.remove(uri);
+		if (current != null) {
+			client.accept(new PublishDiagnosticsParams(uri, current.diagnostics));
+		}
+	}
+}
@@ -9,15 +9,30 @@ import org.slf4j.LoggerFactory;
 
 public abstract class AbstractCommand {
   public static final Logger LOGGER = LoggerFactory.getLogger(AbstractCommand.class);
+  private static final String META_CHARACTERS = "\\[](){}.*+?^$|";
   private String name;
   private Pattern pattern;
+  private String prefix;
 
   public AbstractCommand(String name, String matchString) {
     this.name= name;
     this.pattern = Pattern.compile(matchString);
+    this.prefix = literalPrefix(matchString);
   }
 
   public boolean maybeExecute(TextDocumentIdentifier document, String line) {
+    String[] groups = match(line);
+    if (groups != null) {
+      execute(groups, document);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return the groups of the command if it matches the given line, <code>null</code> otherwise
+   */
+  public String[] match(String line) {
     Matcher matcher = pattern.matcher(line);
     if (matcher.matches()) {
       LOGGER.info("matched command '"+name+"'");
@@ -25,11 +40,33 @@ public abstract class AbstractCommand {
       for (int i = 0; i < groups.length; i++) {
         groups[i] = matcher.group(i + 1);
       }
-      execute(groups, document);
-      return true;
+      return groups;
     }
-    return false;
+    return null;
+  }
+
+  /**
+   * @return a literal text every line matched by this command starts with, possibly empty
+   */
+  public String getPrefix() {
+    return prefix;
   }
 
   protected abstract void execute(String[] groups, TextDocumentIdentifier document);
+
+  static String literalPrefix(String regex) {
+    if (regex.indexOf('|') >= 0) {
+      // an alternation may start with anything
+      return "";
+    }
+    int end = 0;
+    while (end < regex.length() && META_CHARACTERS.indexOf(regex.charAt(end)) < 0) {
+      end++;
+    }
+    if (end > 0 && end < regex.length() && "*?{".indexOf(regex.charAt(end)) >= 0) {
+      // the last character is optional
+      end--;
+    }
+    return regex.substring(0, end);
+  }
 }
@@ -0,0 +1,124 @@
+package org.jboss.tools.lsp.testlang.handlers;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+
+/**
+ * Finds and executes the commands in the lines of a document. The literal
+ * prefixes of the commands are kept in a trie, so that for most lines no
+ * regular expression has to be evaluated at all, and at most the commands
+ * whose prefix matches are tried, in their original order.
+ *
+ * <p>The lines of large documents are matched in parallel on the given pool, if any.
+ */
+public class CommandDispatcher {
+
+  /** Documents with more lines than this are matched in parallel. */
+  private static final int PARALLEL_THRESHOLD = 4096;
+
+  private static final class TrieNode {
+    final Map<Character, TrieNode> children = new HashMap<>();
+    /** the indices of the commands whose prefix ends at this node */
+    final BitSet commands = new BitSet();
+  }
+
+  private static final class Match {
+    final AbstractCommand command;
+    final String[] groups;
+
+    Match(AbstractCommand command, String[] groups) {
+      this.command = command;
+      this.groups = groups;
+    }
+  }
+
+  private final AbstractCommand[] commands;
+  private final TrieNode root = new TrieNode();
+  private final ForkJoinPool pool;
+
+  /** Creates a dispatcher matching all lines on the calling thread. */
+  public CommandDispatcher(AbstractCommand[] commands) {
+    this(commands, null);
+  }
+
+  /**
+   * Creates a dispatcher matching the lines of large documents in parallel on the given pool.
+   */
+  public CommandDispatcher(AbstractCommand[] commands, ForkJoinPool pool) {
+    this.commands = commands;
+    this.pool = pool;
+    for (int i = 0; i < commands.length; i++) {
+      TrieNode node = root;
+      for (char c : commands[i].getPrefix().toCharArray()) {
+        node = node.children.computeIfAbsent(c, k -> new TrieNode());
+      }
+      node.commands.set(i);
+    }
+  }
+
+  /**
+   * Executes the first matching command of each line, in document order.
+   */
+  public void execute(TextDocumentIdentifier document, List<String> lines) {
+    List<Match> matches;
+    if (pool != null && lines.size() > PARALLEL_THRESHOLD) {
+      // only the matching runs in parallel, commands are executed in order. A parallel stream
+      // started from a task of the pool forks its work on that pool.
+      matches =
+          pool.submit(
+                  () ->
+                      IntStream.range(0, lines.size())
+                          .parallel()
+                          .mapToObj(i -> match(lines.get(i)))
+                          .filter(Objects::nonNull)
+                          .collect(Collectors.toList()))
+              .join();
+    } else {
+      matches = new ArrayList<>();
+      for (String line : lines) {
+        Match match = match(line);
+        if (match != null) {
+          matches.add(match);
+        }
+      }
+    }
+    for (Match match : matches) {
+      match.command.execute(match.groups, document);
+    }
+  }
+
+  private Match match(String line) {
+    BitSet candidates = null;
+    TrieNode node = root;
+    for (int i = 0; ; i++) {
+      if (!node.commands.isEmpty()) {
+        if (candidates == null) {
+          candidates = new BitSet();
+        }
+        candidates.or(node.commands);
+      }
+      if (i == line.length() || (node = node.children.get(line.charAt(i))) == null) {
+        break;
+      }
+    }
+    if (candidates == null) {
+      return null;
+    }
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      String[] groups = commands[i].match(line);
+      if (groups != null) {
+        return new Match(commands[i], groups);
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.handlers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextEdit;
+import org.jboss.tools.lsp.ext.PartialResultParams;
+
+/**
+ * Sends the results of one request to the client in chunks of a bounded
+ * number of items, so neither the server nor the client has to hold the
+ * complete result. Items may be added concurrently; {@link #close()} sends
+ * the last chunk.
+ */
+public class PartialResultStream {
+
+	private static final AtomicLong TOKENS = new AtomicLong();
+
+	private final Consumer<PartialResultParams> sender;
+	private final String token = "partial-" + TOKENS.incrementAndGet();
+	private final String method;
+	private final String uri;
+	private final Position position;
+	private final Range range;
+	private final int chunkSize;
+
+	private List<Location> locations;
+	private Map<String, List<TextEdit>> changes;
+	private int size;
+
+	/**
+	 * @param method
+	 *            the method of the request
+	 * @param uri
+	 *            the document of the request
+	 * @param position
+	 *            the position of the request, or <code>null</code>
+	 * @param range
+	 *            the range of the request, or <code>null</code>
+	 * @param chunkSize
+	 *            the maximum number of locations or edits per chunk
+	 */
+	public PartialResultStream(Consumer<PartialResultParams> sender, String method, String uri, Position position,
+			Range range, int chunkSize) {
+		this.sender = sender;
+		this.method = method;
+		this.uri = uri;
+		this.position = position;
+		this.range = range;
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	public String getToken() {
+		return token;
+	}
+
+	public synchronized void addLocation(Location location) {
+		if (locations == null) {
+			locations = new ArrayList<>();
+		}
+		locations.add(location);
+		if (++size >= chunkSize) {
+			send(false);
+		}
+	}
+
+	/**
+	 * Adds the edits of a document, splitting them over several chunks if
+	 * needed.
+	 */
+	public synchronized void addEdits(String document, List<TextEdit> edits) {
+		for (TextEdit edit : edits) {
+			if (changes == null) {
+				changes = new HashMap<>();
+			}
+			changes.computeIfAbsent(document, d -> new ArrayList<>()).add(edit);
+			if (++size >= chunkSize) {
+				send(false);
+			}
+		}
+	}
+
+	/**
+	 * Sends the remaining items, marked as the last chunk.
+	 */
+	public synchronized void close() {
+		send(true);
+	}
+
+	private void send(boolean done) {
+		sender.accept(new PartialResultParams(token, method, uri, position, range, locations, changes, done));
+		locations = null;
+		changes = null;
+		size = 0;
+	}
+}
@@ -1,54 +1,149 @@
 package org.jboss.tools.lsp.testlang.handlers;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.UncheckedIOException;
-import java.nio.file.FileVisitOption;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
-import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextEdit;
 import org.eclipse.lsp4j.WorkspaceEdit;
-import org.jboss.tools.lsp.testlang.Utils;
+import org.jboss.tools.lsp.testlang.CancellationToken;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceFileCache;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceIndex;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceScanner;
 
 public class ReplaceInWorkspaceHandler {
 
+	/** scans for the callers which have no scheduler, such as tests and benchmarks */
+	private static final WorkspaceScanner DEFAULT_SCANNER = WorkspaceScanner.create();
+
+	/**
+	 * Where to look for the occurrences to replace: the <code>.test</code>
+	 * files below the workspace root, narrowed down by the index if one is
+	 * given, read from the cache if one is given, until the token is
+	 * cancelled. The index does not follow the files open in the editor, so
+	 * these are always searched. The files are scanned by the given scanner,
+	 * or on the common pool if there is none.
+	 */
+	public static final class Scope {
+		private final File root;
+		private final WorkspaceScanner scanner;
+		private final WorkspaceIndex index;
+		private final Collection<Path> openFiles;
+		private final WorkspaceFileCache cache;
+		private final CancellationToken token;
+
+		private Scope(File root, WorkspaceScanner scanner, WorkspaceIndex index, Collection<Path> openFiles,
+				WorkspaceFileCache cache, CancellationToken token) {
+			this.root = root;
+			this.scanner = scanner;
+			this.index = index;
+			this.openFiles = openFiles;
+			this.cache = cache;
+			this.token = token;
+		}
+
+		public static Scope of(File root) {
+			return new Scope(root, DEFAULT_SCANNER, null, Collections.emptyList(), null, CancellationToken.NONE);
+		}
+
+		public Scope withScanner(WorkspaceScanner scanner) {
+			return new Scope(root, scanner, index, openFiles, cache, token);
+		}
+
+		/**
+		 * @param index
+		 *            the workspace index, or <code>null</code> to scan all files
+		 */
+		public Scope withIndex(WorkspaceIndex index) {
+			return new Scope(root, scanner, index, openFiles, cache, token);
+		}
+
+		/**
+		 * @param openFiles
+		 *            the files open in the editor, searched whatever the index
+		 *            says
+		 */
+		public Scope withOpenFiles(Collection<Path> openFiles) {
+			return new Scope(root, scanner, index, openFiles, cache, token);
+		}
+
+		/**
+		 * @param cache
+		 *            the file cache, or <code>null</code> to read the files
+		 */
+		public Scope withCache(WorkspaceFileCache cache) {
+			return new Scope(root, scanner, index, openFiles, cache, token);
+		}
+
+		public Scope withToken(CancellationToken token) {
+			return new Scope(root, scanner, index, openFiles, cache, token);
+		}
+	}
+
 	public static WorkspaceEdit renameInWorkspace(File root, String original, String replacement) throws IOException {
-		Map<String, List<TextEdit>> editMap = new HashMap<>();
-		try {
-			Files.walk(root.toPath(), FileVisitOption.FOLLOW_LINKS).filter(p -> p.toString().endsWith(".test"))
-					.forEach(path -> {
-						List<TextEdit> changes = new ArrayList<>();
-						try (Reader r = new BufferedReader(new FileReader(path.toFile()))) {
-							Utils.parse(r, (line, lineNumber) -> {
-								int pos= line.indexOf(original);
-								while (pos >= 0) {
-									TextEdit edit= new TextEdit();
-									edit.setRange(new Range(new Position(lineNumber, pos), new Position(lineNumber, pos+original.length())));
-									edit.setNewText(replacement);
-									changes.add(edit);
-									pos= line.indexOf(original, pos+original.length());
-								}
-							});
-							if (changes.size() > 0) {
-								editMap.put(path.toUri().toString(), changes);
-							}
-						} catch (IOException e) {
-							throw new UncheckedIOException(e);
-						}
-					});
-			;
-			return new WorkspaceEdit(editMap);
-		} catch (UncheckedIOException e) {
-			throw e.getCause();
+		return renameInWorkspace(Scope.of(root), original, replacement);
+	}
+
+	/**
+	 * Replaces all occurrences of <code>original</code> in the
+	 * <code>.test</code> files of the given scope. Only the files the index
+	 * reports as candidates are read, unless the index is not available yet.
+	 *
+	 * @throws java.util.concurrent.CancellationException
+	 *             if the token is cancelled before the scan is complete
+	 */
+	public static WorkspaceEdit renameInWorkspace(Scope scope, String original, String replacement)
+			throws IOException {
+		Map<String, List<TextEdit>> editMap = new ConcurrentHashMap<>();
+		renameInWorkspace(scope, original, replacement, editMap::put);
+		return new WorkspaceEdit(new HashMap<>(editMap));
+	}
+
+	/**
+	 * Same as {@link #renameInWorkspace(Scope, String, String)}, handing the
+	 * edits of each file to the consumer as soon as the file has been scanned
+	 * instead of collecting them.
+	 *
+	 * @param consumer
+	 *            receives the URI and the edits of each file. It is called
+	 *            concurrently.
+	 */
+	public static void renameInWorkspace(Scope scope, String original, String replacement,
+			BiConsumer<String, List<TextEdit>> consumer) throws IOException {
+		BiConsumer<Path, List<Range>> collector = (path, ranges) -> {
+			List<TextEdit> changes = new ArrayList<>(ranges.size());
+			for (Range range : ranges) {
+				TextEdit edit= new TextEdit();
+				edit.setRange(range);
+				edit.setNewText(replacement);
+				changes.add(edit);
+			}
+			consumer.accept(path.toUri().toString(), changes);
+		};
+		WorkspaceScanner scanner = scope.cache == null ? scope.scanner : scope.scanner.withCache(scope.cache);
+		Collection<Path> candidates = scope.index == null ? null : scope.index.findCandidates(original);
+		if (candidates != null) {
+			Set<Path> files = new LinkedHashSet<>(candidates);
+			Path root = scope.root.toPath();
+			for (Path path : scope.openFiles) {
+				if (WorkspaceIndex.isIndexed(path) && path.startsWith(root)) {
+					files.add(path);
+				}
+			}
+			scanner.scan(files, original, scope.token, collector);
+		} else {
+			scanner.scan(scope.root.toPath(), original, scope.token, collector);
 		}
 	}
 }
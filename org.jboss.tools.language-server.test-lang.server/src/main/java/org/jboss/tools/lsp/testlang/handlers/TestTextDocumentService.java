@@ -11,16 +11,17 @@ package org.jboss.tools.lsp.testlang.handlers;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import org.eclipse.lsp4j.CodeActionParams;
 import org.eclipse.lsp4j.CodeLens;
@@ -58,8 +59,18 @@ import org.eclipse.lsp4j.TextEdit;
 import org.eclipse.lsp4j.WorkspaceEdit;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.services.TextDocumentService;
+import org.jboss.tools.lsp.testlang.CancellationToken;
 import org.jboss.tools.lsp.testlang.DocumentManager;
+import org.jboss.tools.lsp.testlang.DocumentSnapshot;
+import org.jboss.tools.lsp.testlang.RequestScheduler;
+import org.jboss.tools.lsp.testlang.SearchLimits;
 import org.jboss.tools.lsp.testlang.TestLanguageServer;
+import org.jboss.tools.lsp.testlang.Utils;
+import org.jboss.tools.lsp.testlang.diagnostics.DiagnosticsEngine;
+import org.jboss.tools.lsp.testlang.metrics.Metrics;
+import org.jboss.tools.lsp.testlang.text.WordOccurrence;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceIndexer;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceScanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -110,43 +121,10 @@ public class TestTextDocumentService implements TextDocumentService {
                 message,
                 severity.toString().toLowerCase());
 
-            List<Diagnostic> diagnostics = new ArrayList<>();
-            try {
-              List<String> content =
-                  testLanguageServer.getDocumentManager().getContent(document.getUri());
-              int l = 0;
-              for (String line : content) {
-                int c = 0;
-                while (c < line.length()) {
-                  int start = line.indexOf(groups[1], c);
-                  if (start >= 0) {
-                    diagnostics.add(
-                        createDiagnostic(severity, l, start, groups[1].length(), message));
-                    c = start + groups[1].length();
-                  } else {
-                    break;
-                  }
-                }
-                l++;
-              }
-            } catch (IOException | URISyntaxException e) {
-              diagnostics.add(
-                  createDiagnostic(
-                      DiagnosticSeverity.Error, 0, 0, 0, "Could not compute diagnostics"));
+            List<DiagnosticsEngine.Rule> rules = pendingRules.get(document.getUri());
+            if (rules != null) {
+              rules.add(new DiagnosticsEngine.Rule(severity, groups[1], message));
             }
-
-            testLanguageServer.publishDiagnostics(document.getUri(), diagnostics);
-          }
-
-          private Diagnostic createDiagnostic(
-              DiagnosticSeverity severity, int line, int start, int length, String message) {
-            Diagnostic diagnostic = new Diagnostic();
-            diagnostic.setCode("badWord");
-            diagnostic.setSeverity(severity);
-            diagnostic.setRange(
-                new Range(new Position(line, start), new Position(line, start + length)));
-            diagnostic.setMessage(message);
-            return diagnostic;
           }
         },
         new AbstractCommand("Create Snippet", "textDocument/snippet:(?<name>\\w+):(?<message>.+)") {
@@ -169,25 +147,76 @@ public class TestTextDocumentService implements TextDocumentService {
   /** The usual Logger. */
   public static final Logger LOGGER = LoggerFactory.getLogger(TestTextDocumentService.class);
 
+  /**
+   * The number of lines before and after the position of a highlight request which are searched,
+   * standing in for the visible range, for instance 200. Unset or negative, the default, searches
+   * the whole document.
+   */
+  public static final String HIGHLIGHT_WINDOW = "TESTLS_HIGHLIGHT_WINDOW";
+
+  /**
+   * The maximum number of references or highlights returned. A negative value returns all of them.
+   */
+  public static final String MAX_RESULTS = "TESTLS_MAX_RESULTS";
+
   private final TestLanguageServer testLanguageServer;
   
-  private List<CompletionItem> snippets= new ArrayList<>();
+  private final List<CompletionItem> snippets= new CopyOnWriteArrayList<>();
+
+  private final CommandDispatcher commandDispatcher;
+
+  private final WorkspaceScanner scanner;
+
+  private final DiagnosticsEngine diagnostics;
+
+  /** The bad word rules found while the commands of a document are executed. */
+  private final Map<String, List<DiagnosticsEngine.Rule>> pendingRules = new ConcurrentHashMap<>();
+
+  private final RequestScheduler scheduler;
+
+  private final Metrics metrics;
+
+  /** The symbols last computed for each open document. */
+  private final Map<String, DocumentSymbols> symbols = new ConcurrentHashMap<>();
+
+  private final int highlightWindow;
+
+  private final int maxResults;
 
   public TestTextDocumentService(TestLanguageServer testLanguageServer) {
+    this(testLanguageServer, new RequestScheduler());
+  }
+
+  public TestTextDocumentService(
+      TestLanguageServer testLanguageServer, RequestScheduler scheduler) {
     this.testLanguageServer = testLanguageServer;
+    this.scheduler = scheduler;
+    this.metrics = scheduler.getMetrics();
+    this.commandDispatcher = new CommandDispatcher(commands, scheduler.getSearchPool());
+    this.scanner = WorkspaceScanner.create(scheduler.getSearchPool());
+    this.highlightWindow = Utils.getEnvVarOrSysProp(HIGHLIGHT_WINDOW, -1);
+    this.maxResults = Utils.getEnvVarOrSysProp(MAX_RESULTS, -1);
+    this.diagnostics =
+        new DiagnosticsEngine(
+            (uri, list) -> testLanguageServer.publishDiagnostics(uri, list),
+            scheduler.getSearchPool());
   }
 
   @Override
   public CompletableFuture<Either<List<CompletionItem>, CompletionList>> completion(
       TextDocumentPositionParams position) {
-    List<CompletionItem> items = new ArrayList<>();
-    for (int i = 0; i < 3; i++) {
-      items.add(createCompletionItem("TestItem " + i));
-    }
+    return scheduler.interactive(
+        "textDocument/completion",
+        token -> {
+          List<CompletionItem> items = new ArrayList<>();
+          for (int i = 0; i < 3; i++) {
+            items.add(createCompletionItem("TestItem " + i));
+          }
 
-    items.addAll(snippets);
+          items.addAll(snippets);
 
-    return CompletableFuture.completedFuture(Either.forRight(new CompletionList(false, items)));
+          return Either.forRight(new CompletionList(false, items));
+        });
   }
 
   private CompletionItem createCompletionItem(String itemText) {
@@ -202,62 +231,87 @@ public class TestTextDocumentService implements TextDocumentService {
 
   @Override
   public CompletableFuture<CompletionItem> resolveCompletionItem(CompletionItem unresolved) {
-    if ("true".equals(unresolved.getData())) {
-      return CompletableFuture.completedFuture(
-          createCompletionItem(unresolved.getInsertText() + " resolved"));
-    } else {
-      return CompletableFuture.completedFuture(unresolved);
-    }
+    return metrics.call(
+        "completionItem/resolve",
+        () -> {
+          if ("true".equals(unresolved.getData())) {
+            return CompletableFuture.completedFuture(
+                createCompletionItem(unresolved.getInsertText() + " resolved"));
+          } else {
+            return CompletableFuture.completedFuture(unresolved);
+          }
+        });
   }
 
   @Override
   public CompletableFuture<Hover> hover(TextDocumentPositionParams position) {
-    Range range =
-        new Range(
-            position.getPosition(),
-            new Position(
-                position.getPosition().getLine(), position.getPosition().getCharacter() + 1));
-    return CompletableFuture.completedFuture(
-        new Hover(
-            Arrays.asList(Either.forLeft("First element"), Either.forLeft("Second element")),
-            range));
+    return scheduler.interactive(
+        "textDocument/hover",
+        token -> {
+          Range range =
+              new Range(
+                  position.getPosition(),
+                  new Position(
+                      position.getPosition().getLine(),
+                      position.getPosition().getCharacter() + 1));
+          return new Hover(
+              Arrays.asList(Either.forLeft("First element"), Either.forLeft("Second element")),
+              range);
+        });
   }
 
   @Override
   public CompletableFuture<SignatureHelp> signatureHelp(TextDocumentPositionParams position) {
-    SignatureHelp result = new SignatureHelp();
-    List<SignatureInformation> signatures = new ArrayList<>();
-    result.setSignatures(signatures);
-    signatures.add(new SignatureInformation("First sig", "some doc", Collections.emptyList()));
-    signatures.add(
-        new SignatureInformation("Second sig", "some more doc", Collections.emptyList()));
-    signatures.add(new SignatureInformation("Third sig", "some doc", Collections.emptyList()));
-    result.setActiveSignature(1);
-    return CompletableFuture.completedFuture(result);
+    return metrics.call(
+        "textDocument/signatureHelp",
+        () -> {
+          SignatureHelp result = new SignatureHelp();
+          List<SignatureInformation> signatures = new ArrayList<>();
+          result.setSignatures(signatures);
+          signatures.add(
+              new SignatureInformation("First sig", "some doc", Collections.emptyList()));
+          signatures.add(
+              new SignatureInformation("Second sig", "some more doc", Collections.emptyList()));
+          signatures.add(
+              new SignatureInformation("Third sig", "some doc", Collections.emptyList()));
+          result.setActiveSignature(1);
+          return CompletableFuture.completedFuture(result);
+        });
   }
 
   @Override
   public CompletableFuture<List<? extends Location>> definition(TextDocumentPositionParams params) {
-    try {
-      DocumentManager dm = testLanguageServer.getDocumentManager();
-      String word = dm.getWordAtPosition(params.getTextDocument(), params.getPosition());
-      CompletableFuture<List<? extends Location>> result =
-          new CompletableFuture<List<? extends Location>>();
-      if (word != null && word.length() > 0) {
-        dm.findInDocument(
-            params.getTextDocument(),
-            word,
-            (doc, range, text) -> {
-              result.complete(Collections.singletonList(new Location(doc.getUri(), range)));
-              return true;
-            });
-      }
-      if (!result.isDone()) {
-        result.complete(Collections.emptyList());
-      }
-      return result;
-    } catch (IOException | URISyntaxException e) {
-      throw new RuntimeException(e);
+    DocumentManager dm = testLanguageServer.getDocumentManager();
+    DocumentSnapshot snapshot = dm.getSnapshot(params.getTextDocument().getUri());
+    return scheduler.interactive(
+        "textDocument/definition",
+        token -> {
+          List<Location> result = new ArrayList<>();
+          if (snapshot != null) {
+            String word = dm.getWordAtPosition(snapshot, params.getPosition());
+            if (word != null && word.length() > 0) {
+              dm.findInDocument(
+                  snapshot,
+                  word,
+                  SearchLimits.FIRST,
+                  (doc, range, text) -> {
+                    result.add(new Location(doc.getUri(), range));
+                    return false;
+                  },
+                  token);
+            }
+          }
+          return result;
+        });
+  }
+
+  private static final class DocumentSymbols {
+    final DocumentSnapshot snapshot;
+    final List<SymbolInformation> symbols;
+
+    DocumentSymbols(DocumentSnapshot snapshot, List<SymbolInformation> symbols) {
+      this.snapshot = snapshot;
+      this.symbols = symbols;
     }
   }
 
@@ -266,34 +320,47 @@ public class TestTextDocumentService implements TextDocumentService {
   }
 
   private <T> CompletableFuture<List<? extends T>> doWithReferences(
-      TextDocumentIdentifier document, Position pos, OccurrenceHandler<T> handler) {
-    return CompletableFuture.supplyAsync(
-        new Supplier<List<? extends T>>() {
+      String method,
+      TextDocumentIdentifier document,
+      Position pos,
+      SearchLimits limits,
+      OccurrenceHandler<T> handler) {
+    DocumentManager documentManager = testLanguageServer.getDocumentManager();
+    // the snapshot the request was sent for, not the one current when it runs
+    DocumentSnapshot snapshot = documentManager.getSnapshot(document.getUri());
+    return scheduler.interactive(
+        method,
+        new Function<CancellationToken, List<? extends T>>() {
 
           @Override
-          public List<T> get() {
+          public List<T> apply(CancellationToken token) {
             List<T> result = new ArrayList<>();
-            try {
-              String selectedWord =
-                  testLanguageServer.getDocumentManager().getWordAtPosition(document, pos);
-              if (selectedWord != null && selectedWord.length() > 0) {
-                testLanguageServer
-                    .getDocumentManager()
-                    .findInDocument(
-                        document,
-                        selectedWord,
-                        (doc, range, text) -> {
-                          T res = handler.handle(doc, range, text);
-                          if (res != null) {
-                            result.add(res);
-                          }
-                          return true;
-                        });
-              }
-            } catch (IOException | URISyntaxException e) {
-              throw new RuntimeException(e);
+            if (snapshot == null) {
+              return result;
+            }
+            String selectedWord = documentManager.getWordAtPosition(snapshot, pos);
+            if (selectedWord != null && selectedWord.length() > 0) {
+              documentManager.findInDocument(
+                  snapshot,
+                  selectedWord,
+                  limits,
+                  (doc, range, text) -> {
+                    T res = handler.handle(doc, range, text);
+                    if (res != null) {
+                      result.add(res);
+                    }
+                    return true;
+                  },
+                  token);
+            }
+            if (!documentManager.isCurrent(snapshot)) {
+              // the ranges refer to an outdated version of the document
+              LOGGER.debug(
+                  "Dropping results for {} computed on version {}",
+                  snapshot.getUri(),
+                  snapshot.getVersion());
+              result.clear();
             }
-
             return result;
           }
         });
@@ -301,20 +368,68 @@ public class TestTextDocumentService implements TextDocumentService {
 
   @Override
   public CompletableFuture<List<? extends Location>> references(ReferenceParams params) {
+    if (testLanguageServer.isStreaming()) {
+      return streamReferences(params);
+    }
     return doWithReferences(
+        "textDocument/references",
         params.getTextDocument(),
         params.getPosition(),
+        SearchLimits.around(0, -1, maxResults),
         (doc, range, text) -> {
           return new Location(doc.getUri(), range);
         });
   }
 
+  /**
+   * Sends the references to the client in partial results as they are found, and responds with an
+   * empty list once the last chunk has been sent.
+   */
+  private CompletableFuture<List<? extends Location>> streamReferences(ReferenceParams params) {
+    DocumentManager documentManager = testLanguageServer.getDocumentManager();
+    String uri = params.getTextDocument().getUri();
+    DocumentSnapshot snapshot = documentManager.getSnapshot(uri);
+    return scheduler.interactive(
+        "textDocument/references",
+        token -> {
+          PartialResultStream stream =
+              new PartialResultStream(
+                  testLanguageServer::sendPartialResult,
+                  "textDocument/references",
+                  uri,
+                  params.getPosition(),
+                  null,
+                  testLanguageServer.getPartialResultSize());
+          try {
+            if (snapshot != null) {
+              String selectedWord = documentManager.getWordAtPosition(snapshot, params.getPosition());
+              if (selectedWord != null && selectedWord.length() > 0) {
+                documentManager.findInDocument(
+                    snapshot,
+                    selectedWord,
+                    SearchLimits.around(0, -1, maxResults),
+                    (doc, range, text) -> {
+                      stream.addLocation(new Location(doc.getUri(), range));
+                      return true;
+                    },
+                    token);
+              }
+            }
+          } finally {
+            stream.close();
+          }
+          return Collections.<Location>emptyList();
+        });
+  }
+
   @Override
   public CompletableFuture<List<? extends DocumentHighlight>> documentHighlight(
       TextDocumentPositionParams params) {
     return doWithReferences(
+        "textDocument/documentHighlight",
         params.getTextDocument(),
         params.getPosition(),
+        SearchLimits.around(params.getPosition().getLine(), highlightWindow, maxResults),
         (doc, range, text) -> {
           return new DocumentHighlight(range, DocumentHighlightKind.Text);
         });
@@ -323,45 +438,51 @@ public class TestTextDocumentService implements TextDocumentService {
   @Override
   public CompletableFuture<List<? extends SymbolInformation>> documentSymbol(
       DocumentSymbolParams params) {
+    String uri = params.getTextDocument().getUri();
+    DocumentSnapshot snapshot = testLanguageServer.getDocumentManager().getSnapshot(uri);
+    if (snapshot == null) {
+      throw new RuntimeException("File not open: " + uri);
+    }
+    return scheduler.heavy("textDocument/documentSymbol", token -> documentSymbol(snapshot, token));
+  }
+
+  private List<SymbolInformation> documentSymbol(
+      DocumentSnapshot snapshot, CancellationToken token) {
+    String uri = snapshot.getUri();
+    DocumentSymbols cached = symbols.get(uri);
+    if (cached != null && cached.snapshot == snapshot) {
+      return cached.symbols;
+    }
+    DocumentManager documentManager = testLanguageServer.getDocumentManager();
     List<SymbolInformation> result = new ArrayList<>();
-    Set<String> foundWords = new HashSet<>();
-    try {
-      String uri = params.getTextDocument().getUri();
-      List<String> lines = testLanguageServer.getDocumentManager().getContent(uri);
-      for (int l = 0; l < lines.size(); l++) {
-        String line = lines.get(l);
-        int pos = 0;
-        while (pos < line.length()) {
-          while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
-            pos++;
-          }
-          StringBuilder b = new StringBuilder();
-          int startPos = pos;
-          while (pos < line.length() && !Character.isWhitespace(line.charAt(pos))) {
-            b.append(line.charAt(pos));
-            pos++;
-          }
-          String word = b.toString();
-          if (word.length() > 0 && !foundWords.contains(word)) {
-            foundWords.add(word);
-            SymbolInformation s = new SymbolInformation();
-            s.setName(word + " (testls)");
-            s.setKind(SymbolKind.String);
-            s.setLocation(
-                new Location(uri, new Range(new Position(l, startPos), new Position(l, pos))));
-            result.add(s);
-          }
-        }
-      }
-      return CompletableFuture.completedFuture(result);
-    } catch (IOException | URISyntaxException e) {
-      throw new RuntimeException("Error on didOpen", e);
+    for (WordOccurrence occurrence : documentManager.getFirstOccurrences(snapshot, token)) {
+      int line = occurrence.getLine();
+      int column = occurrence.getColumn();
+      SymbolInformation s = new SymbolInformation();
+      s.setName(occurrence.getWord() + " (testls)");
+      s.setKind(SymbolKind.String);
+      s.setLocation(
+          new Location(
+              uri,
+              new Range(
+                  new Position(line, column),
+                  new Position(line, column + occurrence.getWord().length()))));
+      result.add(s);
+    }
+    result = Collections.unmodifiableList(result);
+    if (documentManager.isCurrent(snapshot)) {
+      symbols.put(uri, new DocumentSymbols(snapshot, result));
     }
+    return result;
   }
 
   @Override
   public CompletableFuture<List<? extends Command>> codeAction(CodeActionParams params) {
     LOGGER.info("Handling code action request: " + params);
+    return scheduler.heavy("textDocument/codeAction", token -> codeActions(params, token));
+  }
+
+  private List<Command> codeActions(CodeActionParams params, CancellationToken token) {
     List<Command> commands = new ArrayList<>();
     boolean hasDiagnostic = params.getContext().getDiagnostics().isEmpty();
     commands.add(
@@ -379,10 +500,14 @@ public class TestTextDocumentService implements TextDocumentService {
               testLanguageServer
                   .getDocumentManager()
                   .getWordAtPosition(params.getTextDocument(), diagnostic.getRange().getStart());
-          if (selectedWord != null && selectedWord.length() > 0) {
+          if (selectedWord != null
+              && selectedWord.length() > 0
+              && testLanguageServer.isStreaming()) {
+            commands.add(streamReplaceInWorkspace(params, selectedWord, token));
+          } else if (selectedWord != null && selectedWord.length() > 0) {
             WorkspaceEdit edit =
                 ReplaceInWorkspaceHandler.renameInWorkspace(
-                    testLanguageServer.getRoot(), selectedWord, "foobar");
+                    getReplaceScope(token), selectedWord, "foobar");
             commands.add(
                 new Command(
                     "Replace with foobar",
@@ -395,69 +520,146 @@ public class TestTextDocumentService implements TextDocumentService {
       }
     }
 
-    return CompletableFuture.completedFuture(commands);
+    return commands;
+  }
+
+  /**
+   * Sends the edits replacing the word in the workspace to the client in partial results, file by
+   * file as they are scanned.
+   *
+   * @return a command referring to the edits by the token of the partial results
+   */
+  private Command streamReplaceInWorkspace(
+      CodeActionParams params, String selectedWord, CancellationToken token) throws IOException {
+    PartialResultStream stream =
+        new PartialResultStream(
+            testLanguageServer::sendPartialResult,
+            "textDocument/codeAction",
+            params.getTextDocument().getUri(),
+            null,
+            params.getRange(),
+            testLanguageServer.getPartialResultSize());
+    try {
+      ReplaceInWorkspaceHandler.renameInWorkspace(
+          getReplaceScope(token), selectedWord, "foobar", stream::addEdits);
+    } finally {
+      stream.close();
+    }
+    return new Command(
+        "Replace with foobar",
+        "lsp.applyPartialWorkspaceEdit",
+        Collections.singletonList(stream.getToken()));
+  }
+
+  private ReplaceInWorkspaceHandler.Scope getReplaceScope(CancellationToken token) {
+    List<Path> openFiles = new ArrayList<>();
+    for (String uri : testLanguageServer.getDocumentManager().getOpenUris()) {
+      Path path = WorkspaceIndexer.toPath(uri);
+      if (path != null) {
+        openFiles.add(path);
+      }
+    }
+    return ReplaceInWorkspaceHandler.Scope.of(testLanguageServer.getRoot())
+        .withScanner(scanner)
+        .withIndex(testLanguageServer.getWorkspaceIndex())
+        .withOpenFiles(openFiles)
+        .withCache(testLanguageServer.getFileCache())
+        .withToken(token);
   }
 
   @Override
   public CompletableFuture<List<? extends CodeLens>> codeLens(CodeLensParams params) {
-    return CompletableFuture.completedFuture(Collections.emptyList());
+    return metrics.call(
+        "textDocument/codeLens",
+        () -> CompletableFuture.completedFuture(Collections.emptyList()));
   }
 
   @Override
   public CompletableFuture<CodeLens> resolveCodeLens(CodeLens unresolved) {
-    return CompletableFuture.completedFuture(null);
+    return metrics.call("codeLens/resolve", () -> CompletableFuture.completedFuture(null));
   }
 
   @Override
   public CompletableFuture<List<? extends TextEdit>> formatting(DocumentFormattingParams params) {
-    return CompletableFuture.completedFuture(Collections.emptyList());
+    return metrics.call(
+        "textDocument/formatting",
+        () -> CompletableFuture.completedFuture(Collections.emptyList()));
   }
 
   @Override
   public CompletableFuture<List<? extends TextEdit>> rangeFormatting(
       DocumentRangeFormattingParams params) {
-    return CompletableFuture.completedFuture(Collections.emptyList());
+    return metrics.call(
+        "textDocument/rangeFormatting",
+        () -> CompletableFuture.completedFuture(Collections.emptyList()));
   }
 
   @Override
   public CompletableFuture<List<? extends TextEdit>> onTypeFormatting(
       DocumentOnTypeFormattingParams params) {
-    return CompletableFuture.completedFuture(Collections.emptyList());
+    return metrics.call(
+        "textDocument/onTypeFormatting",
+        () -> CompletableFuture.completedFuture(Collections.emptyList()));
   }
 
   @Override
   public CompletableFuture<WorkspaceEdit> rename(RenameParams params) {
-    return CompletableFuture.completedFuture(null);
+    return metrics.call("textDocument/rename", () -> CompletableFuture.completedFuture(null));
   }
 
   @Override
   public void didOpen(DidOpenTextDocumentParams params) {
-    try {
-      testLanguageServer
-          .getDocumentManager()
-          .didOpen(params.getTextDocument().getUri(), params.getTextDocument().getText());
-    } catch (IOException | URISyntaxException e) {
-      throw new RuntimeException("Error on didOpen", e);
-    }
-    executeCommands(new TextDocumentIdentifier(params.getTextDocument().getUri()));
+    metrics.run(
+        "textDocument/didOpen",
+        () -> {
+          try {
+            testLanguageServer
+                .getDocumentManager()
+                .didOpen(
+                    params.getTextDocument().getUri(),
+                    params.getTextDocument().getVersion(),
+                    params.getTextDocument().getText());
+          } catch (IOException | URISyntaxException e) {
+            throw new RuntimeException("Error on didOpen", e);
+          }
+          executeCommands(new TextDocumentIdentifier(params.getTextDocument().getUri()));
+        });
   }
 
   @Override
   public void didChange(DidChangeTextDocumentParams params) {
-    testLanguageServer
-        .getDocumentManager()
-        .didChange(params.getTextDocument().getUri(), params.getContentChanges());
+    metrics.run(
+        "textDocument/didChange",
+        () -> {
+          DocumentManager documentManager = testLanguageServer.getDocumentManager();
+          String uri = params.getTextDocument().getUri();
+          documentManager.didChange(
+              uri, params.getTextDocument().getVersion(), params.getContentChanges());
+          diagnostics.didChange(
+              uri, params.getContentChanges(), documentManager.getSnapshot(uri));
+        });
   }
 
   @Override
   public void didClose(DidCloseTextDocumentParams params) {
-    testLanguageServer.getDocumentManager().didClose(params.getTextDocument().getUri());
+    metrics.run(
+        "textDocument/didClose",
+        () -> {
+          testLanguageServer.getDocumentManager().didClose(params.getTextDocument().getUri());
+          diagnostics.didClose(params.getTextDocument().getUri());
+          symbols.remove(params.getTextDocument().getUri());
+          // the index ignored the file while it was open
+          WorkspaceIndexer indexer = testLanguageServer.getWorkspaceIndexer();
+          if (indexer != null) {
+            indexer.fileClosed(params.getTextDocument().getUri());
+          }
+        });
   }
 
   @Override
   public void didSave(DidSaveTextDocumentParams params) {
     LOGGER.info("Handling document saved");
-    executeCommands(params.getTextDocument());
+    metrics.run("textDocument/didSave", () -> executeCommands(params.getTextDocument()));
   }
 
   private void executeCommands(TextDocumentIdentifier textdocument) {
@@ -466,14 +668,15 @@ public class TestTextDocumentService implements TextDocumentService {
     String documentUri = textdocument.getUri();
     try {
       final List<String> lines = documentManager.getContent(documentUri);
-      LOGGER.info("Document saved: \n{}", lines.stream().collect(Collectors.joining("\n")));
-      for (String line : lines) {
-        for (AbstractCommand command : commands) {
-          if (command.maybeExecute(textdocument, line)) {
-            break;
-          }
-        }
+      LOGGER.debug("Executing commands of {} ({} lines)", documentUri, lines.size());
+      List<DiagnosticsEngine.Rule> rules = new ArrayList<>();
+      pendingRules.put(documentUri, rules);
+      try {
+        commandDispatcher.execute(textdocument, lines);
+      } finally {
+        pendingRules.remove(documentUri);
       }
+      diagnostics.setRules(documentUri, rules, lines);
     } catch (IOException | URISyntaxException e) {
       LOGGER.error("Failed to read document content at " + documentUri, e);
     }
@@ -2,34 +2,86 @@ package org.jboss.tools.lsp.testlang.handlers;
 
 import org.eclipse.lsp4j.DidChangeConfigurationParams;
 import org.eclipse.lsp4j.DidChangeWatchedFilesParams;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.SymbolKind;
 import org.eclipse.lsp4j.WorkspaceSymbolParams;
 import org.eclipse.lsp4j.services.WorkspaceService;
+import org.jboss.tools.lsp.testlang.CancellationToken;
+import org.jboss.tools.lsp.testlang.RequestScheduler;
+import org.jboss.tools.lsp.testlang.TestLanguageServer;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceFileCache;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceIndex;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceIndexer;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceSymbol;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public class TestWorkspaceService implements WorkspaceService {
 
-	public TestWorkspaceService() {
+	/** The maximum number of symbols returned by <code>workspace/symbol</code>. */
+	static final int MAX_SYMBOLS = 1000;
+
+	private final TestLanguageServer server;
+	private final RequestScheduler scheduler;
+
+	public TestWorkspaceService(TestLanguageServer server, RequestScheduler scheduler) {
+		this.server = server;
+		this.scheduler = scheduler;
 	}
 
 	@Override
 	public CompletableFuture<List<? extends SymbolInformation>> symbol(WorkspaceSymbolParams params) {
-		// TODO Auto-generated method stub
-		return null;
+		return scheduler.interactive("workspace/symbol", token -> symbol(params.getQuery(), token));
+	}
+
+	/**
+	 * Answers from the workspace index, which may still be incomplete while
+	 * the workspace is indexed for the first time.
+	 */
+	private List<SymbolInformation> symbol(String query, CancellationToken token) {
+		WorkspaceIndex index = server.getWorkspaceIndex();
+		if (index == null) {
+			return Collections.emptyList();
+		}
+		List<SymbolInformation> result = new ArrayList<>();
+		for (WorkspaceSymbol symbol : index.findSymbols(query == null ? "" : query, MAX_SYMBOLS, token)) {
+			int line = symbol.getLine();
+			int column = symbol.getColumn();
+			SymbolInformation s = new SymbolInformation();
+			s.setName(symbol.getWord() + " (testls)");
+			s.setKind(SymbolKind.String);
+			s.setLocation(new Location(symbol.getPath().toUri().toString(), new Range(new Position(line, column),
+					new Position(line, column + symbol.getWord().length()))));
+			result.add(s);
+		}
+		return result;
 	}
 
 	@Override
 	public void didChangeConfiguration(DidChangeConfigurationParams params) {
-		// TODO Auto-generated method stub
-
+		server.getMetrics().run("workspace/didChangeConfiguration", () -> {
+			// nothing to configure
+		});
 	}
 
 	@Override
 	public void didChangeWatchedFiles(DidChangeWatchedFilesParams params) {
-		// TODO Auto-generated method stub
-
+		server.getMetrics().run("workspace/didChangeWatchedFiles", () -> {
+			WorkspaceIndexer indexer = server.getWorkspaceIndexer();
+			if (indexer != null) {
+				indexer.filesChanged(params.getChanges());
+			}
+			WorkspaceFileCache cache = server.getFileCache();
+			if (cache != null) {
+				cache.filesChanged(params.getChanges());
+			}
+		});
 	}
 
 }
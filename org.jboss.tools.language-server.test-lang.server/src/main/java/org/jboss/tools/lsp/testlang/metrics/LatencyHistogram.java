@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jboss.tools.lsp.ext.LatencyReport;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, with log-linear buckets
+ * in the manner of HdrHistogram: each power of two is divided into 32
+ * buckets, so a recorded value is known within about 3%. Recording is an
+ * atomic increment and two adder updates, no allocation.
+ * <p>
+ * Values larger than about 4.8 hours are recorded as that value.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** values are clamped to <code>2^MAX_BITS - 1</code> */
+	private static final int MAX_BITS = 44;
+	private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray((MAX_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+	public void record(long nanos) {
+		long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+		counts.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * @return the largest value recorded in the bucket of the given index
+	 */
+	static long highestValue(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long subBucket = SUB_BUCKETS + index % SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * @return the value below which the given fraction of the recorded values
+	 *         are, within the precision of the buckets
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = snapshot();
+		return valueAtPercentile(snapshot, total(snapshot), percentile);
+	}
+
+	private long[] snapshot() {
+		long[] snapshot = new long[counts.length()];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+		}
+		return snapshot;
+	}
+
+	private static long total(long[] snapshot) {
+		long total = 0;
+		for (long bucket : snapshot) {
+			total += bucket;
+		}
+		return total;
+	}
+
+	private long valueAtPercentile(long[] snapshot, long total, double percentile) {
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(percentile * total));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= target) {
+				return Math.min(highestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * @return the percentiles of the recorded values, in microseconds. The
+	 *         counters are read one by one while values may be recorded, so
+	 *         the report is only approximately consistent.
+	 */
+	public LatencyReport report() {
+		long[] snapshot = snapshot();
+		long total = total(snapshot);
+		double mean = total == 0 ? 0 : sum.sum() / (double) count.sum();
+		return new LatencyReport(total, mean / 1000, micros(valueAtPercentile(snapshot, total, 0.5)),
+				micros(valueAtPercentile(snapshot, total, 0.9)), micros(valueAtPercentile(snapshot, total, 0.99)),
+				micros(valueAtPercentile(snapshot, total, 0.999)), micros(max.get()));
+	}
+
+	private static long micros(long nanos) {
+		return nanos / 1000;
+	}
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jboss.tools.lsp.ext.MethodReport;
+
+/**
+ * The counters and histograms of one method: the time requests waited for a
+ * thread, the time they ran, and how they ended.
+ */
+public final class MethodMetrics {
+
+	private final LatencyHistogram queued = new LatencyHistogram();
+	private final LatencyHistogram executed = new LatencyHistogram();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder cancelled = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Records the time a request waited before it started.
+	 */
+	public void queued(long nanos) {
+		queued.record(nanos);
+	}
+
+	/**
+	 * Records a completed execution, successful or not.
+	 */
+	public void executed(long nanos) {
+		executed.record(nanos);
+	}
+
+	public void failed() {
+		errors.increment();
+	}
+
+	public void cancelled() {
+		cancelled.increment();
+	}
+
+	public void rejected() {
+		rejected.increment();
+	}
+
+	MethodReport report() {
+		return new MethodReport(executed.getCount(), errors.sum(), cancelled.sum(), rejected.sum(),
+				queued.report(), executed.report());
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.jboss.tools.lsp.ext.MethodReport;
+import org.jboss.tools.lsp.ext.MetricsReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The metrics of a server: a {@link MethodMetrics} per LSP method or internal
+ * operation, created on first use, and gauges sampled when a report is
+ * created.
+ */
+public class Metrics implements MetricsMXBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+	private static final AtomicInteger MBEAN_COUNT = new AtomicInteger();
+
+	private final long started = System.currentTimeMillis();
+	private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+	private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+	private ObjectName objectName;
+
+	public MethodMetrics method(String name) {
+		MethodMetrics result = methods.get(name);
+		return result != null ? result : methods.computeIfAbsent(name, n -> new MethodMetrics());
+	}
+
+	/**
+	 * Registers a value to be sampled for each report.
+	 */
+	public void gauge(String name, LongSupplier value) {
+		gauges.put(name, value);
+	}
+
+	/**
+	 * Runs an operation on the calling thread and records its execution time.
+	 */
+	public void run(String method, Runnable operation) {
+		call(method, () -> {
+			operation.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Calls an operation on the calling thread and records its execution time.
+	 */
+	public <T> T call(String method, Supplier<T> operation) {
+		MethodMetrics metrics = method(method);
+		long start = System.nanoTime();
+		try {
+			return operation.get();
+		} catch (CancellationException e) {
+			metrics.cancelled();
+			throw e;
+		} catch (RuntimeException | Error e) {
+			metrics.failed();
+			throw e;
+		} finally {
+			metrics.executed(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public MetricsReport getReport() {
+		Map<String, MethodReport> methodReports = new TreeMap<>();
+		for (Map.Entry<String, MethodMetrics> entry : methods.entrySet()) {
+			methodReports.put(entry.getKey(), entry.getValue().report());
+		}
+		Map<String, Long> gaugeValues = new TreeMap<>();
+		for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+			gaugeValues.put(entry.getKey(), entry.getValue().getAsLong());
+		}
+		return new MetricsReport(System.currentTimeMillis() - started, methodReports, gaugeValues);
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server, under
+	 * <code>org.jboss.tools.lsp.testlang:type=Metrics,id=&lt;n&gt;</code>.
+	 */
+	public synchronized void registerMBean() {
+		try {
+			objectName = new ObjectName("org.jboss.tools.lsp.testlang:type=Metrics,id=" + MBEAN_COUNT.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			LOGGER.info("Registered metrics as {}", objectName);
+		} catch (JMException e) {
+			LOGGER.warn("Failed to register the metrics MBean", e);
+			objectName = null;
+		}
+	}
+
+	public synchronized void unregisterMBean() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			LOGGER.warn("Failed to unregister the metrics MBean", e);
+		}
+		objectName = null;
+	}
+}
@@ -0,0 +1,22 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.metrics;
+
+import org.jboss.tools.lsp.ext.MetricsReport;
+
+/**
+ * The metrics of a server as exposed through JMX.
+ */
+public interface MetricsMXBean {
+
+	MetricsReport getReport();
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.text;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Splits text into lines without copying it. Lines are separated by
+ * <code>\n</code>, <code>\r</code> or <code>\r\n</code>; the text after the
+ * last separator is reported as the last line, even if it is empty. The
+ * boundaries of each line are passed to a {@link LineConsumer} as offsets into
+ * the scanned text, and {@link #view(CharSequence, int, int)} gives access to
+ * the content of a line without copying it.
+ */
+public final class LineScanner {
+
+	/**
+	 * Receives the lines found by the scanner.
+	 */
+	@FunctionalInterface
+	public interface LineConsumer {
+		/**
+		 * @param start
+		 *            the offset of the first character of the line
+		 * @param end
+		 *            the offset after the last character of the line,
+		 *            excluding the line separator
+		 * @param line
+		 *            the zero-based line number
+		 */
+		void accept(int start, int end, int line);
+	}
+
+	private LineScanner() {
+	}
+
+	/**
+	 * Scans the lines of the given text.
+	 *
+	 * @return the number of lines
+	 */
+	public static int scan(CharSequence text, LineConsumer consumer) {
+		int length = text.length();
+		int line = 0;
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c == '\n' || c == '\r') {
+				consumer.accept(start, i, line++);
+				if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+					i++;
+				}
+				start = i + 1;
+			}
+		}
+		consumer.accept(start, length, line++);
+		return line;
+	}
+
+	/**
+	 * @return the number of lines of the given text
+	 */
+	public static int count(CharSequence text) {
+		int length = text.length();
+		int count = 1;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c == '\n' || (c == '\r' && (i + 1 == length || text.charAt(i + 1) != '\n'))) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Scans the lines of the characters <code>[from, to)</code> of the given
+	 * array. The offsets passed to the consumer are indices into the array.
+	 *
+	 * @return the number of lines
+	 */
+	public static int scan(char[] text, int from, int to, LineConsumer consumer) {
+		int line = 0;
+		int start = from;
+		for (int i = from; i < to; i++) {
+			char c = text[i];
+			if (c == '\n' || c == '\r') {
+				consumer.accept(start, i, line++);
+				if (c == '\r' && i + 1 < to && text[i + 1] == '\n') {
+					i++;
+				}
+				start = i + 1;
+			}
+		}
+		consumer.accept(start, to, line++);
+		return line;
+	}
+
+	/**
+	 * Scans the lines of the bytes between the position and the limit of the
+	 * given buffer, which must hold text in an ASCII compatible encoding such
+	 * as UTF-8. The offsets passed to the consumer are absolute byte indices
+	 * into the buffer. The position of the buffer is not changed.
+	 *
+	 * @return the number of lines
+	 */
+	public static int scan(ByteBuffer bytes, LineConsumer consumer) {
+		int to = bytes.limit();
+		int line = 0;
+		int start = bytes.position();
+		for (int i = start; i < to; i++) {
+			byte b = bytes.get(i);
+			if (b == '\n' || b == '\r') {
+				consumer.accept(start, i, line++);
+				if (b == '\r' && i + 1 < to && bytes.get(i + 1) == '\n') {
+					i++;
+				}
+				start = i + 1;
+			}
+		}
+		consumer.accept(start, to, line++);
+		return line;
+	}
+
+	/**
+	 * @return a read-only view of the characters <code>[start, end)</code> of
+	 *         the given text, sharing its content
+	 */
+	public static CharSequence view(CharSequence text, int start, int end) {
+		return CharBuffer.wrap(text, start, end);
+	}
+
+	/**
+	 * @return a view of the characters <code>[start, end)</code> of the given
+	 *         array, sharing its content
+	 */
+	public static CharSequence view(char[] text, int start, int end) {
+		return CharBuffer.wrap(text, start, end - start).asReadOnlyBuffer();
+	}
+}
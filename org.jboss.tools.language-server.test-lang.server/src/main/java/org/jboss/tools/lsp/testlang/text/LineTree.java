@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+/**
+ * An immutable sequence backed by a join-based AVL tree, indexed by position.
+ * Replacing a range of <code>k</code> elements costs <code>O(log n + k)</code>
+ * and shares all untouched subtrees with the previous version.
+ * <p>
+ * Elements may be given a weight. Each node sums the weights of its subtree,
+ * so the elements of positive weight can be visited without walking the
+ * subtrees which have none.
+ *
+ * @param <T>
+ *            the element type
+ */
+public final class LineTree<T> implements Iterable<T> {
+
+	private static final LineTree<?> EMPTY = new LineTree<>(null, null);
+
+	/**
+	 * Receives an element with its index.
+	 */
+	@FunctionalInterface
+	public interface IndexedConsumer<T> {
+		void accept(int index, T value);
+	}
+
+	private static final class Node<T> {
+		final Node<T> left;
+		final T value;
+		final Node<T> right;
+		final int size;
+		final int height;
+		/** the sum of the weights of the subtree */
+		final int weight;
+
+		Node(Node<T> left, T value, Node<T> right, int valueWeight) {
+			this.left = left;
+			this.value = value;
+			this.right = right;
+			this.size = size(left) + size(right) + 1;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.weight = weight(left) + weight(right) + valueWeight;
+		}
+	}
+
+	private final Node<T> root;
+	private final ToIntFunction<? super T> weigher;
+
+	private LineTree(Node<T> root, ToIntFunction<? super T> weigher) {
+		this.root = root;
+		this.weigher = weigher;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> LineTree<T> empty() {
+		return (LineTree<T>) EMPTY;
+	}
+
+	public static <T> LineTree<T> of(List<? extends T> items) {
+		return items.isEmpty() ? empty() : of(items, null);
+	}
+
+	/**
+	 * @param weigher
+	 *            gives the weight of each element, zero or more
+	 */
+	public static <T> LineTree<T> of(List<? extends T> items, ToIntFunction<? super T> weigher) {
+		LineTree<T> empty = new LineTree<>(null, weigher);
+		return new LineTree<>(empty.build(items, 0, items.size()), weigher);
+	}
+
+	public int size() {
+		return size(root);
+	}
+
+	/**
+	 * @return the sum of the weights of the elements
+	 */
+	public int weight() {
+		return weight(root);
+	}
+
+	/**
+	 * Visits the elements of positive weight in order. Visiting
+	 * <code>k</code> elements costs <code>O(k log n)</code>, however many
+	 * elements have no weight.
+	 */
+	public void forEachWeighted(IndexedConsumer<? super T> consumer) {
+		forEachWeighted(root, 0, consumer);
+	}
+
+	private static <T> void forEachWeighted(Node<T> node, int offset, IndexedConsumer<? super T> consumer) {
+		if (node == null || node.weight == 0) {
+			return;
+		}
+		forEachWeighted(node.left, offset, consumer);
+		int index = offset + size(node.left);
+		if (node.weight > weight(node.left) + weight(node.right)) {
+			consumer.accept(index, node.value);
+		}
+		forEachWeighted(node.right, index + 1, consumer);
+	}
+
+	public T get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		Node<T> node = root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (index < leftSize) {
+				node = node.left;
+			} else if (index == leftSize) {
+				return node.value;
+			} else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Returns a new tree where the elements in <code>[from, to)</code> are
+	 * replaced by the given items.
+	 */
+	public LineTree<T> replace(int from, int to, List<? extends T> items) {
+		if (from < 0 || to < from || to > size()) {
+			throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), Size: " + size());
+		}
+		Node<T> result = concat(concat(take(root, from), build(items, 0, items.size())), drop(root, to));
+		return new LineTree<>(result, weigher);
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return iterator(0);
+	}
+
+	/**
+	 * @return an iterator over the elements starting at the given index
+	 */
+	public Iterator<T> iterator(int from) {
+		Deque<Node<T>> stack = new ArrayDeque<>();
+		Node<T> node = root;
+		int index = from;
+		while (node != null) {
+			int leftSize = size(node.left);
+			if (index < leftSize) {
+				stack.push(node);
+				node = node.left;
+			} else if (index == leftSize) {
+				stack.push(node);
+				break;
+			} else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+		return new Iterator<T>() {
+
+			@Override
+			public boolean hasNext() {
+				return !stack.isEmpty();
+			}
+
+			@Override
+			public T next() {
+				if (stack.isEmpty()) {
+					throw new NoSuchElementException();
+				}
+				Node<T> next = stack.pop();
+				for (Node<T> n = next.right; n != null; n = n.left) {
+					stack.push(n);
+				}
+				return next.value;
+			}
+		};
+	}
+
+	private static int size(Node<?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static int height(Node<?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	private static int weight(Node<?> node) {
+		return node == null ? 0 : node.weight;
+	}
+
+	private Node<T> node(Node<T> left, T value, Node<T> right) {
+		return new Node<>(left, value, right, weigher == null ? 0 : weigher.applyAsInt(value));
+	}
+
+	private Node<T> build(List<? extends T> items, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+		int mid = (from + to) >>> 1;
+		return node(build(items, from, mid), items.get(mid), build(items, mid + 1, to));
+	}
+
+	private Node<T> take(Node<T> node, int count) {
+		if (node == null || count <= 0) {
+			return null;
+		}
+		if (count >= node.size) {
+			return node;
+		}
+		int leftSize = size(node.left);
+		if (count <= leftSize) {
+			return take(node.left, count);
+		}
+		return join(node.left, node.value, take(node.right, count - leftSize - 1));
+	}
+
+	private Node<T> drop(Node<T> node, int count) {
+		if (node == null || count <= 0) {
+			return node;
+		}
+		if (count >= node.size) {
+			return null;
+		}
+		int leftSize = size(node.left);
+		if (count <= leftSize) {
+			return join(drop(node.left, count), node.value, node.right);
+		}
+		return drop(node.right, count - leftSize - 1);
+	}
+
+	private Node<T> concat(Node<T> left, Node<T> right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		Node<T> last = left;
+		while (last.right != null) {
+			last = last.right;
+		}
+		return join(take(left, left.size - 1), last.value, right);
+	}
+
+	private Node<T> join(Node<T> left, T value, Node<T> right) {
+		if (height(left) > height(right) + 1) {
+			return joinRight(left, value, right);
+		}
+		if (height(right) > height(left) + 1) {
+			return joinLeft(left, value, right);
+		}
+		return node(left, value, right);
+	}
+
+	private Node<T> joinRight(Node<T> left, T value, Node<T> right) {
+		Node<T> spine = left.right;
+		if (height(spine) <= height(right) + 1) {
+			Node<T> joined = node(spine, value, right);
+			if (height(joined) <= height(left.left) + 1) {
+				return node(left.left, left.value, joined);
+			}
+			return rotateLeft(node(left.left, left.value, rotateRight(joined)));
+		}
+		Node<T> joined = joinRight(spine, value, right);
+		Node<T> result = node(left.left, left.value, joined);
+		return height(joined) <= height(left.left) + 1 ? result : rotateLeft(result);
+	}
+
+	private Node<T> joinLeft(Node<T> left, T value, Node<T> right) {
+		Node<T> spine = right.left;
+		if (height(spine) <= height(left) + 1) {
+			Node<T> joined = node(left, value, spine);
+			if (height(joined) <= height(right.right) + 1) {
+				return node(joined, right.value, right.right);
+			}
+			return rotateRight(node(rotateLeft(joined), right.value, right.right));
+		}
+		Node<T> joined = joinLeft(left, value, spine);
+		Node<T> result = node(joined, right.value, right.right);
+		return height(joined) <= height(right.right) + 1 ? result : rotateRight(result);
+	}
+
+	private Node<T> rotateLeft(Node<T> node) {
+		Node<T> right = node.right;
+		return node(node(node.left, node.value, right.left), right.value, right.right);
+	}
+
+	private Node<T> rotateRight(Node<T> node) {
+		Node<T> left = node.left;
+		return node(left.left, left.value, node(left.right, node.value, node.right));
+	}
+}
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Searches several needles in one pass over a string, with an Aho-Corasick
+ * automaton. For each needle, the same occurrences are reported as by a loop
+ * over {@link String#indexOf(String, int)} continuing after the end of the
+ * previous occurrence: occurrences of one needle never overlap, while
+ * occurrences of different needles may. A single needle is searched with a
+ * {@link StringMatcher} instead. Instances are immutable and may be shared
+ * between threads.
+ */
+public final class MultiStringMatcher {
+
+	/**
+	 * Receives the occurrences found by the matcher.
+	 */
+	@FunctionalInterface
+	public interface MatchConsumer {
+		/**
+		 * @param needle
+		 *            the index of the needle in the list it was compiled from
+		 * @param start
+		 *            the position of the occurrence
+		 */
+		void accept(int needle, int start);
+	}
+
+	private static final int[] NONE = new int[0];
+
+	private final int[] lengths;
+	private final StringMatcher single;
+
+	// the automaton: the sorted transition keys and targets, the failure
+	// link and the needles ending in each state, including the ones of the
+	// states reached through failure links
+	private final char[][] keys;
+	private final int[][] targets;
+	private final int[] failures;
+	private final int[][] outputs;
+
+	private MultiStringMatcher(List<String> needles) {
+		lengths = new int[needles.size()];
+		for (int i = 0; i < lengths.length; i++) {
+			lengths[i] = needles.get(i).length();
+		}
+		if (needles.size() == 1 && !needles.get(0).isEmpty()) {
+			single = StringMatcher.compile(needles.get(0));
+			keys = null;
+			targets = null;
+			failures = null;
+			outputs = null;
+			return;
+		}
+		single = null;
+
+		List<Map<Character, Integer>> trie = new ArrayList<>();
+		List<int[]> ends = new ArrayList<>();
+		trie.add(new TreeMap<>());
+		ends.add(NONE);
+		for (int needle = 0; needle < needles.size(); needle++) {
+			String word = needles.get(needle);
+			if (word.isEmpty()) {
+				continue;
+			}
+			int state = 0;
+			for (int i = 0; i < word.length(); i++) {
+				Integer next = trie.get(state).get(word.charAt(i));
+				if (next == null) {
+					next = trie.size();
+					trie.add(new TreeMap<>());
+					ends.add(NONE);
+					trie.get(state).put(word.charAt(i), next);
+				}
+				state = next;
+			}
+			ends.set(state, append(ends.get(state), needle));
+		}
+
+		int size = trie.size();
+		keys = new char[size][];
+		targets = new int[size][];
+		for (int state = 0; state < size; state++) {
+			Map<Character, Integer> children = trie.get(state);
+			keys[state] = new char[children.size()];
+			targets[state] = new int[children.size()];
+			int i = 0;
+			for (Map.Entry<Character, Integer> child : children.entrySet()) {
+				keys[state][i] = child.getKey();
+				targets[state][i++] = child.getValue();
+			}
+		}
+
+		// breadth first, so the failure link of a state is complete before
+		// the state is used as a failure link itself
+		failures = new int[size];
+		outputs = new int[size][];
+		outputs[0] = NONE;
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int child : targets[0]) {
+			outputs[child] = ends.get(child);
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			for (int i = 0; i < keys[state].length; i++) {
+				char c = keys[state][i];
+				int child = targets[state][i];
+				int failure = failures[state];
+				while (failure != 0 && next(failure, c) < 0) {
+					failure = failures[failure];
+				}
+				int next = next(failure, c);
+				failures[child] = next < 0 ? 0 : next;
+				outputs[child] = concat(ends.get(child), outputs[failures[child]]);
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * @param needles
+	 *            the texts to search. Empty needles never match.
+	 */
+	public static MultiStringMatcher compile(List<String> needles) {
+		return new MultiStringMatcher(needles);
+	}
+
+	/**
+	 * Reports the occurrences of the needles in the given text, in the order
+	 * of their end positions.
+	 */
+	public void match(String text, MatchConsumer consumer) {
+		if (single != null) {
+			for (int start = single.indexOf(text, 0); start >= 0; start = single.indexOf(text,
+					start + single.length())) {
+				consumer.accept(0, start);
+			}
+			return;
+		}
+		// the position from which each needle may match again, allocated
+		// on the first occurrence since most lines have none
+		int[] allowed = null;
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			int next = next(state, c);
+			while (next < 0 && state != 0) {
+				state = failures[state];
+				next = next(state, c);
+			}
+			state = next < 0 ? 0 : next;
+			for (int needle : outputs[state]) {
+				int start = i + 1 - lengths[needle];
+				if (allowed == null) {
+					allowed = new int[lengths.length];
+				}
+				if (start >= allowed[needle]) {
+					consumer.accept(needle, start);
+					allowed[needle] = i + 1;
+				}
+			}
+		}
+	}
+
+	private int next(int state, char c) {
+		int index = Arrays.binarySearch(keys[state], c);
+		return index < 0 ? -1 : targets[state][index];
+	}
+
+	private static int[] append(int[] values, int value) {
+		int[] result = Arrays.copyOf(values, values.length + 1);
+		result[values.length] = value;
+		return result;
+	}
+
+	private static int[] concat(int[] first, int[] second) {
+		if (second.length == 0) {
+			return first;
+		}
+		int[] result = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, result, first.length, second.length);
+		return result;
+	}
+}
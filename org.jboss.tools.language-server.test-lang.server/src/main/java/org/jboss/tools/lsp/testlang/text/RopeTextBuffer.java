@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * A {@link TextBuffer} keeping its lines in a balanced {@link LineTree}, so
+ * that an edit costs <code>O(log n)</code> in the number of lines plus the size
+ * of the edited lines. The lines are weighed by their length, so the tree
+ * keeps the length of the buffer up to date.
+ */
+public class RopeTextBuffer implements TextBuffer {
+
+	private static final ToIntFunction<String> LINE_LENGTH = line -> line.length() + 1;
+
+	private final LineTree<String> lines;
+
+	private RopeTextBuffer(LineTree<String> lines) {
+		this.lines = lines;
+	}
+
+	/**
+	 * @param contents
+	 *            the full text of the document, may be <code>null</code>
+	 * @return a new buffer holding the given text
+	 */
+	public static RopeTextBuffer of(String contents) {
+		if (contents == null) {
+			return new RopeTextBuffer(LineTree.of(Collections.emptyList(), LINE_LENGTH));
+		}
+		return new RopeTextBuffer(LineTree.of(split(contents), LINE_LENGTH));
+	}
+
+	@Override
+	public int getLineCount() {
+		return lines.size();
+	}
+
+	@Override
+	public String getLine(int line) {
+		return lines.get(line);
+	}
+
+	@Override
+	public int getLength() {
+		return lines.weight();
+	}
+
+	@Override
+	public RopeTextBuffer replace(int startLine, int startCharacter, int endLine, int endCharacter, String text) {
+		int lineCount = lines.size();
+		String firstLine = startLine < lineCount ? lines.get(startLine) : "";
+		String lastLine = endLine < lineCount ? lines.get(endLine) : "";
+		String start = firstLine.substring(0, startCharacter);
+		String end = lastLine.substring(endCharacter);
+
+		List<String> inserted = split(text);
+		int last = inserted.size() - 1;
+		inserted.set(0, start + inserted.get(0));
+		inserted.set(last, inserted.get(last) + end);
+		return new RopeTextBuffer(
+				lines.replace(Math.min(startLine, lineCount), Math.min(endLine + 1, lineCount), inserted));
+	}
+
+	@Override
+	public List<String> asList() {
+		return new AbstractList<String>() {
+
+			@Override
+			public String get(int index) {
+				return lines.get(index);
+			}
+
+			@Override
+			public int size() {
+				return lines.size();
+			}
+
+			@Override
+			public Iterator<String> iterator() {
+				return lines.iterator();
+			}
+		};
+	}
+
+	private static List<String> split(String text) {
+		List<String> result = new ArrayList<>();
+		LineScanner.scan(text, (start, end, line) -> result.add(text.substring(start, end)));
+		return result;
+	}
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.jboss.tools.lsp.testlang.Utils;
+
+/**
+ * Searches a large range of lines in parallel: the range is split into
+ * segments which are searched on the given {@link ForkJoinPool}, and the
+ * results of the segments are returned in document order. The server passes
+ * the search pool of its
+ * {@link org.jboss.tools.lsp.testlang.RequestScheduler}, so a large search
+ * never waits on, nor holds up, the common pool.
+ * <p>
+ * Only documents of at least {@link #PARALLEL_LINES} lines are worth it;
+ * below that, forking costs more than it saves. The lines must not change
+ * while they are searched, which holds for the immutable {@link TextBuffer}s
+ * of a snapshot.
+ */
+public final class SegmentedSearch {
+
+	/**
+	 * The number of lines from which a range is searched in parallel. Zero or
+	 * a negative value turns parallel search off. Read once, when the class is
+	 * loaded.
+	 */
+	public static final String PARALLEL_LINES = "TESTLS_PARALLEL_LINES";
+	private static final int DEFAULT_PARALLEL_LINES = 50000;
+	private static final int PARALLEL_THRESHOLD = Utils.getEnvVarOrSysProp(PARALLEL_LINES, DEFAULT_PARALLEL_LINES);
+
+	/** The smallest segment searched by a single task. */
+	static final int MIN_SEGMENT_LINES = 4096;
+
+	/**
+	 * Searches the lines <code>[from, to)</code> of one segment.
+	 */
+	@FunctionalInterface
+	public interface Segment<R> {
+		R search(int from, int to);
+	}
+
+	private SegmentedSearch() {
+	}
+
+	/**
+	 * @return <code>true</code> if the given number of lines should be
+	 *         searched with {@link #search(ForkJoinPool, int, int, Segment)}
+	 */
+	public static boolean isParallel(int lines) {
+		return isParallel(lines, PARALLEL_THRESHOLD);
+	}
+
+	static boolean isParallel(int lines, int threshold) {
+		return threshold > 0 && lines >= threshold;
+	}
+
+	/**
+	 * Searches the lines <code>[from, to)</code> in segments of at least
+	 * {@link #MIN_SEGMENT_LINES} lines, on the given pool. An exception thrown
+	 * by a segment, like a
+	 * {@link java.util.concurrent.CancellationException}, is rethrown to the
+	 * caller.
+	 *
+	 * @return the results of the segments, in the order of their lines
+	 */
+	public static <R> List<R> search(ForkJoinPool pool, int from, int to, Segment<R> segment) {
+		int segmentLines = Math.max(MIN_SEGMENT_LINES, (to - from) / (4 * pool.getParallelism()));
+		return pool.invoke(new SegmentTask<>(from, to, segmentLines, segment));
+	}
+
+	private static final class SegmentTask<R> extends RecursiveTask<List<R>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final int segmentLines;
+		private final Segment<R> segment;
+
+		SegmentTask(int from, int to, int segmentLines, Segment<R> segment) {
+			this.from = from;
+			this.to = to;
+			this.segmentLines = segmentLines;
+			this.segment = segment;
+		}
+
+		@Override
+		protected List<R> compute() {
+			if (to - from <= segmentLines) {
+				List<R> result = new ArrayList<>(1);
+				result.add(segment.search(from, to));
+				return result;
+			}
+			int middle = (from + to) >>> 1;
+			SegmentTask<R> first = new SegmentTask<>(from, middle, segmentLines, segment);
+			first.fork();
+			List<R> second = new SegmentTask<>(middle, to, segmentLines, segment).compute();
+			List<R> result = first.join();
+			result.addAll(second);
+			return result;
+		}
+	}
+}
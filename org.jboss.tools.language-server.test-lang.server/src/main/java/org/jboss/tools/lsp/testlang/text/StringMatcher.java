@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.text;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Searches a fixed text, the needle, in strings or in UTF-8 content. The
+ * needle is preprocessed once, so a matcher should be reused for all the
+ * lines or files of one search. Instances are immutable and may be shared
+ * between threads.
+ * <p>
+ * Needles of at least {@link #SKIP_THRESHOLD} characters are searched with
+ * the Boyer-Moore-Horspool algorithm, skipping ahead by the last character of
+ * each window. Shorter needles gain little from skipping; in strings they are
+ * searched with {@link String#indexOf(String, int)}, which the JIT compiles to
+ * vector instructions, and in bytes by scanning for the first byte.
+ */
+public final class StringMatcher {
+
+	/** The needle length from which the skip table is used. */
+	static final int SKIP_THRESHOLD = 8;
+
+	private final String needle;
+	private final byte[] bytes;
+	/** the Horspool shifts, indexed by the low byte of a char */
+	private final int[] charShifts;
+	private final int[] byteShifts;
+
+	private StringMatcher(String needle) {
+		this.needle = needle;
+		this.bytes = needle.getBytes(StandardCharsets.UTF_8);
+		if (needle.length() >= SKIP_THRESHOLD) {
+			charShifts = new int[256];
+			Arrays.fill(charShifts, needle.length());
+			for (int i = 0; i < needle.length() - 1; i++) {
+				// chars with the same low byte share the smallest shift
+				charShifts[needle.charAt(i) & 0xFF] = needle.length() - 1 - i;
+			}
+		} else {
+			charShifts = null;
+		}
+		if (bytes.length >= SKIP_THRESHOLD) {
+			byteShifts = new int[256];
+			Arrays.fill(byteShifts, bytes.length);
+			for (int i = 0; i < bytes.length - 1; i++) {
+				byteShifts[bytes[i] & 0xFF] = bytes.length - 1 - i;
+			}
+		} else {
+			byteShifts = null;
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the needle is empty
+	 */
+	public static StringMatcher compile(String needle) {
+		if (needle.isEmpty()) {
+			throw new IllegalArgumentException("Empty needle");
+		}
+		return new StringMatcher(needle);
+	}
+
+	public String getNeedle() {
+		return needle;
+	}
+
+	/**
+	 * @return the length of the needle in UTF-16 code units
+	 */
+	public int length() {
+		return needle.length();
+	}
+
+	/**
+	 * @return the length of the needle in UTF-8 bytes
+	 */
+	public int byteLength() {
+		return bytes.length;
+	}
+
+	/**
+	 * Same as <code>text.indexOf(needle, from)</code>.
+	 */
+	public int indexOf(String text, int from) {
+		if (charShifts == null) {
+			return text.indexOf(needle, from);
+		}
+		int lastIndex = needle.length() - 1;
+		char lastChar = needle.charAt(lastIndex);
+		int end = text.length() - lastIndex;
+		for (int pos = Math.max(0, from); pos < end;) {
+			char c = text.charAt(pos + lastIndex);
+			if (c == lastChar && text.regionMatches(pos, needle, 0, lastIndex)) {
+				return pos;
+			}
+			pos += charShifts[c & 0xFF];
+		}
+		return -1;
+	}
+
+	/**
+	 * Searches the UTF-8 encoded needle in the bytes <code>[from, to)</code>
+	 * of the given content, using absolute positions.
+	 *
+	 * @return the position of the first byte of the first occurrence, or -1
+	 */
+	public int indexOf(ByteBuffer content, int from, int to) {
+		int lastIndex = bytes.length - 1;
+		int end = to - lastIndex;
+		if (byteShifts == null) {
+			byte first = bytes[0];
+			for (int pos = from; pos < end; pos++) {
+				if (content.get(pos) == first && matches(content, pos, 1, bytes.length)) {
+					return pos;
+				}
+			}
+			return -1;
+		}
+		byte lastByte = bytes[lastIndex];
+		for (int pos = from; pos < end;) {
+			byte b = content.get(pos + lastIndex);
+			if (b == lastByte && matches(content, pos, 0, lastIndex)) {
+				return pos;
+			}
+			pos += byteShifts[b & 0xFF];
+		}
+		return -1;
+	}
+
+	private boolean matches(ByteBuffer content, int pos, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (content.get(pos + i) != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "StringMatcher[" + needle + "]";
+	}
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.List;
+
+/**
+ * The text of an open document, organized by lines. Implementations are
+ * immutable: every edit returns a new buffer, so a buffer can safely be read
+ * while the document is being changed.
+ */
+public interface TextBuffer {
+
+	/**
+	 * @return the number of lines in the buffer
+	 */
+	int getLineCount();
+
+	/**
+	 * @return the content of the given line, without line delimiter
+	 */
+	String getLine(int line);
+
+	/**
+	 * @return the number of characters in the lines, plus one per line for
+	 *         its delimiter
+	 */
+	int getLength();
+
+	/**
+	 * Replaces the text between the two given positions.
+	 * 
+	 * @return the buffer with the edit applied
+	 */
+	TextBuffer replace(int startLine, int startCharacter, int endLine, int endCharacter, String text);
+
+	/**
+	 * @return a read-only list view of the lines in this buffer
+	 */
+	List<String> asList();
+}
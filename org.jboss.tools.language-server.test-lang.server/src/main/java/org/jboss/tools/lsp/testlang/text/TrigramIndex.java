@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the words of a vocabulary which contain a given text, without looking
+ * at every word: each word is filed under the three character substrings it
+ * contains, and a search only checks the words filed under the rarest
+ * substring of the text. Texts shorter than {@link #GRAM_LENGTH} can't be
+ * looked up this way.
+ * <p>
+ * Updates must be serialized by the caller. Searches may run concurrently
+ * with an update and then see the vocabulary before or after it, in part.
+ */
+public final class TrigramIndex {
+
+	/** The length of the substrings words are filed under. */
+	public static final int GRAM_LENGTH = 3;
+
+	private final Map<String, Set<String>> grams = new ConcurrentHashMap<>();
+
+	/**
+	 * Adds a word to the vocabulary.
+	 */
+	public void add(String word) {
+		for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+			grams.computeIfAbsent(word.substring(i, i + GRAM_LENGTH), g -> ConcurrentHashMap.newKeySet()).add(word);
+		}
+	}
+
+	/**
+	 * Removes a word from the vocabulary.
+	 */
+	public void remove(String word) {
+		for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+			grams.computeIfPresent(word.substring(i, i + GRAM_LENGTH), (g, words) -> {
+				words.remove(word);
+				return words.isEmpty() ? null : words;
+			});
+		}
+	}
+
+	public void clear() {
+		grams.clear();
+	}
+
+	/**
+	 * @return the words containing the given text, or <code>null</code> if
+	 *         the text is shorter than {@link #GRAM_LENGTH}, in which case the
+	 *         caller has to look at every word
+	 */
+	public Collection<String> find(String text) {
+		if (text.length() < GRAM_LENGTH) {
+			return null;
+		}
+		Set<String> rarest = null;
+		for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+			Set<String> words = grams.get(text.substring(i, i + GRAM_LENGTH));
+			if (words == null) {
+				return new ArrayList<>(0);
+			}
+			if (rarest == null || words.size() < rarest.size()) {
+				rarest = words;
+			}
+		}
+		List<String> result = new ArrayList<>();
+		for (String word : rarest) {
+			if (word.contains(text)) {
+				result.add(word);
+			}
+		}
+		return result;
+	}
+}
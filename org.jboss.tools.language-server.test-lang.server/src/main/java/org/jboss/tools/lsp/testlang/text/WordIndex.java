@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * An inverted index from the words of a document to the positions where they
+ * occur. A word is a maximal run of characters accepted by the index'
+ * predicate. The postings of each word are kept in a packed
+ * <code>int[]</code> of <code>(line, column)</code> pairs in document order.
+ * Searches restricted to a range of lines bisect the postings to the first
+ * line of the range. Occurrences inside longer words are found through a {@link TrigramIndex} of
+ * the words, so a search only looks at the words containing the searched one.
+ * <p>
+ * The index is updated incrementally from the lines touched by an edit. When
+ * an edit changes the number of lines, the postings of the words that were not
+ * touched are not rewritten: the line shift is recorded in a short log and
+ * applied when those postings are read or touched later.
+ * <p>
+ * Updates must be serialized by the caller. Reads may run concurrently with an
+ * update: they never fail, but may return inconsistent results, which callers
+ * must detect themselves (e.g. with a sequence stamp).
+ */
+public final class WordIndex {
+
+	/** Number of pending line shifts after which all postings are rewritten. */
+	private static final int MAX_PENDING_SHIFTS = 32;
+
+	/**
+	 * The occurrences of one word. Instances are never modified after they
+	 * have been published.
+	 */
+	private static final class Postings {
+		/** <code>(line, column)</code> pairs, sorted */
+		final int[] positions;
+		/** the number of shifts from the log already applied to the lines */
+		final int shifted;
+
+		Postings(int[] positions, int shifted) {
+			this.positions = positions;
+			this.shifted = shifted;
+		}
+	}
+
+	/** An immutable log of the line shifts not yet applied to all postings. */
+	private static final class Shifts {
+		static final Shifts NONE = new Shifts(new int[0], new int[0]);
+
+		/** lines at or after <code>from[i]</code> moved by <code>delta[i]</code> */
+		final int[] from;
+		final int[] delta;
+
+		Shifts(int[] from, int[] delta) {
+			this.from = from;
+			this.delta = delta;
+		}
+
+		int size() {
+			return from.length;
+		}
+
+		Shifts append(int line, int lineDelta) {
+			int[] newFrom = Arrays.copyOf(from, from.length + 1);
+			int[] newDelta = Arrays.copyOf(delta, delta.length + 1);
+			newFrom[from.length] = line;
+			newDelta[delta.length] = lineDelta;
+			return new Shifts(newFrom, newDelta);
+		}
+
+		int apply(int line, int appliedShifts) {
+			for (int i = appliedShifts; i < from.length; i++) {
+				if (line >= from[i]) {
+					line += delta[i];
+				}
+			}
+			return line;
+		}
+	}
+
+	private final IntPredicate wordCharacter;
+	private final Map<String, Postings> words = new ConcurrentHashMap<>();
+	private final TrigramIndex trigrams = new TrigramIndex();
+	private volatile Shifts shifts = Shifts.NONE;
+
+	/**
+	 * @param wordCharacter
+	 *            accepts the characters words are made of
+	 */
+	public WordIndex(IntPredicate wordCharacter) {
+		this.wordCharacter = wordCharacter;
+	}
+
+	/**
+	 * Discards the index and indexes all lines of the given text.
+	 */
+	public void reset(TextBuffer text) {
+		words.clear();
+		trigrams.clear();
+		shifts = Shifts.NONE;
+		Map<String, IntList> added = collect(text, 0, text.getLineCount());
+		for (Map.Entry<String, IntList> entry : added.entrySet()) {
+			words.put(entry.getKey(), new Postings(entry.getValue().toArray(), 0));
+			trigrams.add(entry.getKey());
+		}
+	}
+
+	/**
+	 * Updates the index after the lines <code>[from, oldTo)</code> of
+	 * <code>oldText</code> have been replaced by the lines
+	 * <code>[from, newTo)</code> of <code>newText</code>.
+	 */
+	public void update(TextBuffer oldText, TextBuffer newText, int from, int oldTo, int newTo) {
+		Set<String> removed = new HashSet<>();
+		for (int line = from; line < oldTo; line++) {
+			String text = oldText.getLine(line);
+			forEachWord(text, (start, end) -> removed.add(text.substring(start, end)));
+		}
+		Map<String, IntList> added = collect(newText, from, newTo);
+
+		Shifts before = shifts;
+		int delta = newTo - oldTo;
+		Shifts after = delta == 0 ? before : before.append(oldTo, delta);
+
+		Set<String> touched = new HashSet<>(removed);
+		touched.addAll(added.keySet());
+		for (String word : touched) {
+			Postings postings = words.get(word);
+			IntList positions = new IntList();
+			int insertAt = 0;
+			if (postings != null) {
+				int[] old = postings.positions;
+				for (int i = 0; i < old.length; i += 2) {
+					int line = before.apply(old[i], postings.shifted);
+					if (line < from) {
+						positions.add(line, old[i + 1]);
+						insertAt = positions.size();
+					} else if (line >= oldTo) {
+						positions.add(line + delta, old[i + 1]);
+					}
+				}
+			}
+			IntList inserted = added.get(word);
+			if (inserted != null) {
+				positions.insert(insertAt, inserted);
+			}
+			if (positions.size() == 0) {
+				if (words.remove(word) != null) {
+					trigrams.remove(word);
+				}
+			} else if (words.put(word, new Postings(positions.toArray(), after.size())) == null) {
+				trigrams.add(word);
+			}
+		}
+		shifts = after;
+		if (after.size() > MAX_PENDING_SHIFTS) {
+			applyShifts();
+		}
+	}
+
+	/**
+	 * Finds all occurrences of the given word, including the ones inside
+	 * longer words, the same way {@link String#indexOf(String, int)} would
+	 * find them line by line.
+	 *
+	 * @return the occurrences packed as <code>line &lt;&lt; 32 | column</code>
+	 *         in document order, or <code>null</code> if the word contains
+	 *         characters which are not indexed
+	 */
+	public long[] find(String word) {
+		return find(word, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Same as {@link #find(String)}, leaving out the occurrences outside of
+	 * the lines <code>fromLine</code> (inclusive) to <code>toLine</code>
+	 * (exclusive).
+	 */
+	public long[] find(String word, int fromLine, int toLine) {
+		if (word.isEmpty()) {
+			return null;
+		}
+		for (int i = 0; i < word.length(); i++) {
+			if (!wordCharacter.test(word.charAt(i))) {
+				return null;
+			}
+		}
+		Shifts currentShifts = shifts;
+		long[] result = new long[16];
+		int count = 0;
+		Collection<String> candidates = trigrams.find(word);
+		if (candidates == null) {
+			// too short to be looked up
+			candidates = words.keySet();
+		}
+		for (String candidate : candidates) {
+			int first = candidate.indexOf(word);
+			Postings postings = words.get(candidate);
+			if (first < 0 || postings == null) {
+				continue;
+			}
+			int[] positions = postings.positions;
+			for (int i = firstAtOrAfter(postings, currentShifts, fromLine); i < positions.length; i += 2) {
+				long line = currentShifts.apply(positions[i], postings.shifted);
+				if (line >= toLine) {
+					break;
+				}
+				for (int offset = first; offset >= 0; offset = candidate.indexOf(word, offset + word.length())) {
+					if (count == result.length) {
+						result = Arrays.copyOf(result, count * 2);
+					}
+					result[count++] = line << 32 | (positions[i + 1] + offset);
+				}
+			}
+		}
+		result = Arrays.copyOf(result, count);
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * @return the index in the postings of the first occurrence at or after
+	 *         the given line. The pending shifts keep the order of the lines
+	 *         of untouched postings, so they can be searched by bisection.
+	 */
+	private static int firstAtOrAfter(Postings postings, Shifts currentShifts, int line) {
+		int[] positions = postings.positions;
+		int low = 0;
+		int high = positions.length / 2;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (currentShifts.apply(positions[2 * middle], postings.shifted) < line) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return 2 * low;
+	}
+
+	/**
+	 * Receives a word and one of its occurrences.
+	 */
+	@FunctionalInterface
+	public interface OccurrenceConsumer {
+		/**
+		 * @param position
+		 *            the occurrence, packed as by {@link WordIndex#find(String)}
+		 */
+		void accept(String word, long position);
+	}
+
+	/**
+	 * Reports every word of the index with its first occurrence, in no
+	 * particular order. Unlike {@link #find(String)}, only whole words are
+	 * considered.
+	 */
+	public void forEachFirstOccurrence(OccurrenceConsumer consumer) {
+		Shifts currentShifts = shifts;
+		for (Map.Entry<String, Postings> entry : words.entrySet()) {
+			Postings postings = entry.getValue();
+			long line = currentShifts.apply(postings.positions[0], postings.shifted);
+			consumer.accept(entry.getKey(), line << 32 | postings.positions[1]);
+		}
+	}
+
+	public static int line(long position) {
+		return (int) (position >>> 32);
+	}
+
+	public static int column(long position) {
+		return (int) position;
+	}
+
+	private void applyShifts() {
+		Shifts current = shifts;
+		for (Map.Entry<String, Postings> entry : words.entrySet()) {
+			Postings postings = entry.getValue();
+			int[] positions = postings.positions.clone();
+			for (int i = 0; i < positions.length; i += 2) {
+				positions[i] = current.apply(positions[i], postings.shifted);
+			}
+			entry.setValue(new Postings(positions, 0));
+		}
+		shifts = Shifts.NONE;
+	}
+
+	private Map<String, IntList> collect(TextBuffer text, int from, int to) {
+		Map<String, IntList> result = new HashMap<>();
+		for (int line = from; line < to; line++) {
+			String content = text.getLine(line);
+			int lineNumber = line;
+			forEachWord(content, (start, end) -> result.computeIfAbsent(content.substring(start, end), w -> new IntList())
+					.add(lineNumber, start));
+		}
+		return result;
+	}
+
+	private interface WordConsumer {
+		void accept(int start, int end);
+	}
+
+	private void forEachWord(String line, WordConsumer consumer) {
+		int pos = 0;
+		int length = line.length();
+		while (pos < length) {
+			while (pos < length && !wordCharacter.test(line.charAt(pos))) {
+				pos++;
+			}
+			int start = pos;
+			while (pos < length && wordCharacter.test(line.charAt(pos))) {
+				pos++;
+			}
+			if (pos > start) {
+				consumer.accept(start, pos);
+			}
+		}
+	}
+
+	private static final class IntList {
+		int[] values = new int[4];
+		int size;
+
+		void add(int line, int column) {
+			if (size + 2 > values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+			}
+			values[size++] = line;
+			values[size++] = column;
+		}
+
+		void insert(int index, IntList other) {
+			if (size + other.size > values.length) {
+				values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+			}
+			System.arraycopy(values, index, values, index + other.size, size - index);
+			System.arraycopy(other.values, 0, values, index, other.size);
+			size += other.size;
+		}
+
+		int size() {
+			return size;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
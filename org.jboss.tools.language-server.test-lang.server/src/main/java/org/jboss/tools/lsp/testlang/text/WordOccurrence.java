@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.text;
+
+/**
+ * A word and the position where it occurs in a document.
+ */
+public final class WordOccurrence {
+
+	private final String word;
+	private final int line;
+	private final int column;
+
+	public WordOccurrence(String word, int line, int column) {
+		this.word = word;
+		this.line = line;
+		this.column = column;
+	}
+
+	public String getWord() {
+		return word;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	public int getColumn() {
+		return column;
+	}
+
+	@Override
+	public String toString() {
+		return word + "@" + line + ":" + column;
+	}
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.lsp4j.FileChangeType;
+
+/**
+ * Receives the changes of the files in the workspace, as reported by the
+ * client or found by a {@link WorkspaceWatcher}.
+ */
+public interface FileChangeListener {
+
+	void fileChanged(Path path, FileChangeType type);
+
+	/**
+	 * Called when changes have been lost, so that any file in the workspace
+	 * may have changed.
+	 */
+	void resynchronize();
+
+	/**
+	 * @return a listener forwarding the changes to all the given listeners
+	 */
+	static FileChangeListener all(FileChangeListener... listeners) {
+		List<FileChangeListener> all = Arrays.asList(listeners.clone());
+		return new FileChangeListener() {
+			@Override
+			public void fileChanged(Path path, FileChangeType type) {
+				all.forEach(listener -> listener.fileChanged(path, type));
+			}
+
+			@Override
+			public void resynchronize() {
+				all.forEach(FileChangeListener::resynchronize);
+			}
+		};
+	}
+}
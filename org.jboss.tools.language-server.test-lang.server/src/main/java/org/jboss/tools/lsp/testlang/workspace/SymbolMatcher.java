@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.util.Arrays;
+
+/**
+ * Decides whether a word matches a <code>workspace/symbol</code> query, and
+ * how well. All matches start with the first character of the query, ignoring
+ * case, which lets the index look only at the words starting with it.
+ */
+final class SymbolMatcher {
+
+	/** The word starts with the query. */
+	static final int PREFIX = 0;
+	/** The word starts with the query, ignoring case. */
+	static final int PREFIX_IGNORE_CASE = 1;
+	/**
+	 * The characters of the query start the humps of the word, or continue
+	 * them: <code>fB</code> and <code>fooB</code> match <code>fooBar</code>.
+	 */
+	static final int CAMEL_CASE = 2;
+	/** The characters of the query occur in the word in the same order. */
+	static final int FUZZY = 3;
+	static final int NO_MATCH = -1;
+
+	private SymbolMatcher() {
+	}
+
+	/**
+	 * @return the kind of the match, lower is better, or {@link #NO_MATCH}
+	 */
+	static int match(String query, String word) {
+		if (query.isEmpty()) {
+			return PREFIX;
+		}
+		if (word.length() < query.length() || !equalsIgnoreCase(query.charAt(0), word.charAt(0))) {
+			return NO_MATCH;
+		}
+		if (word.startsWith(query)) {
+			return PREFIX;
+		}
+		if (word.regionMatches(true, 0, query, 0, query.length())) {
+			return PREFIX_IGNORE_CASE;
+		}
+		if (matchesHumps(query, word)) {
+			return CAMEL_CASE;
+		}
+		return isSubsequence(query, word) ? FUZZY : NO_MATCH;
+	}
+
+	/**
+	 * Matches the query after its first character against the word after its
+	 * first character, a hump the query has entered. Each character of the
+	 * query continues the current hump or starts one of the next humps; the
+	 * choices are resolved backwards from the end of the query, in
+	 * <code>O(query.length() * word.length())</code>.
+	 */
+	private static boolean matchesHumps(String query, String word) {
+		int n = word.length();
+		// matched[w]: the rest of the query after q matches word[w..]
+		boolean[] matched = new boolean[n + 1];
+		Arrays.fill(matched, true);
+		boolean[] matching = new boolean[n + 1];
+		for (int q = query.length() - 1; q >= 1; q--) {
+			char c = query.charAt(q);
+			// whether c starts a hump after w and the rest of the query matches
+			boolean nextHump = false;
+			for (int w = n; w >= 1; w--) {
+				boolean here = w < n && equalsIgnoreCase(c, word.charAt(w)) && matched[w + 1];
+				matching[w] = here || nextHump;
+				nextHump |= here && isHumpStart(word, w);
+			}
+			boolean[] swap = matched;
+			matched = matching;
+			matching = swap;
+		}
+		return matched[1];
+	}
+
+	private static boolean isHumpStart(String word, int i) {
+		char c = word.charAt(i);
+		char previous = word.charAt(i - 1);
+		if (Character.isUpperCase(c)) {
+			return !Character.isUpperCase(previous);
+		}
+		if (Character.isDigit(c)) {
+			return !Character.isDigit(previous);
+		}
+		return Character.isLetter(c) && !Character.isLetterOrDigit(previous);
+	}
+
+	private static boolean isSubsequence(String query, String word) {
+		int w = 1;
+		for (int q = 1; q < query.length(); q++) {
+			char c = query.charAt(q);
+			while (w < word.length() && !equalsIgnoreCase(c, word.charAt(w))) {
+				w++;
+			}
+			if (w == word.length()) {
+				return false;
+			}
+			w++;
+		}
+		return true;
+	}
+
+	private static boolean equalsIgnoreCase(char a, char b) {
+		return a == b || Character.toLowerCase(a) == Character.toLowerCase(b)
+				|| Character.toUpperCase(a) == Character.toUpperCase(b);
+	}
+}
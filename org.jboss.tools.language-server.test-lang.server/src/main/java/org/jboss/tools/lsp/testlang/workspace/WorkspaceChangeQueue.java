@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.lsp4j.FileChangeType;
+
+/**
+ * Collects the files changed in the workspace until they are processed in a
+ * batch. A file changed several times before the batch is processed appears
+ * once, with its last change. Instances are thread safe.
+ */
+public class WorkspaceChangeQueue {
+
+	private Map<Path, FileChangeType> pending = new LinkedHashMap<>();
+
+	/**
+	 * Records a change of the given file, replacing any change of the same
+	 * file still pending.
+	 *
+	 * @return <code>true</code> if the queue was empty, in which case the
+	 *         caller has to arrange for the queue to be drained
+	 */
+	public synchronized boolean add(Path path, FileChangeType type) {
+		boolean wasEmpty = pending.isEmpty();
+		pending.put(path, type);
+		return wasEmpty;
+	}
+
+	/**
+	 * Removes all pending changes.
+	 *
+	 * @return the changes, in the order the files were first changed
+	 */
+	public synchronized Map<Path, FileChangeType> drain() {
+		Map<Path, FileChangeType> result = pending;
+		pending = new LinkedHashMap<>();
+		return result;
+	}
+
+	public synchronized int size() {
+		return pending.size();
+	}
+}
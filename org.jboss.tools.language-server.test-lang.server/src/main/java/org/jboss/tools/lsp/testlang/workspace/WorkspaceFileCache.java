@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.lsp4j.FileChangeType;
+import org.eclipse.lsp4j.FileEvent;
+import org.jboss.tools.lsp.testlang.Utils;
+import org.jboss.tools.lsp.testlang.text.LineScanner;
+
+/**
+ * Keeps the content of recently read workspace files in memory, with the
+ * bounds of their lines, so that repeated searches and quick fixes over the
+ * same files do not read them again. The cache holds at most
+ * {@link #CAPACITY} bytes of content and evicts the least recently used files
+ * first.
+ * <p>
+ * A cached file is used only while its modification time and size on disk
+ * are unchanged; file events remove it earlier. The cache is meant for files
+ * which are not open in the editor, whose content is managed by the
+ * {@link org.jboss.tools.lsp.testlang.DocumentManager}. Instances are thread
+ * safe.
+ */
+public class WorkspaceFileCache implements FileChangeListener {
+
+	/** The maximum number of bytes of file content kept in the cache. */
+	public static final String CAPACITY = "TESTLS_FILE_CACHE_BYTES";
+	private static final int DEFAULT_CAPACITY = 64 * 1024 * 1024;
+
+	/**
+	 * The content of a file, in UTF-8, with the bounds of its lines. Instances
+	 * are immutable.
+	 */
+	public static final class CachedFile {
+		private final Path path;
+		private final long modified;
+		private final long size;
+		private final byte[] content;
+		/** the byte offsets of the start and end of each line */
+		private final int[] lines;
+
+		CachedFile(Path path, long modified, long size, byte[] content) {
+			this.path = path;
+			this.modified = modified;
+			this.size = size;
+			this.content = content;
+			int[][] bounds = { new int[32] };
+			int count = LineScanner.scan(ByteBuffer.wrap(content), (start, end, line) -> {
+				if (2 * line + 2 > bounds[0].length) {
+					bounds[0] = Arrays.copyOf(bounds[0], bounds[0].length * 2);
+				}
+				bounds[0][2 * line] = start;
+				bounds[0][2 * line + 1] = end;
+			});
+			this.lines = Arrays.copyOf(bounds[0], 2 * count);
+		}
+
+		public Path getPath() {
+			return path;
+		}
+
+		/**
+		 * @return a read-only buffer of the UTF-8 content
+		 */
+		public ByteBuffer getContent() {
+			return ByteBuffer.wrap(content).asReadOnlyBuffer();
+		}
+
+		public int getLineCount() {
+			return lines.length / 2;
+		}
+
+		/**
+		 * @return the byte offset of the first character of the line
+		 */
+		public int getLineStart(int line) {
+			return lines[2 * line];
+		}
+
+		/**
+		 * @return the byte offset after the last character of the line,
+		 *         excluding the line separator
+		 */
+		public int getLineEnd(int line) {
+			return lines[2 * line + 1];
+		}
+
+		public String getLine(int line) {
+			int start = getLineStart(line);
+			return new String(content, start, getLineEnd(line) - start, StandardCharsets.UTF_8);
+		}
+
+		int byteSize() {
+			return content.length;
+		}
+	}
+
+	private final long capacity;
+	private final long maxFileSize;
+	private final Map<Path, CachedFile> files = new LinkedHashMap<>(16, 0.75f, true);
+	private long cachedBytes;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public WorkspaceFileCache() {
+		this(Utils.getEnvVarOrSysProp(CAPACITY, DEFAULT_CAPACITY));
+	}
+
+	/**
+	 * @param capacity
+	 *            the maximum number of bytes of content to keep. Files larger
+	 *            than an eighth of it are not cached.
+	 */
+	public WorkspaceFileCache(long capacity) {
+		this.capacity = Math.max(0, capacity);
+		this.maxFileSize = this.capacity / 8;
+	}
+
+	/**
+	 * Returns the given file from the cache, or reads it into the cache if it
+	 * is not cached or has changed on disk.
+	 *
+	 * @return the file, or <code>null</code> if it does not exist or is too
+	 *         large to be cached
+	 */
+	public CachedFile get(Path path) throws IOException {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			invalidate(path);
+			return null;
+		}
+		long modified = attributes.lastModifiedTime().toMillis();
+		long size = attributes.size();
+		if (!attributes.isRegularFile() || size > maxFileSize) {
+			invalidate(path);
+			return null;
+		}
+		synchronized (this) {
+			CachedFile cached = files.get(path);
+			if (cached != null && cached.modified == modified && cached.size == size) {
+				hits.incrementAndGet();
+				return cached;
+			}
+		}
+		misses.incrementAndGet();
+		byte[] content;
+		try {
+			content = Files.readAllBytes(path);
+		} catch (NoSuchFileException e) {
+			invalidate(path);
+			return null;
+		}
+		CachedFile file = new CachedFile(path, modified, size, content);
+		if (content.length == size) {
+			put(file);
+		}
+		return file;
+	}
+
+	private synchronized void put(CachedFile file) {
+		CachedFile previous = files.put(file.path, file);
+		if (previous != null) {
+			cachedBytes -= previous.byteSize();
+		}
+		cachedBytes += file.byteSize();
+		for (Iterator<CachedFile> eldest = files.values().iterator(); cachedBytes > capacity && eldest.hasNext();) {
+			cachedBytes -= eldest.next().byteSize();
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Removes the given file from the cache.
+	 */
+	public synchronized void invalidate(Path path) {
+		CachedFile removed = files.remove(path);
+		if (removed != null) {
+			cachedBytes -= removed.byteSize();
+		}
+	}
+
+	public synchronized void clear() {
+		files.clear();
+		cachedBytes = 0;
+	}
+
+	/**
+	 * Removes the files reported by the client from the cache.
+	 */
+	public void filesChanged(List<FileEvent> events) {
+		for (FileEvent event : events) {
+			Path path = WorkspaceIndexer.toPath(event.getUri());
+			if (path != null) {
+				invalidate(path);
+			}
+		}
+	}
+
+	@Override
+	public void fileChanged(Path path, FileChangeType type) {
+		invalidate(path);
+	}
+
+	@Override
+	public void resynchronize() {
+		clear();
+	}
+
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	public synchronized int getCachedFiles() {
+		return files.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+}
@@ -0,0 +1,672 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jboss.tools.lsp.testlang.CancellationToken;
+import org.jboss.tools.lsp.testlang.text.LineScanner;
+import org.jboss.tools.lsp.testlang.text.TrigramIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of the words in all <code>.test</code> files of the workspace. A
+ * word is a run of non-whitespace characters, the same way
+ * <code>textDocument/documentSymbol</code> splits a document. For each word
+ * the index records the files it occurs in and the position of its first
+ * occurrence in each file. The words are also kept sorted, for the prefix and
+ * camel case queries of <code>workspace/symbol</code>.
+ * <p>
+ * Files are identified by an id that is never reused: re-indexing a file
+ * retires its old id, and the postings of retired ids are only dropped when the
+ * index is compacted, once they pass a quarter of the live files, or saved.
+ */
+public class WorkspaceIndex {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceIndex.class);
+
+	private static final int MAGIC = 0x544c5349; // "TLSI"
+	private static final int FORMAT_VERSION = 1;
+
+	/** Longer words are not indexed; their files always match. */
+	static final int MAX_WORD_LENGTH = 256;
+
+	/**
+	 * The index is compacted once the retired ids exceed this fraction of the
+	 * live files, and this minimum.
+	 */
+	private static final int RETIRED_FRACTION = 4;
+	private static final int MIN_RETIRED = 64;
+
+	private static final class FileEntry {
+		final Path path;
+		final long modified;
+		final long size;
+		/** <code>false</code> if the file contains words too long to index */
+		final boolean complete;
+
+		FileEntry(Path path, long modified, long size, boolean complete) {
+			this.path = path;
+			this.modified = modified;
+			this.size = size;
+			this.complete = complete;
+		}
+	}
+
+	/** <code>(file id, line, column)</code> triples, in ascending file id order */
+	private static final class Postings {
+		int[] entries = new int[3];
+		int size;
+
+		void add(int file, int line, int column) {
+			if (size + 3 > entries.length) {
+				entries = Arrays.copyOf(entries, entries.length * 2);
+			}
+			entries[size++] = file;
+			entries[size++] = line;
+			entries[size++] = column;
+		}
+	}
+
+	/** A word matching a symbol query, with the kind of the match */
+	private static final class SymbolMatch {
+		/** by kind of match, then shorter words first, then alphabetically */
+		static final Comparator<SymbolMatch> ORDER = Comparator.comparingInt((SymbolMatch match) -> match.kind)
+				.thenComparingInt(match -> match.word.length()).thenComparing(match -> match.word);
+
+		final String word;
+		final int kind;
+
+		SymbolMatch(String word, int kind) {
+			this.word = word;
+			this.kind = kind;
+		}
+	}
+
+	private final Path root;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	/** indexed by file id, <code>null</code> for retired ids */
+	private final List<FileEntry> files = new ArrayList<>();
+	private final Map<Path, Integer> fileIds = new HashMap<>();
+	private final Map<String, Postings> words = new HashMap<>();
+	/**
+	 * the words in sorted order, except for the ones added since the last
+	 * merge, which are in <code>addedWords</code>
+	 */
+	private String[] sortedWords = new String[0];
+	private final List<String> addedWords = new ArrayList<>();
+	/** the words by their trigrams, for {@link #findCandidates(String)} */
+	private final TrigramIndex trigrams = new TrigramIndex();
+	private int retiredFiles;
+	private volatile boolean ready;
+
+	public WorkspaceIndex(Path root) {
+		this.root = root;
+	}
+
+	public Path getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return <code>true</code> once the index covers the whole workspace
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	void setReady() {
+		this.ready = true;
+	}
+
+	public static boolean isIndexed(Path path) {
+		return path.toString().endsWith(".test");
+	}
+
+	/**
+	 * Finds the files which may contain the given text.
+	 *
+	 * @return the candidate files, or <code>null</code> if the index can't
+	 *         tell and all files have to be searched
+	 */
+	public Collection<Path> findCandidates(String text) {
+		if (!ready || text.isEmpty() || text.chars().anyMatch(Character::isWhitespace)) {
+			return null;
+		}
+		lock.readLock().lock();
+		try {
+			Set<Path> result = new HashSet<>();
+			for (FileEntry file : files) {
+				if (file != null && !file.complete) {
+					result.add(file.path);
+				}
+			}
+			Collection<String> matches = trigrams.find(text);
+			if (matches == null) {
+				// too short to look up
+				matches = words.keySet().stream().filter(word -> word.contains(text)).collect(Collectors.toList());
+			}
+			for (String word : matches) {
+				Postings postings = words.get(word);
+				for (int i = 0; i < postings.size; i += 3) {
+					FileEntry file = files.get(postings.entries[i]);
+					if (file != null) {
+						result.add(file.path);
+					}
+				}
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Brings the index in line with the file system: indexes new and modified
+	 * files and forgets the files which no longer exist.
+	 */
+	public void synchronize() throws IOException {
+		synchronize(path -> false);
+	}
+
+	/**
+	 * Same as {@link #synchronize()}, leaving the skipped files as they are
+	 * in the index.
+	 */
+	public void synchronize(Predicate<Path> skipped) throws IOException {
+		Set<Path> found = new HashSet<>();
+		try (Stream<Path> paths = Files.walk(root, FileVisitOption.FOLLOW_LINKS)) {
+			paths.filter(WorkspaceIndex::isIndexed).forEach(path -> {
+				found.add(path);
+				if (skipped.test(path)) {
+					return;
+				}
+				try {
+					update(path);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		List<Path> deleted;
+		lock.readLock().lock();
+		try {
+			deleted = fileIds.keySet().stream().filter(path -> !found.contains(path)).collect(Collectors.toList());
+		} finally {
+			lock.readLock().unlock();
+		}
+		deleted.forEach(this::remove);
+	}
+
+	/**
+	 * (Re-)indexes the given file, unless it has not changed since it was
+	 * last indexed. Removes the file from the index if it does not exist.
+	 */
+	public void update(Path path) throws IOException {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			remove(path);
+			return;
+		}
+		if (!attributes.isRegularFile()) {
+			return;
+		}
+		long modified = attributes.lastModifiedTime().toMillis();
+		long size = attributes.size();
+		lock.readLock().lock();
+		try {
+			Integer id = fileIds.get(path);
+			if (id != null && files.get(id).modified == modified && files.get(id).size == size) {
+				return;
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		Map<String, Long> firstOccurrences = new LinkedHashMap<>();
+		boolean complete = collectWords(content, firstOccurrences);
+
+		lock.writeLock().lock();
+		try {
+			retire(path);
+			int id = files.size();
+			files.add(new FileEntry(path, modified, size, complete));
+			fileIds.put(path, id);
+			for (Map.Entry<String, Long> occurrence : firstOccurrences.entrySet()) {
+				long position = occurrence.getValue();
+				words.computeIfAbsent(occurrence.getKey(), this::addWord).add(id, (int) (position >>> 32),
+						(int) position);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the words matching a <code>workspace/symbol</code> query: the
+	 * words starting with the query, with or without regard to case, then
+	 * the words whose humps match it, like <code>fooBar</code> for
+	 * <code>fB</code>, and last the words containing its characters in order.
+	 * Within each group, shorter words come first.
+	 *
+	 * @return the first occurrence of the words in each file, at most
+	 *         <code>maxResults</code> of them
+	 */
+	public List<WorkspaceSymbol> findSymbols(String query, int maxResults) {
+		return findSymbols(query, maxResults, CancellationToken.NONE);
+	}
+
+	/**
+	 * Same as {@link #findSymbols(String, int)}, checking the token between
+	 * the candidate words.
+	 *
+	 * @throws java.util.concurrent.CancellationException
+	 *             if the token has been cancelled
+	 */
+	public List<WorkspaceSymbol> findSymbols(String query, int maxResults, CancellationToken token) {
+		List<WorkspaceSymbol> result = new ArrayList<>();
+		if (query.chars().anyMatch(Character::isWhitespace)) {
+			return result;
+		}
+		if (maxResults <= 0) {
+			return result;
+		}
+		lock.readLock().lock();
+		try {
+			// every selected word has a live occurrence, so the best
+			// maxResults words are all the results can come from. The worst
+			// of them is at the head of the heap.
+			PriorityQueue<SymbolMatch> best = new PriorityQueue<>(Math.min(maxResults, 1024),
+					SymbolMatch.ORDER.reversed());
+			for (String word : candidates(query)) {
+				token.checkCancelled();
+				int kind = SymbolMatcher.match(query, word);
+				if (kind == SymbolMatcher.NO_MATCH) {
+					continue;
+				}
+				SymbolMatch match = new SymbolMatch(word, kind);
+				if (best.size() == maxResults) {
+					if (SymbolMatch.ORDER.compare(match, best.peek()) >= 0 || !isLive(words.get(word))) {
+						continue;
+					}
+					best.poll();
+				} else if (!isLive(words.get(word))) {
+					continue;
+				}
+				best.add(match);
+			}
+			SymbolMatch[] matches = best.toArray(new SymbolMatch[best.size()]);
+			Arrays.sort(matches, SymbolMatch.ORDER);
+			for (SymbolMatch match : matches) {
+				token.checkCancelled();
+				String word = match.word;
+				Postings postings = words.get(word);
+				for (int i = 0; i < postings.size; i += 3) {
+					FileEntry file = files.get(postings.entries[i]);
+					if (file != null) {
+						if (result.size() == maxResults) {
+							return result;
+						}
+						result.add(new WorkspaceSymbol(word, file.path, postings.entries[i + 1],
+								postings.entries[i + 2]));
+					}
+				}
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the word occurs in a file which is still
+	 *         indexed. Must be called with a lock held.
+	 */
+	private boolean isLive(Postings postings) {
+		for (int i = 0; i < postings.size; i += 3) {
+			if (files.get(postings.entries[i]) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the words which may match the query: the ones starting with its
+	 *         first character in any case, or all words for an empty query.
+	 *         Must be called with a lock held.
+	 */
+	private Collection<String> candidates(String query) {
+		if (query.isEmpty()) {
+			return words.keySet();
+		}
+		char first = query.charAt(0);
+		Set<Character> firstChars = new HashSet<>(Arrays.asList(first, Character.toLowerCase(first),
+				Character.toUpperCase(first), Character.toTitleCase(first)));
+		List<String> result = new ArrayList<>();
+		for (char c : firstChars) {
+			int from = lowerBound(String.valueOf(c));
+			int to = c == Character.MAX_VALUE ? sortedWords.length : lowerBound(String.valueOf((char) (c + 1)));
+			result.addAll(Arrays.asList(sortedWords).subList(from, to));
+		}
+		for (String word : addedWords) {
+			if (firstChars.contains(word.charAt(0))) {
+				result.add(word);
+			}
+		}
+		return result;
+	}
+
+	private int lowerBound(String key) {
+		int index = Arrays.binarySearch(sortedWords, key);
+		return index < 0 ? -index - 1 : index;
+	}
+
+	/**
+	 * Records a word new to the index. The added words are merged into the
+	 * sorted words once there are many of them, so that queries only scan a
+	 * few unsorted words. Must be called with the write lock held.
+	 */
+	private Postings addWord(String word) {
+		trigrams.add(word);
+		addedWords.add(word);
+		if (addedWords.size() > Math.max(1024, sortedWords.length / 32)) {
+			String[] added = addedWords.toArray(new String[addedWords.size()]);
+			Arrays.sort(added);
+			String[] merged = new String[sortedWords.length + added.length];
+			int i = 0;
+			int j = 0;
+			int k = 0;
+			while (i < sortedWords.length || j < added.length) {
+				if (j == added.length || (i < sortedWords.length && sortedWords[i].compareTo(added[j]) < 0)) {
+					merged[k++] = sortedWords[i++];
+				} else {
+					merged[k++] = added[j++];
+				}
+			}
+			sortedWords = merged;
+			addedWords.clear();
+		}
+		return new Postings();
+	}
+
+	/**
+	 * Sorts all words again, after words have been dropped. Must be called
+	 * with the write lock held.
+	 */
+	private void sortWords() {
+		sortedWords = words.keySet().toArray(new String[words.size()]);
+		Arrays.sort(sortedWords);
+		addedWords.clear();
+	}
+
+	public void remove(Path path) {
+		lock.writeLock().lock();
+		try {
+			retire(path);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void retire(Path path) {
+		Integer id = fileIds.remove(path);
+		if (id != null) {
+			files.set(id, null);
+			retiredFiles++;
+			if (retiredFiles > MIN_RETIRED && retiredFiles > fileIds.size() / RETIRED_FRACTION) {
+				compact();
+			}
+		}
+	}
+
+	/**
+	 * Drops the postings of retired file ids and renumbers the remaining
+	 * files. Must be called with the write lock held.
+	 */
+	private void compact() {
+		int[] newIds = renumber();
+		List<FileEntry> liveFiles = files.stream().filter(f -> f != null).collect(Collectors.toList());
+		files.clear();
+		files.addAll(liveFiles);
+		fileIds.clear();
+		for (int i = 0; i < files.size(); i++) {
+			fileIds.put(files.get(i).path, i);
+		}
+		words.entrySet().removeIf(entry -> {
+			Postings postings = entry.getValue();
+			int size = 0;
+			for (int i = 0; i < postings.size; i += 3) {
+				int id = newIds[postings.entries[i]];
+				if (id >= 0) {
+					postings.entries[size++] = id;
+					postings.entries[size++] = postings.entries[i + 1];
+					postings.entries[size++] = postings.entries[i + 2];
+				}
+			}
+			postings.size = size;
+			if (size == 0) {
+				trigrams.remove(entry.getKey());
+				return true;
+			}
+			return false;
+		});
+		sortWords();
+		retiredFiles = 0;
+	}
+
+	/**
+	 * @return the new id of each file id, <code>-1</code> for retired ids
+	 */
+	private int[] renumber() {
+		int[] newIds = new int[files.size()];
+		int next = 0;
+		for (int i = 0; i < newIds.length; i++) {
+			newIds[i] = files.get(i) == null ? -1 : next++;
+		}
+		return newIds;
+	}
+
+	/**
+	 * Collects the first occurrence of each word in the given content.
+	 *
+	 * @return <code>false</code> if some words were too long to be indexed
+	 */
+	static boolean collectWords(String content, Map<String, Long> firstOccurrences) {
+		boolean[] complete = { true };
+		LineScanner.scan(content, (lineStart, lineEnd, line) -> {
+			int i = lineStart;
+			while (i < lineEnd) {
+				if (Character.isWhitespace(content.charAt(i))) {
+					i++;
+					continue;
+				}
+				int start = i;
+				while (i < lineEnd && !Character.isWhitespace(content.charAt(i))) {
+					i++;
+				}
+				if (i - start > MAX_WORD_LENGTH) {
+					complete[0] = false;
+				} else {
+					firstOccurrences.putIfAbsent(content.substring(start, i), (long) line << 32 | (start - lineStart));
+				}
+			}
+		});
+		return complete[0];
+	}
+
+	/**
+	 * Compacts the index, then writes it to the given file, replacing it
+	 * atomically. Queries may run while the file is written.
+	 */
+	public void save(Path storage) throws IOException {
+		Files.createDirectories(storage.getParent());
+		Path temp = storage.resolveSibling(storage.getFileName() + ".tmp");
+		lock.writeLock().lock();
+		try {
+			if (retiredFiles > 0) {
+				compact();
+			}
+			// downgrade, so that only updates wait for the file
+			lock.readLock().lock();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		try (OutputStream stream = Files.newOutputStream(temp)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(root.toString());
+			writeVarInt(out, files.size());
+			for (FileEntry file : files) {
+				out.writeUTF(root.relativize(file.path).toString());
+				out.writeLong(file.modified);
+				out.writeLong(file.size);
+				out.writeBoolean(file.complete);
+			}
+			writeVarInt(out, words.size());
+			for (Map.Entry<String, Postings> entry : words.entrySet()) {
+				Postings postings = entry.getValue();
+				out.writeUTF(entry.getKey());
+				writeVarInt(out, postings.size / 3);
+				int previous = 0;
+				for (int i = 0; i < postings.size; i += 3) {
+					int id = postings.entries[i];
+					writeVarInt(out, id - previous);
+					writeVarInt(out, postings.entries[i + 1]);
+					writeVarInt(out, postings.entries[i + 2]);
+					previous = id;
+				}
+			}
+			out.flush();
+		} finally {
+			lock.readLock().unlock();
+		}
+		Files.move(temp, storage, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Replaces the content of this index with the one saved in the given file.
+	 * The loaded index still has to be {@link #synchronize() synchronized}
+	 * with the file system.
+	 *
+	 * @return <code>true</code> if the file contained a valid index for this
+	 *         workspace
+	 */
+	public boolean load(Path storage) {
+		if (!Files.isRegularFile(storage)) {
+			return false;
+		}
+		lock.writeLock().lock();
+		try (InputStream stream = Files.newInputStream(storage)) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !root.toString().equals(in.readUTF())) {
+				return false;
+			}
+			files.clear();
+			fileIds.clear();
+			words.clear();
+			trigrams.clear();
+			retiredFiles = 0;
+			int fileCount = readVarInt(in);
+			for (int i = 0; i < fileCount; i++) {
+				Path path = root.resolve(in.readUTF());
+				files.add(new FileEntry(path, in.readLong(), in.readLong(), in.readBoolean()));
+				fileIds.put(path, i);
+			}
+			int wordCount = readVarInt(in);
+			for (int i = 0; i < wordCount; i++) {
+				String word = in.readUTF();
+				int count = readVarInt(in);
+				Postings postings = new Postings();
+				postings.entries = new int[Math.max(3, count * 3)];
+				int id = 0;
+				for (int j = 0; j < count; j++) {
+					id += readVarInt(in);
+					postings.add(id, readVarInt(in), readVarInt(in));
+				}
+				words.put(word, postings);
+				trigrams.add(word);
+			}
+			sortWords();
+			return true;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Could not load workspace index from " + storage, e);
+			files.clear();
+			fileIds.clear();
+			words.clear();
+			trigrams.clear();
+			sortWords();
+			return false;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed index file");
+	}
+}
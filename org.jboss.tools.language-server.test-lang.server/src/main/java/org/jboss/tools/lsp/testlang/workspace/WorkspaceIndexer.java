@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.eclipse.lsp4j.FileChangeType;
+import org.eclipse.lsp4j.FileEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains a {@link WorkspaceIndex} in the background: loads the saved index
+ * on start-up, synchronizes it with the file system, applies the file events
+ * reported by the client and saves it back to disk.
+ * <p>
+ * File events are queued and applied in batches, so a burst of events for the
+ * same file re-indexes it once. Files open in the editor are skipped, by the
+ * events as well as when the index is synchronized: their content on disk is
+ * not what the user sees. They are re-indexed from disk when they are closed.
+ */
+public class WorkspaceIndexer implements FileChangeListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceIndexer.class);
+
+	/** Delay before the index is saved after it has been changed. */
+	private static final long SAVE_DELAY_SECONDS = 10;
+	/** Delay before queued file changes are applied, to batch bursts. */
+	private static final long BATCH_DELAY_MILLIS = 50;
+
+	private final WorkspaceIndex index;
+	private final Path storage;
+	private final Predicate<Path> openFiles;
+	private final WorkspaceChangeQueue changes = new WorkspaceChangeQueue();
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "test-lang-indexer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private ScheduledFuture<?> pendingSave;
+
+	/**
+	 * @param root
+	 *            the root of the workspace to index
+	 * @param storage
+	 *            the file the index is saved to
+	 */
+	public WorkspaceIndexer(Path root, Path storage) {
+		this(root, storage, path -> false);
+	}
+
+	/**
+	 * @param root
+	 *            the root of the workspace to index
+	 * @param storage
+	 *            the file the index is saved to
+	 * @param openFiles
+	 *            accepts the files open in the editor, whose changes on disk
+	 *            are ignored
+	 */
+	public WorkspaceIndexer(Path root, Path storage, Predicate<Path> openFiles) {
+		this.index = new WorkspaceIndex(root);
+		this.storage = storage;
+		this.openFiles = openFiles;
+	}
+
+	public WorkspaceIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Loads and synchronizes the index in the background.
+	 */
+	public void start() {
+		executor.execute(() -> {
+			long start = System.currentTimeMillis();
+			boolean loaded = index.load(storage);
+			try {
+				index.synchronize(openFiles);
+				index.setReady();
+				LOGGER.info("Indexed workspace {} in {}ms (saved index {})", index.getRoot(),
+						System.currentTimeMillis() - start, loaded ? "reused" : "not available");
+				save();
+			} catch (IOException | RuntimeException e) {
+				LOGGER.error("Failed to index workspace " + index.getRoot(), e);
+			}
+		});
+	}
+
+	/**
+	 * Queues the given file events, to be applied to the index in the
+	 * background.
+	 */
+	public void filesChanged(List<FileEvent> events) {
+		for (FileEvent event : events) {
+			Path path = toPath(event.getUri());
+			if (path != null) {
+				fileChanged(path, event.getType());
+			}
+		}
+	}
+
+	/**
+	 * Queues a change of the given file, to be applied to the index in the
+	 * background. Changes of files which are not indexed or lie outside the
+	 * workspace are ignored, and so are all changes once the indexer has been
+	 * shut down.
+	 */
+	@Override
+	public void fileChanged(Path path, FileChangeType type) {
+		if (WorkspaceIndex.isIndexed(path) && path.startsWith(index.getRoot()) && changes.add(path, type)) {
+			try {
+				executor.schedule(this::applyChanges, BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				LOGGER.debug("Ignoring change of {} after shutdown", path);
+			}
+		}
+	}
+
+	/**
+	 * Synchronizes the whole index with the file system in the background.
+	 */
+	@Override
+	public void resynchronize() {
+		try {
+			executor.execute(() -> {
+				try {
+					index.synchronize(openFiles);
+					scheduleSave();
+				} catch (IOException | RuntimeException e) {
+					LOGGER.error("Failed to synchronize workspace index " + index.getRoot(), e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			LOGGER.debug("Ignoring resynchronization after shutdown");
+		}
+	}
+
+	/**
+	 * Queues the given file to be re-indexed from disk, now that it has been
+	 * closed in the editor.
+	 */
+	public void fileClosed(String uri) {
+		Path path = toPath(uri);
+		if (path != null) {
+			fileChanged(path, FileChangeType.Changed);
+		}
+	}
+
+	void applyChanges() {
+		Map<Path, FileChangeType> batch = changes.drain();
+		int applied = 0;
+		for (Map.Entry<Path, FileChangeType> change : batch.entrySet()) {
+			Path path = change.getKey();
+			if (openFiles.test(path)) {
+				continue;
+			}
+			try {
+				if (change.getValue() == FileChangeType.Deleted) {
+					index.remove(path);
+				} else {
+					index.update(path);
+				}
+				applied++;
+			} catch (IOException | RuntimeException e) {
+				LOGGER.error("Failed to index " + path, e);
+			}
+		}
+		LOGGER.debug("Applied {} of {} file changes", applied, batch.size());
+		if (applied > 0) {
+			scheduleSave();
+		}
+	}
+
+	/**
+	 * Saves the index and stops the background thread. Does nothing if the
+	 * indexer has already been shut down.
+	 */
+	public synchronized void shutdown() {
+		if (executor.isShutdown()) {
+			return;
+		}
+		executor.execute(this::save);
+		executor.shutdown();
+	}
+
+	private void scheduleSave() {
+		if (executor.isShutdown()) {
+			// the final save is already queued
+			return;
+		}
+		if (pendingSave == null || pendingSave.isDone()) {
+			pendingSave = executor.schedule(this::save, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+
+	private void save() {
+		if (!index.isReady()) {
+			return;
+		}
+		try {
+			index.save(storage);
+		} catch (IOException e) {
+			LOGGER.error("Failed to save workspace index to " + storage, e);
+		}
+	}
+
+	/**
+	 * @return the path of the given URI, or <code>null</code> if it does not
+	 *         denote a file
+	 */
+	public static Path toPath(String uri) {
+		try {
+			return Paths.get(URI.create(uri));
+		} catch (IllegalArgumentException | FileSystemNotFoundException e) {
+			LOGGER.debug("Not a file: {}", uri);
+			return null;
+		}
+	}
+}
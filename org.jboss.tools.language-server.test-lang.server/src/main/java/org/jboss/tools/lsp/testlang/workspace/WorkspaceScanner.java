@@ -0,0 +1,485 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.jboss.tools.lsp.testlang.CancellationToken;
+import org.jboss.tools.lsp.testlang.VirtualThreads;
+import org.jboss.tools.lsp.testlang.text.LineScanner;
+import org.jboss.tools.lsp.testlang.text.StringMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Searches the <code>.test</code> files of the workspace for a piece of text.
+ * Directories are walked and files are scanned in parallel on a
+ * {@link ForkJoinPool}. Files are read as UTF-8 into a byte buffer, mapped for
+ * larger files, and searched without decoding them to strings. The matches of
+ * each file are handed to the consumer as soon as the file has been scanned,
+ * so no file content is retained after its scan.
+ * <p>
+ * Alternatively, the files can be scanned on an executor starting a thread
+ * per task, typically virtual threads: the directories are then walked by the
+ * caller and each batch of files is scanned by its own task. Blocking reads
+ * only park the virtual thread instead of tying up a pool thread.
+ * <p>
+ * A scanner {@link #withCache(WorkspaceFileCache) with a cache} takes the
+ * files from a {@link WorkspaceFileCache} instead, so that files scanned
+ * repeatedly are not read again while they are unchanged.
+ */
+public class WorkspaceScanner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceScanner.class);
+
+	/** Files smaller than this are read into a heap buffer instead of being mapped. */
+	private static final int MAP_THRESHOLD = 64 * 1024;
+
+	/** Number of files scanned sequentially by one task. */
+	private static final int FILES_PER_TASK = 8;
+
+	private final ForkJoinPool pool;
+	private final ExecutorService executor;
+	private final WorkspaceFileCache cache;
+
+	public WorkspaceScanner() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public WorkspaceScanner(ForkJoinPool pool) {
+		this(pool, null, null);
+	}
+
+	/**
+	 * @param executor
+	 *            runs the scan of each batch of files, expected to start a new
+	 *            (virtual) thread per task
+	 */
+	public WorkspaceScanner(ExecutorService executor) {
+		this(null, executor, null);
+	}
+
+	private WorkspaceScanner(ForkJoinPool pool, ExecutorService executor, WorkspaceFileCache cache) {
+		this.pool = pool;
+		this.executor = executor;
+		this.cache = cache;
+	}
+
+	/**
+	 * @return a scanner on virtual threads if they are enabled, on the common
+	 *         pool otherwise
+	 */
+	public static WorkspaceScanner create() {
+		return create(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @return a scanner on virtual threads if they are enabled, on the given
+	 *         pool otherwise
+	 */
+	public static WorkspaceScanner create(ForkJoinPool pool) {
+		return VirtualThreads.isEnabled() ? new WorkspaceScanner(VirtualThreads.newExecutor())
+				: new WorkspaceScanner(pool);
+	}
+
+	/**
+	 * @return a scanner running on the same threads as this one, taking the
+	 *         files from the given cache. Files too large to be cached are
+	 *         read as usual.
+	 */
+	public WorkspaceScanner withCache(WorkspaceFileCache cache) {
+		return new WorkspaceScanner(pool, executor, cache);
+	}
+
+	/**
+	 * Searches all <code>.test</code> files below the given root.
+	 *
+	 * @param consumer
+	 *            receives the matches of each file which contains the text. It
+	 *            is called concurrently from the threads of the pool.
+	 */
+	public void scan(Path root, String text, BiConsumer<Path, List<Range>> consumer) throws IOException {
+		scan(root, text, CancellationToken.NONE, consumer);
+	}
+
+	/**
+	 * Searches all <code>.test</code> files below the given root, checking
+	 * the token between lines and files.
+	 *
+	 * @throws java.util.concurrent.CancellationException
+	 *             if the token has been cancelled
+	 */
+	public void scan(Path root, String text, CancellationToken token, BiConsumer<Path, List<Range>> consumer)
+			throws IOException {
+		StringMatcher needle = toNeedle(text);
+		if (needle == null) {
+			return;
+		}
+		Set<Object> visited = ConcurrentHashMap.newKeySet();
+		visited.add(fileKey(root, Files.readAttributes(root, BasicFileAttributes.class)));
+		Search search = new Search(needle, cache, token, consumer);
+		if (pool != null) {
+			invoke(new DirectoryTask(root, search, visited));
+		} else {
+			submitAll(search, Collections.singletonList(root), Collections.emptyList(), visited);
+		}
+	}
+
+	/**
+	 * Searches the given files. Files which no longer exist are skipped.
+	 *
+	 * @param consumer
+	 *            receives the matches of each file which contains the text. It
+	 *            is called concurrently from the threads of the pool.
+	 */
+	public void scan(Collection<Path> files, String text, BiConsumer<Path, List<Range>> consumer) throws IOException {
+		scan(files, text, CancellationToken.NONE, consumer);
+	}
+
+	/**
+	 * Searches the given files, checking the token between lines and files.
+	 *
+	 * @throws java.util.concurrent.CancellationException
+	 *             if the token has been cancelled
+	 */
+	public void scan(Collection<Path> files, String text, CancellationToken token,
+			BiConsumer<Path, List<Range>> consumer) throws IOException {
+		StringMatcher needle = toNeedle(text);
+		if (needle == null) {
+			return;
+		}
+		Search search = new Search(needle, cache, token, consumer);
+		if (pool != null) {
+			invoke(new FilesTask(new ArrayList<>(files), search));
+		} else {
+			submitAll(search, Collections.emptyList(), files, null);
+		}
+	}
+
+	private void invoke(ForkJoinTask<?> task) throws IOException {
+		try {
+			pool.invoke(task);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Walks the given directories in the calling thread and submits the files
+	 * found, as well as the given files, in batches to the executor. Waits for
+	 * all batches; if one fails, the others are cancelled.
+	 */
+	private void submitAll(Search search, List<Path> roots, Collection<Path> files, Set<Object> visited)
+			throws IOException {
+		List<Future<?>> submitted = new ArrayList<>();
+		try {
+			Deque<Path> directories = new ArrayDeque<>(roots);
+			List<Path> pending = new ArrayList<>(files);
+			while (true) {
+				for (int i = 0; i < pending.size(); i += FILES_PER_TASK) {
+					List<Path> batch = pending.subList(i, Math.min(i + FILES_PER_TASK, pending.size()));
+					submitted.add(executor.submit(() -> search.scanFiles(batch)));
+				}
+				Path directory = directories.poll();
+				if (directory == null) {
+					break;
+				}
+				pending = new ArrayList<>();
+				list(directory, search, visited, directories, pending);
+			}
+			for (Future<?> future : submitted) {
+				await(future);
+			}
+		} finally {
+			for (Future<?> future : submitted) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	private static void await(Future<?> future) throws IOException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * @return the matcher to search with, or <code>null</code> if the text
+	 *         can't occur within a line
+	 */
+	private static StringMatcher toNeedle(String text) {
+		if (text.isEmpty() || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+			return null;
+		}
+		return StringMatcher.compile(text);
+	}
+
+	/**
+	 * Finds the non-overlapping occurrences of the needle in the given UTF-8
+	 * content. Lines are separated by <code>\n</code>, <code>\r</code> or
+	 * <code>\r\n</code>, see {@link LineScanner}, and columns are counted in
+	 * UTF-16 code units.
+	 */
+	static List<Range> find(ByteBuffer content, StringMatcher needle, CancellationToken token) {
+		List<Range> result = new ArrayList<>(0);
+		LineScanner.scan(content, (start, end, line) -> {
+			token.checkCancelled();
+			findInLine(content, start, end, line, needle, result);
+		});
+		return result;
+	}
+
+	/**
+	 * Same as {@link #find(ByteBuffer, StringMatcher, CancellationToken)},
+	 * using the line bounds of the cached file instead of looking for line
+	 * separators.
+	 */
+	static List<Range> find(WorkspaceFileCache.CachedFile file, StringMatcher needle, CancellationToken token) {
+		List<Range> result = new ArrayList<>(0);
+		ByteBuffer content = file.getContent();
+		for (int line = 0; line < file.getLineCount(); line++) {
+			token.checkCancelled();
+			findInLine(content, file.getLineStart(line), file.getLineEnd(line), line, needle, result);
+		}
+		return result;
+	}
+
+	private static void findInLine(ByteBuffer content, int start, int end, int line, StringMatcher needle,
+			List<Range> result) {
+		// the UTF-16 column of the byte offset 'counted'
+		int counted = start;
+		int column = 0;
+		for (int pos = needle.indexOf(content, start, end); pos >= 0; pos = needle.indexOf(content,
+				pos + needle.byteLength(), end)) {
+			column = advanceColumn(content, counted, pos, column);
+			counted = pos;
+			result.add(new Range(new Position(line, column), new Position(line, column + needle.length())));
+		}
+	}
+
+	/**
+	 * @return the UTF-16 column of byte offset <code>to</code>, given the column
+	 *         of byte offset <code>from</code> on the same line
+	 */
+	private static int advanceColumn(ByteBuffer content, int from, int to, int column) {
+		for (int i = from; i < to; i++) {
+			int b = content.get(i);
+			if ((b & 0xC0) != 0x80) {
+				// the first byte of a character, four byte sequences are surrogate pairs
+				column += (b & 0xF8) == 0xF0 ? 2 : 1;
+			}
+		}
+		return column;
+	}
+
+	/**
+	 * Lists a directory, adding the sub-directories not visited yet and the
+	 * <code>.test</code> files to the given collections. Symbolic links are
+	 * followed.
+	 */
+	private static void list(Path directory, Search search, Set<Object> visited, Collection<Path> directories,
+			Collection<Path> files) throws IOException {
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+			for (Path entry : entries) {
+				search.token.checkCancelled();
+				BasicFileAttributes attributes;
+				try {
+					attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+				} catch (IOException e) {
+					// deleted in the meantime, or a broken link
+					continue;
+				}
+				if (attributes.isDirectory()) {
+					if (visited.add(fileKey(entry, attributes))) {
+						directories.add(entry);
+					}
+				} else if (attributes.isRegularFile() && WorkspaceIndex.isIndexed(entry)) {
+					files.add(entry);
+				}
+			}
+		}
+	}
+
+	private static Object fileKey(Path path, BasicFileAttributes attributes) throws IOException {
+		Object key = attributes.fileKey();
+		return key != null ? key : path.toRealPath();
+	}
+
+	/**
+	 * The parameters of one search, shared by all its tasks.
+	 */
+	private static final class Search {
+		final StringMatcher needle;
+		final WorkspaceFileCache cache;
+		final CancellationToken token;
+		final BiConsumer<Path, List<Range>> consumer;
+
+		Search(StringMatcher needle, WorkspaceFileCache cache, CancellationToken token,
+				BiConsumer<Path, List<Range>> consumer) {
+			this.needle = needle;
+			this.cache = cache;
+			this.token = token;
+			this.consumer = consumer;
+		}
+
+		void scanFiles(List<Path> files) {
+			for (Path file : files) {
+				token.checkCancelled();
+				try {
+					List<Range> matches = scanFile(file);
+					if (!matches.isEmpty()) {
+						consumer.accept(file, matches);
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+
+		private List<Range> scanFile(Path file) throws IOException {
+			if (cache != null) {
+				WorkspaceFileCache.CachedFile cached = cache.get(file);
+				if (cached != null) {
+					return find(cached, needle, token);
+				}
+			}
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				long size = channel.size();
+				if (size > Integer.MAX_VALUE) {
+					LOGGER.warn("Skipping {}, it is too large to be scanned", file);
+					return Collections.emptyList();
+				}
+				ByteBuffer content;
+				if (size < MAP_THRESHOLD) {
+					content = ByteBuffer.allocate((int) size);
+					while (content.hasRemaining() && channel.read(content) >= 0) {
+						// read until the buffer is full
+					}
+					content.flip();
+				} else {
+					content = channel.map(MapMode.READ_ONLY, 0, size);
+				}
+				return find(content, needle, token);
+			} catch (NoSuchFileException e) {
+				return Collections.emptyList();
+			}
+		}
+	}
+
+	/**
+	 * Scans the files of a directory and forks a task for each sub-directory.
+	 * Symbolic links are followed, each directory is visited only once.
+	 */
+	private static final class DirectoryTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Path directory;
+		private final Search search;
+		private final Set<Object> visited;
+
+		DirectoryTask(Path directory, Search search, Set<Object> visited) {
+			this.directory = directory;
+			this.search = search;
+			this.visited = visited;
+		}
+
+		@Override
+		protected void compute() {
+			List<ForkJoinTask<?>> forked = new ArrayList<>();
+			List<Path> directories = new ArrayList<>();
+			List<Path> files = new ArrayList<>();
+			try {
+				list(directory, search, visited, directories, files);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			for (Path subDirectory : directories) {
+				forked.add(new DirectoryTask(subDirectory, search, visited).fork());
+			}
+			int batched = files.size() - files.size() % FILES_PER_TASK;
+			for (int i = 0; i < batched; i += FILES_PER_TASK) {
+				forked.add(new FilesTask(files.subList(i, i + FILES_PER_TASK), search).fork());
+			}
+			search.scanFiles(files.subList(batched, files.size()));
+			for (ForkJoinTask<?> task : forked) {
+				task.join();
+			}
+		}
+	}
+
+	/**
+	 * Scans a list of files, splitting it in halves until it is small enough.
+	 */
+	private static final class FilesTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Path> files;
+		private final Search search;
+
+		FilesTask(List<Path> files, Search search) {
+			this.files = files;
+			this.search = search;
+		}
+
+		@Override
+		protected void compute() {
+			if (files.size() <= FILES_PER_TASK) {
+				search.scanFiles(files);
+			} else {
+				int mid = files.size() / 2;
+				invokeAll(new FilesTask(files.subList(0, mid), search),
+						new FilesTask(files.subList(mid, files.size()), search));
+			}
+		}
+	}
+}
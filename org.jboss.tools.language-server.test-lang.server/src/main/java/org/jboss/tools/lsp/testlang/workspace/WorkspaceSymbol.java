@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.nio.file.Path;
+
+/**
+ * A word found by {@link WorkspaceIndex#findSymbols(String, int)}, with its
+ * first occurrence in one file.
+ */
+public final class WorkspaceSymbol {
+
+	private final String word;
+	private final Path path;
+	private final int line;
+	private final int column;
+
+	public WorkspaceSymbol(String word, Path path, int line, int column) {
+		this.word = word;
+		this.path = path;
+		this.line = line;
+		this.column = column;
+	}
+
+	public String getWord() {
+		return word;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public int getLine() {
+		return line;
+	}
+
+	public int getColumn() {
+		return column;
+	}
+
+	@Override
+	public String toString() {
+		return word + "@" + path + ":" + line + ":" + column;
+	}
+}
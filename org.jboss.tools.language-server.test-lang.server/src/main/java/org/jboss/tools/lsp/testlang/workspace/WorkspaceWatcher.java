@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat - Initial Contribution
+ *******************************************************************************/
+package org.jboss.tools.lsp.testlang.workspace;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.eclipse.lsp4j.FileChangeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches the workspace with a {@link WatchService}, for the clients which do
+ * not send <code>workspace/didChangeWatchedFiles</code>. All directories under
+ * the root are registered, including the ones created later.
+ * <p>
+ * Events are collected until none has arrived for {@link #QUIET_MILLIS}, and
+ * the changed files are then reported once each. Bursts, like a checkout
+ * touching thousands of files, are thus reported as one batch. When events
+ * are lost, or a watched directory is deleted, the listener is asked to
+ * resynchronize instead.
+ */
+public class WorkspaceWatcher {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceWatcher.class);
+
+	/** Time without events after which the collected changes are reported. */
+	static final long QUIET_MILLIS = 100;
+	/** Maximum time changes are collected before they are reported. */
+	private static final long MAX_BATCH_MILLIS = 2000;
+
+	private final Path root;
+	private final FileChangeListener listener;
+	private final Map<WatchKey, Path> directories = new HashMap<>();
+	private final Set<Path> watched = new HashSet<>();
+	private WatchService watchService;
+	private Thread thread;
+
+	public WorkspaceWatcher(Path root, FileChangeListener listener) {
+		this.root = root;
+		this.listener = listener;
+	}
+
+	/**
+	 * Registers the directories of the workspace and watches them in the
+	 * background.
+	 */
+	public synchronized void start() throws IOException {
+		watchService = FileSystems.getDefault().newWatchService();
+		thread = new Thread(this::watch, "test-lang-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public synchronized void stop() {
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				LOGGER.warn("Failed to close watch service", e);
+			}
+		}
+	}
+
+	private void watch() {
+		try {
+			register(root);
+			LOGGER.info("Watching {} directories under {}", directories.size(), root);
+		} catch (IOException | ClosedWatchServiceException e) {
+			LOGGER.error("Failed to watch " + root, e);
+			return;
+		}
+		try {
+			while (true) {
+				Map<Path, FileChangeType> changes = new LinkedHashMap<>();
+				boolean lost = process(watchService.take(), changes);
+				long deadline = System.currentTimeMillis() + MAX_BATCH_MILLIS;
+				WatchKey key;
+				while (System.currentTimeMillis() < deadline
+						&& (key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					lost |= process(key, changes);
+				}
+				try {
+					if (lost) {
+						listener.resynchronize();
+					} else {
+						changes.forEach(listener::fileChanged);
+					}
+				} catch (RuntimeException e) {
+					LOGGER.error("Failed to report file changes", e);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// stopped
+		}
+	}
+
+	/**
+	 * Collects the changes reported by the given key.
+	 *
+	 * @return <code>true</code> if changes have been lost
+	 */
+	private boolean process(WatchKey key, Map<Path, FileChangeType> changes) {
+		boolean lost = false;
+		Path directory = directories.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				lost = true;
+				continue;
+			}
+			Path path = directory.resolve((Path) event.context());
+			if (event.kind() == ENTRY_CREATE) {
+				if (Files.isDirectory(path)) {
+					// files may have been created before the directory was
+					// registered
+					lost |= !registerNew(path, changes);
+				} else {
+					changes.put(path, FileChangeType.Created);
+				}
+			} else if (event.kind() == ENTRY_MODIFY) {
+				changes.putIfAbsent(path, FileChangeType.Changed);
+			} else if (event.kind() == ENTRY_DELETE) {
+				changes.put(path, FileChangeType.Deleted);
+				// the files in a deleted directory are not reported
+				lost |= watched.contains(path);
+			}
+		}
+		if (!key.reset()) {
+			watched.remove(directories.remove(key));
+		}
+		return lost;
+	}
+
+	private boolean registerNew(Path directory, Map<Path, FileChangeType> changes) {
+		try {
+			register(directory);
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.filter(WorkspaceIndex::isIndexed).forEach(path -> changes.put(path, FileChangeType.Created));
+			}
+			return true;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Failed to watch " + directory, e);
+			return false;
+		}
+	}
+
+	private void register(Path start) throws IOException {
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+				watched.add(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
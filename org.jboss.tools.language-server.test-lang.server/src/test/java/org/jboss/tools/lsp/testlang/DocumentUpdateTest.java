@@ -3,6 +3,8 @@ package org.jboss.tools.lsp.testlang;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.jboss.tools.lsp.testlang.text.SegmentedSearch;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -10,7 +12,16 @@ import org.mockito.Mockito;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DocumentUpdateTest {
     private DocumentManager dm;
@@ -57,6 +68,215 @@ public class DocumentUpdateTest {
         Assert.assertEquals(Arrays.asList("1"), dm.getContent("foo"));
     }
 
+    @Test
+    public void testSnapshotIsNotAffectedByChanges() throws IOException, URISyntaxException {
+        DocumentSnapshot before = dm.getSnapshot("foo");
+        dm.didChange("foo", 7, Arrays.asList(createChange(0, 0, 2, 5, "replaced")));
+        DocumentSnapshot after = dm.getSnapshot("foo");
+        Assert.assertEquals(Arrays.asList("first", "second", "third"), before.getLines());
+        Assert.assertEquals(Arrays.asList("replaced"), after.getLines());
+        Assert.assertEquals(7, after.getVersion());
+        Assert.assertFalse(dm.isCurrent(before));
+        Assert.assertTrue(dm.isCurrent(after));
+    }
+
+    @Test
+    public void testFailedChangeKeepsIndex() {
+        dm.getFirstOccurrences(dm.getSnapshot("foo"), CancellationToken.NONE);
+        try {
+            dm.didChange("foo", Arrays.asList(createChange(0, 0, 0, 5, "renamed"), createChange(1, 0, 1, 99, "x")));
+            Assert.fail("expected the change to fail");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        Assert.assertEquals(Arrays.asList("first", "second", "third"), dm.getSnapshot("foo").getLines());
+        List<Range> found = new ArrayList<>();
+        dm.findInDocument(new TextDocumentIdentifier("foo"), "first", (document, range, text) -> found.add(range));
+        Assert.assertEquals(Arrays.asList(new Range(new Position(0, 0), new Position(0, 5))), found);
+        found.clear();
+        dm.findInDocument(new TextDocumentIdentifier("foo"), "renamed", (document, range, text) -> found.add(range));
+        Assert.assertTrue(found.isEmpty());
+        Assert.assertEquals("[first@0:0, second@1:0, third@2:0]",
+                dm.getFirstOccurrences(dm.getSnapshot("foo"), CancellationToken.NONE).toString());
+    }
+
+    @Test
+    public void testFindAfterChange() {
+        dm.didChange("foo", Arrays.asList(createChange(1, 0, 1, 0, "first\nsecond ")));
+        List<Range> found = new ArrayList<>();
+        dm.findInDocument(new TextDocumentIdentifier("foo"), "first", (document, range, text) -> found.add(range));
+        Assert.assertEquals(Arrays.asList(new Range(new Position(0, 0), new Position(0, 5)),
+                new Range(new Position(1, 0), new Position(1, 5))), found);
+    }
+
+    @Test
+    public void testFindWithLimits() {
+        dm.didChange("foo", Arrays.asList(createChange(0, 0, 2, 5, "xa ya a\na\nya a\nxa ya")));
+        DocumentSnapshot snapshot = dm.getSnapshot("foo");
+        // "a" is answered from the word index, "a " needs a scan of the lines
+        Assert.assertEquals(Arrays.asList("0:1", "0:4", "0:6", "1:0", "2:1", "2:3", "3:1", "3:4"),
+                find(snapshot, "a", SearchLimits.NONE));
+        Assert.assertEquals(Arrays.asList("1:0", "2:1", "2:3"), find(snapshot, "a", new SearchLimits(1, 3, 10)));
+        Assert.assertEquals(Arrays.asList("2:1", "2:3"), find(snapshot, "a", SearchLimits.around(2, 0, -1)));
+        Assert.assertEquals(Arrays.asList("0:1"), find(snapshot, "a", SearchLimits.FIRST));
+        Assert.assertEquals(Arrays.asList("0:1", "0:4", "2:1", "3:1"), find(snapshot, "a ", SearchLimits.NONE));
+        Assert.assertEquals(Arrays.asList("0:1", "0:4", "2:1"), find(snapshot, "a ", SearchLimits.around(1, 1, -1)));
+        Assert.assertEquals(Arrays.asList("0:1"), find(snapshot, "a ", SearchLimits.FIRST));
+        Assert.assertEquals(Arrays.asList(), find(snapshot, "a ", new SearchLimits(0, 10, 0)));
+    }
+
+    @Test
+    public void testFindStopsWhenConsumerDeclines() {
+        dm.didChange("foo", Arrays.asList(createChange(0, 0, 2, 5, "a b\na b\na b")));
+        DocumentSnapshot snapshot = dm.getSnapshot("foo");
+        for (String word : new String[] { "a", "a " }) {
+            List<Range> found = new ArrayList<>();
+            dm.findInDocument(snapshot, word, SearchLimits.NONE, (document, range, text) -> !found.add(range)
+                    || found.size() < 2, CancellationToken.NONE);
+            Assert.assertEquals(word, 2, found.size());
+        }
+    }
+
+    @Test
+    public void testParallelFind() throws IOException, URISyntaxException {
+        StringBuilder text = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 60000; i++) {
+            text.append(i % 7 == 0 ? "a b a b\n" : "b\n");
+            if (i % 7 == 0) {
+                expected.add(i + ":0");
+                expected.add(i + ":4");
+            }
+        }
+        Assert.assertTrue(SegmentedSearch.isParallel(60000));
+        dm.didOpen("large", text.toString());
+        DocumentSnapshot snapshot = dm.getSnapshot("large");
+        Assert.assertEquals(expected, find(snapshot, "a b", SearchLimits.NONE));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            dm.setSearchPool(pool);
+            Assert.assertEquals(expected, find(snapshot, "a b", SearchLimits.NONE));
+            Assert.assertEquals(expected.subList(0, 3), find(snapshot, "a b", new SearchLimits(0, 60000, 3)));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentEditsOfTwoDocuments() throws Exception {
+        DocumentManager manager = new DocumentManager();
+        manager.didOpen("a", "a");
+        manager.didOpen("b", "b");
+        int edits = 500;
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (String uri : new String[] { "a", "b" }) {
+                writers.add(pool.submit(() -> {
+                    for (int line = 0; line < edits; line++) {
+                        // append a line holding the name of the document
+                        manager.didChange(uri, Arrays.asList(createChange(line, 1, line, 1, "\n" + uri)));
+                    }
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                readers.add(pool.submit(() -> {
+                    int[] lineCounts = new int[2];
+                    while (!done.get()) {
+                        for (int d = 0; d < 2; d++) {
+                            String uri = d == 0 ? "a" : "b";
+                            DocumentSnapshot snapshot = manager.getSnapshot(uri);
+                            List<String> lines = snapshot.getLines();
+                            Assert.assertTrue(lines.size() >= lineCounts[d]);
+                            lineCounts[d] = lines.size();
+                            Assert.assertEquals(Collections.nCopies(lines.size(), uri), new ArrayList<>(lines));
+                            List<Range> found = new ArrayList<>();
+                            manager.findInDocument(snapshot, uri, (document, range, text) -> found.add(range));
+                            Assert.assertEquals(lines.size(), found.size());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            done.set(true);
+            pool.shutdownNow();
+        }
+        Assert.assertEquals(Collections.nCopies(edits + 1, "a"), manager.getContent("a"));
+        Assert.assertEquals(Collections.nCopies(edits + 1, "b"), manager.getContent("b"));
+    }
+
+    @Test(timeout = 60000)
+    public void testReaderDoesNotBlockEdits() throws Exception {
+        DocumentManager manager = new DocumentManager();
+        manager.didOpen("a", "a\na");
+        manager.didOpen("b", "b");
+        DocumentSnapshot snapshot = manager.getSnapshot("a");
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Range>> reader = pool.submit(() -> {
+                List<Range> found = new ArrayList<>();
+                manager.findInDocument(snapshot, "a", (document, range, text) -> {
+                    reading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return found.add(range);
+                });
+                return found;
+            });
+            reading.await();
+            // both documents can be changed while a search of one is stuck
+            manager.didChange("b", Arrays.asList(createChange(0, 0, 0, 1, "c")));
+            manager.didChange("a", Arrays.asList(createChange(0, 0, 1, 1, "d")));
+            Assert.assertEquals(Arrays.asList("c"), manager.getContent("b"));
+            Assert.assertEquals(Arrays.asList("d"), manager.getContent("a"));
+            release.countDown();
+            Assert.assertEquals(Arrays.asList(new Range(new Position(0, 0), new Position(0, 1)),
+                    new Range(new Position(1, 0), new Position(1, 1))), reader.get());
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFirstOccurrences() {
+        DocumentSnapshot opened = dm.getSnapshot("foo");
+        Assert.assertEquals("[first@0:0, second@1:0, third@2:0]",
+                dm.getFirstOccurrences(opened, CancellationToken.NONE).toString());
+        dm.didChange("foo", Arrays.asList(createChange(0, 0, 0, 5, "third x")));
+        DocumentSnapshot changed = dm.getSnapshot("foo");
+        Assert.assertEquals("[third@0:0, x@0:6, second@1:0]",
+                dm.getFirstOccurrences(changed, CancellationToken.NONE).toString());
+        dm.didChange("foo", Arrays.asList(createChange(0, 0, 1, 0, "")));
+        Assert.assertEquals("[second@0:0, third@1:0]",
+                dm.getFirstOccurrences(dm.getSnapshot("foo"), CancellationToken.NONE).toString());
+        // outdated snapshots are scanned
+        Assert.assertEquals("[third@0:0, x@0:6, second@1:0]",
+                dm.getFirstOccurrences(changed, CancellationToken.NONE).toString());
+        Assert.assertEquals("[first@0:0, second@1:0, third@2:0]",
+                dm.getFirstOccurrences(opened, CancellationToken.NONE).toString());
+    }
+
+    private List<String> find(DocumentSnapshot snapshot, String word, SearchLimits limits) {
+        List<String> found = new ArrayList<>();
+        dm.findInDocument(snapshot, word, limits, (document, range, text) -> found.add(range.getStart().getLine()
+                + ":" + range.getStart().getCharacter()), CancellationToken.NONE);
+        return found;
+    }
 
     static TextDocumentContentChangeEvent createChange(int startLine, int startChar, int endLine, int endChar, String insertedText) {
         return new TextDocumentContentChangeEvent(
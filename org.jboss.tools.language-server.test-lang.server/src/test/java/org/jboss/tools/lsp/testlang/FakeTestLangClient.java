@@ -14,19 +14,26 @@ package org.jboss.tools.lsp.testlang;
 import jnr.unixsocket.UnixServerSocketChannel;
 import jnr.unixsocket.UnixSocketAddress;
 import jnr.unixsocket.UnixSocketChannel;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.DidSaveTextDocumentParams;
 import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ReferenceContext;
+import org.eclipse.lsp4j.ReferenceParams;
 import org.eclipse.lsp4j.ShowMessageRequestParams;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
 import org.eclipse.lsp4j.jsonrpc.Launcher;
 import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
 import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
 import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
 import org.eclipse.lsp4j.services.LanguageServer;
 import org.jboss.tools.lsp.ext.ExtendedLanguageClient;
+import org.jboss.tools.lsp.ext.PartialResultParams;
 import org.jboss.tools.lsp.ext.StatusReport;
 import org.junit.rules.ExternalResource;
 import org.slf4j.Logger;
@@ -37,10 +44,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -48,6 +59,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Simulates the behavior of an IDE that supports the Language Server Protocol.
@@ -75,6 +87,14 @@ public class FakeTestLangClient extends ExternalResource implements ExtendedLang
 	private UnixSocketChannel fromServer;
 	private UnixSocketChannel toServer;
 
+	/** The root of the workspace the server is initialized with. */
+	private Path workspace;
+	/** Where the server saves its workspace index. */
+	private Path indexDir;
+	private String previousIndexDir;
+
+	private final List<PartialResultParams> partialResults = new CopyOnWriteArrayList<>();
+
 	/**
 	 * Constructor
 	 * 
@@ -89,6 +109,9 @@ public class FakeTestLangClient extends ExternalResource implements ExtendedLang
 	@Override
 	protected void before() throws Throwable {
 		LOGGER.info("before test method");
+		workspace = Files.createTempDirectory("test-lang-workspace");
+		indexDir = Files.createTempDirectory("test-lang-index");
+		previousIndexDir = System.setProperty(TestLanguageServer.INDEX_DIR, indexDir.toString());
 
 		// set system properties so the 'test lang' server can look-up the Unix
 		// socket location
@@ -167,6 +190,31 @@ public class FakeTestLangClient extends ExternalResource implements ExtendedLang
 		}
 		closeChannel(fromServer);
 		closeChannel(toServer);
+		if (previousIndexDir == null) {
+			System.clearProperty(TestLanguageServer.INDEX_DIR);
+		} else {
+			System.setProperty(TestLanguageServer.INDEX_DIR, previousIndexDir);
+		}
+		delete(workspace);
+		delete(indexDir);
+	}
+
+	private static void delete(Path directory) {
+		if (directory == null) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		} catch (IOException e) {
+			LOGGER.error("Failed to delete " + directory, e);
+		}
+	}
+
+	/**
+	 * @return the root of the workspace the server is initialized with
+	 */
+	public Path getWorkspace() {
+		return workspace;
 	}
 
 	private void closeChannel(UnixSocketChannel channel) {
@@ -188,11 +236,46 @@ public class FakeTestLangClient extends ExternalResource implements ExtendedLang
 	 * @throws IOException
 	 */
 	public void sendInitializeRequest() throws InterruptedException, IOException {
+		sendInitializeRequest(null);
+	}
+
+	/**
+	 * Sends the Initialize request with the given initialization options, e.g.
+	 * <code>{"streaming": true}</code>.
+	 * 
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	public void sendInitializeRequest(Object initializationOptions) throws InterruptedException, IOException {
 		InitializeParams params = new InitializeParams();
-		params.setRootPath(System.getProperty("java.io.tmpdir"));
+		params.setRootPath(workspace.toString());
+		params.setInitializationOptions(initializationOptions);
 		languageServer.initialize(params);
 	}
 
+	/**
+	 * Sends a "textDocument/didOpen" notification to the server.
+	 */
+	public void sendDidOpenNotification(final String documentUri, final String text) {
+		DidOpenTextDocumentParams params = new DidOpenTextDocumentParams();
+		params.setTextDocument(new TextDocumentItem(documentUri, "test", 1, text));
+		languageServer.getTextDocumentService().didOpen(params);
+	}
+
+	/**
+	 * Sends a "textDocument/references" request to the server.
+	 */
+	public CompletableFuture<List<? extends Location>> sendReferencesRequest(final String documentUri,
+			final Position position) {
+		ReferenceContext context = new ReferenceContext();
+		context.setIncludeDeclaration(true);
+		ReferenceParams params = new ReferenceParams();
+		params.setContext(context);
+		params.setTextDocument(new TextDocumentIdentifier(documentUri));
+		params.setPosition(position);
+		return languageServer.getTextDocumentService().references(params);
+	}
+
 	/**
 	 * Sends a "textDocument/didSave" notification to the server.
 	 * 
@@ -279,4 +362,17 @@ public class FakeTestLangClient extends ExternalResource implements ExtendedLang
 		// TODO Auto-generated method stub
 
 	}
+
+	@Override
+	public void partialResult(PartialResultParams params) {
+		partialResults.add(params);
+	}
+
+	/**
+	 * @return the partial results received so far, in the order they were
+	 *         sent
+	 */
+	public List<PartialResultParams> getPartialResults() {
+		return new ArrayList<>(partialResults);
+	}
 }
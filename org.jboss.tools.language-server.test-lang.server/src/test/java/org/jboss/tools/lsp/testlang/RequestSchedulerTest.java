@@ -0,0 +1,131 @@
+package org.jboss.tools.lsp.testlang;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.tools.lsp.ext.MethodReport;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestSchedulerTest {
+
+    private final RequestScheduler scheduler = new RequestScheduler(1, 1, 1, 1);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testRejectsWhenFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = scheduler.interactive(token -> {
+            started.countDown();
+            await(release);
+            return "running";
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = scheduler.interactive(token -> "queued");
+        CompletableFuture<String> rejected = scheduler.interactive(token -> "rejected");
+        Assert.assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        // the heavy pool is not affected
+        Assert.assertEquals("heavy", scheduler.heavy(token -> "heavy").get(10, TimeUnit.SECONDS));
+        release.countDown();
+        Assert.assertEquals("running", running.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals("queued", queued.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailures() throws Exception {
+        CompletableFuture<Object> result = scheduler.heavy(token -> {
+            throw new IllegalStateException();
+        });
+        try {
+            result.get(10, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testCancellation() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        CompletableFuture<Object> result = scheduler.heavy(token -> {
+            started.countDown();
+            try {
+                while (true) {
+                    token.checkCancelled();
+                }
+            } finally {
+                stopped.countDown();
+            }
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        result.cancel(true);
+        Assert.assertTrue(stopped.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        scheduler.interactive("test/sleep", token -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }).get(10, TimeUnit.SECONDS);
+        CompletableFuture<Object> failed = scheduler.heavy("test/fail", token -> {
+            throw new IllegalStateException();
+        });
+        try {
+            failed.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            // expected
+        }
+        scheduler.heavy(token -> "unnamed").get(10, TimeUnit.SECONDS);
+
+        MethodReport sleep = scheduler.getMetrics().getReport().getMethods().get("test/sleep");
+        Assert.assertEquals(1, sleep.getCount());
+        Assert.assertEquals(1, sleep.getQueued().getCount());
+        Assert.assertTrue(sleep.getExecuted().getMax() >= 19000);
+        MethodReport fail = scheduler.getMetrics().getReport().getMethods().get("test/fail");
+        Assert.assertEquals(1, fail.getCount());
+        Assert.assertEquals(1, fail.getErrors());
+        Assert.assertEquals(2, scheduler.getMetrics().getReport().getMethods().size());
+    }
+
+    @Test
+    public void testSearchPool() throws Exception {
+        ForkJoinPool pool = scheduler.getSearchPool();
+        Assert.assertNotSame(ForkJoinPool.commonPool(), pool);
+        Assert.assertTrue(pool.submit(() -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS)
+                .startsWith("test-lang-search-"));
+        Assert.assertEquals(Long.valueOf(pool.getParallelism()),
+                scheduler.getMetrics().getReport().getGauges().get("searchPool.parallelism"));
+        scheduler.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -11,15 +11,25 @@
 
 package org.jboss.tools.lsp.testlang;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.jboss.tools.lsp.ext.PartialResultParams;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -70,4 +80,47 @@ public class TestLanguageServerTest {
 		assertTrue("Did not receive all messages", fakeClient.waitForMessages(TimeUnit.SECONDS.toMillis(600)));
 	}
 
+	@Test
+	public void shouldStreamReferencesInPartialResults()
+			throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		// given a test lang server streaming its results in chunks of 2
+		String previousSize = System.setProperty(TestLanguageServer.PARTIAL_RESULT_SIZE, "2");
+		try {
+			new TestLanguageServer().start();
+			fakeClient.waitForConnections();
+			fakeClient.expectMessages("language/status", "language/status");
+			fakeClient.sendInitializeRequest(Collections.singletonMap("streaming", true));
+			assertTrue("Did not receive all messages", fakeClient.waitForMessages(TimeUnit.SECONDS.toMillis(600)));
+			String uri = fakeClient.getWorkspace().resolve("a.test").toUri().toString();
+			fakeClient.sendDidOpenNotification(uri, "foo bar foo\nfoo");
+			// when
+			List<? extends Location> response = fakeClient.sendReferencesRequest(uri, new Position(0, 1)).get(600,
+					TimeUnit.SECONDS);
+			// then the references arrive in partial results sent before the
+			// empty response
+			assertTrue(response.isEmpty());
+			List<PartialResultParams> partialResults = fakeClient.getPartialResults();
+			assertEquals(2, partialResults.size());
+			Set<Position> starts = new HashSet<>();
+			for (PartialResultParams partialResult : partialResults) {
+				assertEquals("textDocument/references", partialResult.getMethod());
+				assertEquals(uri, partialResult.getUri());
+				assertEquals(partialResults.get(0).getToken(), partialResult.getToken());
+				for (Location location : partialResult.getLocations()) {
+					starts.add(location.getRange().getStart());
+				}
+			}
+			assertFalse(partialResults.get(0).isDone());
+			assertTrue(partialResults.get(1).isDone());
+			assertEquals(new HashSet<>(Arrays.asList(new Position(0, 0), new Position(0, 8), new Position(1, 0))),
+					starts);
+		} finally {
+			if (previousSize == null) {
+				System.clearProperty(TestLanguageServer.PARTIAL_RESULT_SIZE);
+			} else {
+				System.setProperty(TestLanguageServer.PARTIAL_RESULT_SIZE, previousSize);
+			}
+		}
+	}
+
 }
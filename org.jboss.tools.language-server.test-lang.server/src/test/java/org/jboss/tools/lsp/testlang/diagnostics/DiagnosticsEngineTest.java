@@ -0,0 +1,183 @@
+package org.jboss.tools.lsp.testlang.diagnostics;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.jboss.tools.lsp.testlang.DocumentManager;
+import org.jboss.tools.lsp.testlang.DocumentSnapshot;
+import org.jboss.tools.lsp.testlang.text.SegmentedSearch;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DiagnosticsEngineTest {
+
+    private static final String[] WORDS = { "foo", "bar", "foobar", "ba", "x", " ", "\n", "\r\n" };
+
+    private static final List<DiagnosticsEngine.Rule> RULES = Arrays.asList(
+            new DiagnosticsEngine.Rule(DiagnosticSeverity.Error, "foo", "no foo"),
+            new DiagnosticsEngine.Rule(DiagnosticSeverity.Warning, "bar", "no bar"));
+
+    private DocumentManager dm;
+    private DiagnosticsEngine engine;
+    private List<List<Diagnostic>> published;
+
+    @Before
+    public void setUp() {
+        dm = new DocumentManager();
+        published = new ArrayList<>();
+        engine = new DiagnosticsEngine((uri, diagnostics) -> published.add(diagnostics));
+    }
+
+    @Test
+    public void testMergesRules() throws IOException, URISyntaxException {
+        dm.didOpen("foo", "foo bar\nbarfoo");
+        engine.setRules("foo", RULES, dm.getContent("foo"));
+        Assert.assertEquals(1, published.size());
+        Assert.assertEquals(Arrays.asList("0:0-0:3 no foo", "0:4-0:7 no bar", "1:3-1:6 no foo", "1:0-1:3 no bar"),
+                toStrings(published.get(0)));
+    }
+
+    @Test
+    public void testShiftsUnchangedLines() throws IOException, URISyntaxException {
+        dm.didOpen("foo", "a\nfoo\nb");
+        engine.setRules("foo", RULES, dm.getContent("foo"));
+        change(0, 0, 0, 0, "bar\n\n");
+        Assert.assertEquals(Arrays.asList("0:0-0:3 no bar", "3:0-3:3 no foo"), toStrings(last()));
+    }
+
+    @Test
+    public void testNothingPublishedWithoutRules() throws IOException, URISyntaxException {
+        dm.didOpen("foo", "foo");
+        engine.setRules("foo", Collections.emptyList(), dm.getContent("foo"));
+        change(0, 0, 0, 0, "bar");
+        Assert.assertTrue(published.isEmpty());
+    }
+
+    @Test
+    public void testRandomEdits() throws IOException, URISyntaxException {
+        Random random = new Random(42);
+        dm.didOpen("foo", randomText(random, 200));
+        engine.setRules("foo", RULES, dm.getContent("foo"));
+        for (int i = 0; i < 500; i++) {
+            List<TextDocumentContentChangeEvent> changes = new ArrayList<>();
+            List<String> lines = new ArrayList<>(dm.getContent("foo"));
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                int startLine = random.nextInt(lines.size());
+                int endLine = Math.min(lines.size() - 1, startLine + random.nextInt(3));
+                int startChar = random.nextInt(lines.get(startLine).length() + 1);
+                int endChar = random.nextInt(lines.get(endLine).length() + 1);
+                if (startLine == endLine && endChar < startChar) {
+                    int tmp = startChar;
+                    startChar = endChar;
+                    endChar = tmp;
+                }
+                String text = randomText(random, 4);
+                changes.add(createChange(startLine, startChar, endLine, endChar, text));
+                String joined = String.join("\n", lines);
+                int start = offset(lines, startLine, startChar);
+                int end = offset(lines, endLine, endChar);
+                lines = new ArrayList<>(Arrays.asList((joined.substring(0, start) + text.replace("\r\n", "\n")
+                        + joined.substring(end)).split("\n", -1)));
+            }
+            dm.didChange("foo", changes);
+            engine.didChange("foo", changes, dm.getSnapshot("foo"));
+
+            List<List<Diagnostic>> expected = new ArrayList<>();
+            new DiagnosticsEngine((uri, diagnostics) -> expected.add(diagnostics)).setRules("foo", RULES,
+                    dm.getContent("foo"));
+            Assert.assertEquals(toStrings(expected.get(0)), toStrings(last()));
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws IOException, URISyntaxException {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 60000; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int j = random.nextInt(6); j > 0; j--) {
+                // no line breaks
+                line.append(WORDS[random.nextInt(6)]);
+            }
+            lines.add(line.toString());
+        }
+        Assert.assertTrue(SegmentedSearch.isParallel(lines.size()));
+        dm.didOpen("foo", String.join("\n", lines));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new DiagnosticsEngine((uri, diagnostics) -> published.add(diagnostics), pool).setRules("foo", RULES,
+                    dm.getContent("foo"));
+        } finally {
+            pool.shutdownNow();
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            for (DiagnosticsEngine.Rule rule : RULES) {
+                String word = rule.word;
+                for (int column = lines.get(i).indexOf(word); column >= 0; column = lines.get(i).indexOf(word,
+                        column + 1)) {
+                    expected.add(i + ":" + column + "-" + i + ":" + (column + word.length()) + " " + rule.message);
+                }
+            }
+        }
+        Assert.assertEquals(1, published.size());
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, toStrings(published.get(0)));
+    }
+
+    private void change(int startLine, int startChar, int endLine, int endChar, String text) {
+        List<TextDocumentContentChangeEvent> changes = Arrays
+                .asList(createChange(startLine, startChar, endLine, endChar, text));
+        dm.didChange("foo", changes);
+        DocumentSnapshot snapshot = dm.getSnapshot("foo");
+        engine.didChange("foo", changes, snapshot);
+    }
+
+    private List<Diagnostic> last() {
+        return published.get(published.size() - 1);
+    }
+
+    private static int offset(List<String> lines, int line, int character) {
+        int offset = 0;
+        for (int i = 0; i < line; i++) {
+            offset += lines.get(i).length() + 1;
+        }
+        return offset + character;
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder b = new StringBuilder();
+        for (int i = random.nextInt(words + 1); i > 0; i--) {
+            b.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return b.toString();
+    }
+
+    private static List<String> toStrings(List<Diagnostic> diagnostics) {
+        List<String> result = new ArrayList<>();
+        for (Diagnostic diagnostic : diagnostics) {
+            Range range = diagnostic.getRange();
+            result.add(range.getStart().getLine() + ":" + range.getStart().getCharacter() + "-"
+                    + range.getEnd().getLine() + ":" + range.getEnd().getCharacter() + " " + diagnostic.getMessage());
+        }
+        return result;
+    }
+
+    private static TextDocumentContentChangeEvent createChange(int startLine, int startChar, int endLine,
+            int endChar, String text) {
+        return new TextDocumentContentChangeEvent(
+                new Range(new Position(startLine, startChar), new Position(endLine, endChar)), 0, text);
+    }
+}
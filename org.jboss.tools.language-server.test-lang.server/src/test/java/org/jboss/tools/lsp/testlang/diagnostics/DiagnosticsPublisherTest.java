@@ -0,0 +1,55 @@
+package org.jboss.tools.lsp.testlang.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DiagnosticsPublisherTest {
+
+    @Test
+    public void testCoalescesUpdates() throws InterruptedException {
+        List<PublishDiagnosticsParams> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(2);
+        DiagnosticsPublisher publisher = new DiagnosticsPublisher(params -> {
+            sent.add(params);
+            latch.countDown();
+        }, 200);
+        List<Diagnostic> latest = Collections.singletonList(new Diagnostic());
+        publisher.publish("a", Collections.emptyList());
+        publisher.publish("b", Collections.emptyList());
+        publisher.publish("a", latest);
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, sent.size());
+        for (PublishDiagnosticsParams params : sent) {
+            Assert.assertEquals(params.getUri().equals("a") ? latest : Collections.emptyList(),
+                    params.getDiagnostics());
+        }
+    }
+
+    @Test
+    public void testShutdownSendsPending() {
+        List<PublishDiagnosticsParams> sent = new ArrayList<>();
+        DiagnosticsPublisher publisher = new DiagnosticsPublisher(sent::add, TimeUnit.HOURS.toMillis(1));
+        publisher.publish("a", Collections.emptyList());
+        Assert.assertTrue(sent.isEmpty());
+        publisher.shutdown();
+        Assert.assertEquals(1, sent.size());
+        publisher.publish("a", Collections.emptyList());
+        Assert.assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void testNoDelay() {
+        List<PublishDiagnosticsParams> sent = new ArrayList<>();
+        DiagnosticsPublisher publisher = new DiagnosticsPublisher(sent::add, 0);
+        publisher.publish("a", Collections.emptyList());
+        Assert.assertEquals(1, sent.size());
+    }
+}
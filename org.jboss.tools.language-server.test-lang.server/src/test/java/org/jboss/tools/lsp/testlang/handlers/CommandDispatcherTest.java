@@ -0,0 +1,73 @@
+package org.jboss.tools.lsp.testlang.handlers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CommandDispatcherTest {
+
+    private final List<String> executed = new ArrayList<>();
+
+    private AbstractCommand command(String name, String regex) {
+        return new AbstractCommand(name, regex) {
+            @Override
+            protected void execute(String[] groups, TextDocumentIdentifier document) {
+                executed.add(name + Arrays.toString(groups));
+            }
+        };
+    }
+
+    @Test
+    public void testLiteralPrefix() {
+        Assert.assertEquals("window/show:", AbstractCommand.literalPrefix("window/show:(?<type>\\w+)"));
+        Assert.assertEquals("ab", AbstractCommand.literalPrefix("abc?d"));
+        Assert.assertEquals("abc", AbstractCommand.literalPrefix("abc+d"));
+        Assert.assertEquals("", AbstractCommand.literalPrefix("abc|def"));
+        Assert.assertEquals("", AbstractCommand.literalPrefix(".*"));
+    }
+
+    @Test
+    public void testFirstMatchingCommandWins() {
+        CommandDispatcher dispatcher = new CommandDispatcher(new AbstractCommand[] {
+                command("long", "a/b:(\\w+)"),
+                command("short", "a/(.+)"),
+                command("any", ".*x") });
+        dispatcher.execute(new TextDocumentIdentifier("foo"), Arrays.asList("a/b:c", "a/b:-", "zx", "a/x", "b"));
+        Assert.assertEquals(Arrays.asList("long[c]", "short[b:-]", "any[]", "short[x]"), executed);
+    }
+
+    @Test
+    public void testLargeDocumentsKeepOrder() {
+        CommandDispatcher dispatcher = new CommandDispatcher(new AbstractCommand[] { command("cmd", "cmd:(\\d+)") });
+        assertLargeDocumentKeepsOrder(dispatcher);
+    }
+
+    @Test
+    public void testLargeDocumentsKeepOrderInParallel() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertLargeDocumentKeepsOrder(
+                    new CommandDispatcher(new AbstractCommand[] { command("cmd", "cmd:(\\d+)") }, pool));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void assertLargeDocumentKeepsOrder(CommandDispatcher dispatcher) {
+        List<String> lines = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            lines.add(i % 3 == 0 ? "cmd:" + i : "text " + i);
+            if (i % 3 == 0) {
+                expected.add("cmd[" + i + "]");
+            }
+        }
+        dispatcher.execute(new TextDocumentIdentifier("foo"), lines);
+        Assert.assertEquals(expected, executed);
+    }
+}
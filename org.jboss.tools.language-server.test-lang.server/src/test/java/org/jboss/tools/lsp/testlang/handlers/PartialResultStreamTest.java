@@ -0,0 +1,75 @@
+package org.jboss.tools.lsp.testlang.handlers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextEdit;
+import org.jboss.tools.lsp.ext.PartialResultParams;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PartialResultStreamTest {
+
+    private final List<PartialResultParams> sent = new ArrayList<>();
+
+    @Test
+    public void testLocationChunks() {
+        PartialResultStream stream = new PartialResultStream(sent::add, "textDocument/references", "file:///a.test",
+                new Position(1, 2), null, 2);
+        for (int i = 0; i < 5; i++) {
+            stream.addLocation(new Location("file:///a.test", range(i)));
+        }
+        stream.close();
+
+        Assert.assertEquals(3, sent.size());
+        Assert.assertEquals(2, sent.get(0).getLocations().size());
+        Assert.assertEquals(2, sent.get(1).getLocations().size());
+        Assert.assertEquals(1, sent.get(2).getLocations().size());
+        Assert.assertEquals(range(4), sent.get(2).getLocations().get(0).getRange());
+        for (PartialResultParams params : sent) {
+            Assert.assertEquals(stream.getToken(), params.getToken());
+            Assert.assertEquals("textDocument/references", params.getMethod());
+            Assert.assertEquals(new Position(1, 2), params.getPosition());
+            Assert.assertEquals(params == sent.get(2), params.isDone());
+        }
+    }
+
+    @Test
+    public void testEditsAreSplit() {
+        PartialResultStream stream = new PartialResultStream(sent::add, "textDocument/codeAction", "file:///a.test",
+                null, range(0), 3);
+        stream.addEdits("file:///b.test", Arrays.asList(edit(0), edit(1)));
+        stream.addEdits("file:///c.test", Arrays.asList(edit(0), edit(1), edit(2), edit(3)));
+        stream.close();
+
+        Assert.assertEquals(3, sent.size());
+        Assert.assertEquals(Arrays.asList(edit(0), edit(1)), sent.get(0).getChanges().get("file:///b.test"));
+        Assert.assertEquals(Arrays.asList(edit(0)), sent.get(0).getChanges().get("file:///c.test"));
+        Assert.assertEquals(Arrays.asList(edit(1), edit(2), edit(3)), sent.get(1).getChanges().get("file:///c.test"));
+        Assert.assertFalse(sent.get(1).isDone());
+        Assert.assertNull(sent.get(2).getChanges());
+        Assert.assertTrue(sent.get(2).isDone());
+    }
+
+    @Test
+    public void testEmpty() {
+        PartialResultStream stream = new PartialResultStream(sent::add, "textDocument/references", "file:///a.test",
+                null, null, 10);
+        stream.close();
+        Assert.assertEquals(1, sent.size());
+        Assert.assertTrue(sent.get(0).isDone());
+        Assert.assertNull(sent.get(0).getLocations());
+    }
+
+    private static Range range(int line) {
+        return new Range(new Position(line, 0), new Position(line, 3));
+    }
+
+    private static TextEdit edit(int line) {
+        return new TextEdit(range(line), "foobar");
+    }
+}
@@ -0,0 +1,83 @@
+package org.jboss.tools.lsp.testlang.handlers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.eclipse.lsp4j.WorkspaceEdit;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceIndex;
+import org.jboss.tools.lsp.testlang.workspace.WorkspaceIndexer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReplaceInWorkspaceHandlerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private WorkspaceIndexer indexer;
+    private WorkspaceIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("workspace").toPath();
+        indexer = new WorkspaceIndexer(root, folder.getRoot().toPath().resolve("workspace.idx"));
+        index = indexer.getIndex();
+    }
+
+    @After
+    public void tearDown() {
+        indexer.shutdown();
+    }
+
+    @Test(timeout = 60000)
+    public void testReplaceWithIndex() throws IOException {
+        Path a = write(root, "a.test", "foo bar");
+        write(root, "b.test", "bar");
+        indexBlocking();
+        WorkspaceEdit edit = ReplaceInWorkspaceHandler
+                .renameInWorkspace(ReplaceInWorkspaceHandler.Scope.of(root.toFile()).withIndex(index), "foo", "x");
+        Assert.assertEquals(Collections.singleton(a.toUri().toString()), edit.getChanges().keySet());
+    }
+
+    @Test(timeout = 60000)
+    public void testReplaceInSavedOpenFile() throws IOException {
+        Path a = write(root, "a.test", "foo");
+        Path b = write(root, "b.test", "bar");
+        indexBlocking();
+        // the indexer skips open files, so the index still has the old
+        // content of b and knows nothing of c
+        write(root, "b.test", "bar foo");
+        Path c = write(root, "c.test", "foo");
+        Path outside = write(folder.getRoot().toPath(), "outside.test", "foo");
+
+        WorkspaceEdit edit = ReplaceInWorkspaceHandler.renameInWorkspace(ReplaceInWorkspaceHandler.Scope
+                .of(root.toFile()).withIndex(index).withOpenFiles(Arrays.asList(b, c, outside)), "foo", "x");
+        Assert.assertEquals(
+                new HashSet<>(Arrays.asList(a.toUri().toString(), b.toUri().toString(), c.toUri().toString())),
+                edit.getChanges().keySet());
+        Assert.assertEquals(1, edit.getChanges().get(b.toUri().toString()).size());
+        Assert.assertEquals(4, edit.getChanges().get(b.toUri().toString()).get(0).getRange().getStart()
+                .getCharacter());
+    }
+
+    private void indexBlocking() {
+        indexer.start();
+        while (!index.isReady()) {
+            Thread.yield();
+        }
+    }
+
+    private static Path write(Path directory, String name, String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,55 @@
+package org.jboss.tools.lsp.testlang.metrics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.jboss.tools.lsp.ext.LatencyReport;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        int previous = -1;
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.index(value);
+            Assert.assertTrue(index == previous || index == previous + 1);
+            Assert.assertTrue(value <= LatencyHistogram.highestValue(index));
+            Assert.assertTrue(index == 0 || value > LatencyHistogram.highestValue(index - 1));
+            previous = index;
+        }
+        Assert.assertEquals(1279, LatencyHistogram.index((1L << 44) - 1));
+    }
+
+    @Test
+    public void testPercentiles() {
+        Random random = new Random(42);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            // log-normal, from microseconds to seconds
+            values[i] = (long) Math.exp(7 + 3 * random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[] { 0.5, 0.9, 0.99, 0.999 }) {
+            long expected = values[(int) Math.ceil(percentile * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            Assert.assertTrue(actual >= expected);
+            Assert.assertTrue(actual <= expected + expected / 32 + 1);
+        }
+        Assert.assertEquals(values[values.length - 1], histogram.getValueAtPercentile(1));
+
+        LatencyReport report = histogram.report();
+        Assert.assertEquals(values.length, report.getCount());
+        Assert.assertEquals(values[values.length - 1] / 1000, report.getMax());
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyReport report = new LatencyHistogram().report();
+        Assert.assertEquals(0, report.getCount());
+        Assert.assertEquals(0, report.getP99());
+    }
+}
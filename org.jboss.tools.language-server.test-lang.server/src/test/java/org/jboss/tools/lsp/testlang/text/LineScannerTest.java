@@ -0,0 +1,63 @@
+package org.jboss.tools.lsp.testlang.text;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.jboss.tools.lsp.testlang.Utils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LineScannerTest {
+
+    private static final String[] PARTS = { "a", "bc", " ", "\n", "\r", "\r\n", "\n\r" };
+
+    @Test
+    public void testSeparators() {
+        Assert.assertEquals(Arrays.asList(""), lines(""));
+        Assert.assertEquals(Arrays.asList("a", ""), lines("a\n"));
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "", "d"), lines("a\r\nb\rc\n\nd"));
+        Assert.assertEquals(Arrays.asList("", "", ""), lines("\n\r"));
+    }
+
+    @Test
+    public void testAllInputsAgree() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            StringBuilder b = new StringBuilder();
+            for (int j = random.nextInt(30); j > 0; j--) {
+                b.append(PARTS[random.nextInt(PARTS.length)]);
+            }
+            String text = b.toString();
+            List<String> expected = new ArrayList<>();
+            Utils.parse(new StringReader(text), (line, lineNumber) -> expected.add(line));
+            Assert.assertEquals(expected, lines(text));
+
+            char[] chars = ("xx" + text + "yy").toCharArray();
+            List<String> fromArray = new ArrayList<>();
+            int count = LineScanner.scan(chars, 2, chars.length - 2, (start, end, line) -> {
+                Assert.assertEquals(fromArray.size(), line);
+                fromArray.add(LineScanner.view(chars, start, end).toString());
+            });
+            Assert.assertEquals(expected, fromArray);
+            Assert.assertEquals(expected.size(), count);
+
+            ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            List<String> fromBytes = new ArrayList<>();
+            LineScanner.scan(bytes, (start, end, line) -> fromBytes
+                    .add(new String(bytes.array(), start, end - start, StandardCharsets.UTF_8)));
+            Assert.assertEquals(expected, fromBytes);
+        }
+    }
+
+    private static List<String> lines(String text) {
+        List<String> result = new ArrayList<>();
+        LineScanner.scan(text, (start, end, line) -> result.add(LineScanner.view(text, start, end).toString()));
+        return result;
+    }
+}
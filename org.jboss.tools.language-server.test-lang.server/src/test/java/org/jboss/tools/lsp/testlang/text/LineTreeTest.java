@@ -0,0 +1,54 @@
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LineTreeTest {
+
+    @Test
+    public void testForEachWeighted() {
+        List<Integer> expected = new ArrayList<>(Collections.nCopies(1000, 0));
+        LineTree<Integer> tree = LineTree.of(expected, Integer::intValue);
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(expected.size() + 1);
+            int to = Math.min(expected.size(), from + random.nextInt(5));
+            List<Integer> items = new ArrayList<>();
+            for (int j = random.nextInt(5); j > 0; j--) {
+                items.add(random.nextInt(10) < 8 ? 0 : random.nextInt(3) + 1);
+            }
+            tree = tree.replace(from, to, items);
+            expected.subList(from, to).clear();
+            expected.addAll(from, items);
+
+            List<Integer> visited = new ArrayList<>();
+            tree.forEachWeighted((index, value) -> {
+                Assert.assertEquals(expected.get(index), value);
+                visited.add(index);
+            });
+            List<Integer> weighted = new ArrayList<>();
+            int weight = 0;
+            for (int index = 0; index < expected.size(); index++) {
+                if (expected.get(index) > 0) {
+                    weighted.add(index);
+                    weight += expected.get(index);
+                }
+            }
+            Assert.assertEquals(weighted, visited);
+            Assert.assertEquals(weight, tree.weight());
+            Assert.assertEquals(expected.size(), tree.size());
+        }
+    }
+
+    @Test
+    public void testUnweighted() {
+        LineTree<String> tree = LineTree.of(Collections.nCopies(10, "a"));
+        Assert.assertEquals(0, tree.weight());
+        tree.forEachWeighted((index, value) -> Assert.fail());
+    }
+}
@@ -0,0 +1,75 @@
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MultiStringMatcherTest {
+
+    @Test
+    public void testMatchesIndexOf() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            List<String> needles = new ArrayList<>();
+            for (int j = 1 + random.nextInt(6); j > 0; j--) {
+                needles.add(StringMatcherTest.random(random, random.nextInt(4)));
+            }
+            MultiStringMatcher matcher = MultiStringMatcher.compile(needles);
+            for (int j = 0; j < 10; j++) {
+                String text = StringMatcherTest.random(random, random.nextInt(100));
+                Assert.assertEquals(needles + " in " + text, expected(needles, text), match(matcher, text));
+            }
+        }
+    }
+
+    @Test
+    public void testOverlaps() {
+        MultiStringMatcher matcher = MultiStringMatcher.compile(Arrays.asList("aa", "a", "aaa", "ba", "aa"));
+        Assert.assertEquals(
+                new TreeSet<>(Arrays.asList("0:0", "0:2", "1:0", "1:1", "1:2", "1:3", "2:0", "4:0", "4:2")),
+                match(matcher, "aaaa"));
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("1:1", "3:0")), match(matcher, "ba"));
+    }
+
+    @Test
+    public void testReportedByEnd() {
+        MultiStringMatcher matcher = MultiStringMatcher.compile(Arrays.asList("abcd", "bc", "c"));
+        List<String> reported = new ArrayList<>();
+        matcher.match("abcd", (needle, start) -> reported.add(needle + ":" + start));
+        Assert.assertEquals(Arrays.asList("1:1", "2:2", "0:0"), reported);
+    }
+
+    @Test
+    public void testNoNeedles() {
+        MultiStringMatcher matcher = MultiStringMatcher.compile(Arrays.asList("", ""));
+        Assert.assertEquals(Collections.emptySet(), match(matcher, "abc"));
+        Assert.assertEquals(Collections.emptySet(), match(MultiStringMatcher.compile(Collections.emptyList()), "a"));
+    }
+
+    private static Set<String> match(MultiStringMatcher matcher, String text) {
+        Set<String> result = new TreeSet<>();
+        matcher.match(text, (needle, start) -> Assert.assertTrue(result.add(needle + ":" + start)));
+        return result;
+    }
+
+    private static Set<String> expected(List<String> needles, String text) {
+        Set<String> result = new TreeSet<>();
+        for (int needle = 0; needle < needles.size(); needle++) {
+            String word = needles.get(needle);
+            if (word.isEmpty()) {
+                continue;
+            }
+            for (int pos = text.indexOf(word); pos >= 0; pos = text.indexOf(word, pos + word.length())) {
+                result.add(needle + ":" + pos);
+            }
+        }
+        return result;
+    }
+}
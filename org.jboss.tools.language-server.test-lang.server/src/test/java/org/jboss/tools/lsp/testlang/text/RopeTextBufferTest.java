@@ -0,0 +1,76 @@
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RopeTextBufferTest {
+
+    @Test
+    public void testOpen() {
+        Assert.assertEquals(Arrays.asList("first", "second", ""), RopeTextBuffer.of("first\r\nsecond\n").asList());
+        Assert.assertEquals(Collections.emptyList(), RopeTextBuffer.of(null).asList());
+        Assert.assertEquals(0, RopeTextBuffer.of(null).getLength());
+        Assert.assertEquals("first\nsecond\n".length() + 1, RopeTextBuffer.of("first\r\nsecond\n").getLength());
+    }
+
+    @Test
+    public void testInsertLines() {
+        TextBuffer buffer = RopeTextBuffer.of("first\nthird");
+        buffer = buffer.replace(0, 5, 0, 5, "\nsecond\n");
+        Assert.assertEquals(Arrays.asList("first", "second", "", "third"), buffer.asList());
+    }
+
+    @Test
+    public void testEditsAreNotVisibleInOldVersion() {
+        TextBuffer buffer = RopeTextBuffer.of("first\nsecond");
+        List<String> old = buffer.asList();
+        buffer.replace(0, 0, 1, 6, "replaced");
+        Assert.assertEquals(Arrays.asList("first", "second"), old);
+    }
+
+    @Test
+    public void testRandomEdits() {
+        Random random = new Random(4711);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            expected.add("line " + i);
+        }
+        TextBuffer buffer = RopeTextBuffer.of(String.join("\n", expected));
+        for (int i = 0; i < 2000; i++) {
+            int startLine = random.nextInt(expected.size());
+            int endLine = Math.min(expected.size() - 1, startLine + random.nextInt(3));
+            int startChar = random.nextInt(expected.get(startLine).length() + 1);
+            int endChar = random.nextInt(expected.get(endLine).length() + 1);
+            if (startLine == endLine && endChar < startChar) {
+                int tmp = startChar;
+                startChar = endChar;
+                endChar = tmp;
+            }
+            String text = random.nextInt(4) == 0 ? "x\ny" + i + "\n" : "z" + i;
+            buffer = buffer.replace(startLine, startChar, endLine, endChar, text);
+            apply(expected, startLine, startChar, endLine, endChar, text);
+        }
+        Assert.assertEquals(expected, buffer.asList());
+        Assert.assertEquals(expected.size(), buffer.getLineCount());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i), buffer.getLine(i));
+        }
+        Assert.assertEquals(String.join("\n", expected).length() + 1, buffer.getLength());
+    }
+
+    private static void apply(List<String> lines, int startLine, int startChar, int endLine, int endChar, String text) {
+        String prefix = lines.get(startLine).substring(0, startChar);
+        String suffix = lines.get(endLine).substring(endChar);
+        List<String> inserted = new ArrayList<>(Arrays.asList((prefix + text + suffix).split("\n", -1)));
+        for (int i = endLine; i >= startLine; i--) {
+            lines.remove(i);
+        }
+        lines.addAll(startLine, inserted);
+    }
+}
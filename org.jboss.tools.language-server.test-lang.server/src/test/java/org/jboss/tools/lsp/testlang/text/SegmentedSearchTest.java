@@ -0,0 +1,78 @@
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jboss.tools.lsp.testlang.Utils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SegmentedSearchTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testRunsOnGivenPool() {
+        List<String> threads = SegmentedSearch.search(pool, 0, 100000,
+                (from, to) -> Thread.currentThread().getName());
+        Assert.assertTrue(threads.size() > 1);
+        for (String thread : threads) {
+            Assert.assertFalse(thread, thread.startsWith("ForkJoinPool.commonPool-"));
+        }
+        Assert.assertTrue(threads.stream().anyMatch(thread -> thread.startsWith("ForkJoinPool-")));
+    }
+
+    @Test
+    public void testSegmentsInOrder() {
+        List<int[]> segments = SegmentedSearch.search(pool, 7, 100007, (from, to) -> new int[] { from, to });
+        Assert.assertTrue(segments.size() > 1);
+        int next = 7;
+        for (int[] segment : segments) {
+            Assert.assertEquals(next, segment[0]);
+            Assert.assertTrue(segment[1] > segment[0]);
+            next = segment[1];
+        }
+        Assert.assertEquals(100007, next);
+    }
+
+    @Test
+    public void testSmallRange() {
+        List<int[]> segments = SegmentedSearch.search(pool, 0, 10, (from, to) -> new int[] { from, to });
+        Assert.assertEquals(1, segments.size());
+        Assert.assertArrayEquals(new int[] { 0, 10 }, segments.get(0));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testExceptionIsRethrown() {
+        SegmentedSearch.search(pool, 0, 100000, (from, to) -> {
+            if (from > 0) {
+                throw new CancellationException();
+            }
+            return from;
+        });
+    }
+
+    @Test
+    public void testThreshold() {
+        Assert.assertFalse(SegmentedSearch.isParallel(999, 1000));
+        Assert.assertTrue(SegmentedSearch.isParallel(1000, 1000));
+        Assert.assertFalse(SegmentedSearch.isParallel(Integer.MAX_VALUE, 0));
+        Assert.assertFalse(SegmentedSearch.isParallel(Integer.MAX_VALUE, -1));
+        Assert.assertEquals(50000, Utils.getEnvVarOrSysProp(SegmentedSearch.PARALLEL_LINES, 50000));
+        // the threshold is read once, later changes are ignored
+        System.setProperty(SegmentedSearch.PARALLEL_LINES, "1000");
+        try {
+            Assert.assertFalse(SegmentedSearch.isParallel(1000));
+            Assert.assertTrue(SegmentedSearch.isParallel(50000));
+        } finally {
+            System.clearProperty(SegmentedSearch.PARALLEL_LINES);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.jboss.tools.lsp.testlang.text;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StringMatcherTest {
+
+    // 'š' shares the low byte of 'a' in the skip table
+    private static final String[] PARTS = { "a", "b", "ab", "ba", "é", "𝄞", "Ā", "ā", "š", " " };
+
+    @Test
+    public void testMatchesIndexOf() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String text = random(random, random.nextInt(200));
+            String needle = random(random, 1 + random.nextInt(12));
+            if (needle.isEmpty()) {
+                continue;
+            }
+            StringMatcher matcher = StringMatcher.compile(needle);
+            Assert.assertEquals(needle, occurrences(text, needle), occurrences(text, matcher));
+
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            byte[] needleBytes = needle.getBytes(StandardCharsets.UTF_8);
+            Assert.assertEquals(needle, occurrences(bytes, needleBytes),
+                    occurrences(ByteBuffer.wrap(bytes), matcher, 0, bytes.length));
+        }
+    }
+
+    @Test
+    public void testLongNeedle() {
+        StringMatcher matcher = StringMatcher.compile("needle in haystack");
+        String text = "needle in a haystack, the needle in haystack";
+        Assert.assertEquals(26, matcher.indexOf(text, 0));
+        Assert.assertEquals(26, matcher.indexOf(text, 26));
+        Assert.assertEquals(-1, matcher.indexOf(text, 27));
+        Assert.assertEquals(-1, matcher.indexOf("needle in haystac", 0));
+    }
+
+    @Test
+    public void testByteWindow() {
+        StringMatcher matcher = StringMatcher.compile("ab");
+        ByteBuffer content = ByteBuffer.wrap("xxabxxab".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(2, matcher.indexOf(content, 0, 8));
+        Assert.assertEquals(-1, matcher.indexOf(content, 0, 3));
+        Assert.assertEquals(6, matcher.indexOf(content, 3, 8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyNeedle() {
+        StringMatcher.compile("");
+    }
+
+    private static List<Integer> occurrences(String text, String needle) {
+        List<Integer> result = new ArrayList<>();
+        for (int pos = text.indexOf(needle); pos >= 0; pos = text.indexOf(needle, pos + needle.length())) {
+            result.add(pos);
+        }
+        return result;
+    }
+
+    private static List<Integer> occurrences(String text, StringMatcher matcher) {
+        List<Integer> result = new ArrayList<>();
+        for (int pos = matcher.indexOf(text, 0); pos >= 0; pos = matcher.indexOf(text, pos + matcher.length())) {
+            result.add(pos);
+        }
+        return result;
+    }
+
+    private static List<Integer> occurrences(byte[] text, byte[] needle) {
+        List<Integer> result = new ArrayList<>();
+        for (int pos = 0; pos <= text.length - needle.length; pos++) {
+            int i = 0;
+            while (i < needle.length && text[pos + i] == needle[i]) {
+                i++;
+            }
+            if (i == needle.length) {
+                result.add(pos);
+                pos += needle.length - 1;
+            }
+        }
+        return result;
+    }
+
+    private static List<Integer> occurrences(ByteBuffer content, StringMatcher matcher, int from, int to) {
+        List<Integer> result = new ArrayList<>();
+        for (int pos = matcher.indexOf(content, from, to); pos >= 0; pos = matcher.indexOf(content,
+                pos + matcher.byteLength(), to)) {
+            result.add(pos);
+        }
+        return result;
+    }
+
+    static String random(Random random, int parts) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < parts; i++) {
+            b.append(PARTS[random.nextInt(PARTS.length)]);
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,36 @@
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TrigramIndexTest {
+
+    @Test
+    public void testFind() {
+        TrigramIndex index = new TrigramIndex();
+        for (String word : new String[] { "foo", "foobar", "barfoo", "fo", "bar" }) {
+            index.add(word);
+        }
+        Assert.assertEquals(new HashSet<>(Arrays.asList("foo", "foobar", "barfoo")), new HashSet<>(index.find("foo")));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("foobar")), new HashSet<>(index.find("oob")));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("bar", "foobar", "barfoo")), new HashSet<>(index.find("bar")));
+        Assert.assertTrue(index.find("foobarfoo").isEmpty());
+        Assert.assertTrue(index.find("xyz").isEmpty());
+        Assert.assertNull(index.find("fo"));
+    }
+
+    @Test
+    public void testRemove() {
+        TrigramIndex index = new TrigramIndex();
+        index.add("foobar");
+        index.add("foo");
+        index.remove("foobar");
+        Assert.assertEquals(Arrays.asList("foo"), index.find("foo"));
+        Assert.assertTrue(index.find("bar").isEmpty());
+        index.clear();
+        Assert.assertTrue(index.find("foo").isEmpty());
+    }
+}
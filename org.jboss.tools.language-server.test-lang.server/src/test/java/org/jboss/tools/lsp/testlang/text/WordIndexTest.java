@@ -0,0 +1,129 @@
+package org.jboss.tools.lsp.testlang.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WordIndexTest {
+
+    private static final String[] WORDS = { "foo", "bar", "foobar", "baz", "ba", "x", " ", "  ", "\n", "1" };
+
+    @Test
+    public void testFindInsideLongerWords() {
+        TextBuffer text = RopeTextBuffer.of("foo foobar\nbarfoo foofoo\n");
+        WordIndex index = new WordIndex(Character::isAlphabetic);
+        index.reset(text);
+        Assert.assertEquals(scan(text, "foo"), toList(index.find("foo")));
+        Assert.assertEquals(5, index.find("foo").length);
+        Assert.assertNull(index.find("foo bar"));
+    }
+
+    @Test
+    public void testRandomEdits() {
+        Random random = new Random(42);
+        TextBuffer text = RopeTextBuffer.of(randomText(random, 200));
+        WordIndex index = new WordIndex(Character::isAlphabetic);
+        index.reset(text);
+        for (int i = 0; i < 1000; i++) {
+            int startLine = random.nextInt(text.getLineCount());
+            int endLine = Math.min(text.getLineCount() - 1, startLine + random.nextInt(3));
+            int startChar = random.nextInt(text.getLine(startLine).length() + 1);
+            int endChar = random.nextInt(text.getLine(endLine).length() + 1);
+            if (startLine == endLine && endChar < startChar) {
+                int tmp = startChar;
+                startChar = endChar;
+                endChar = tmp;
+            }
+            TextBuffer newText = text.replace(startLine, startChar, endLine, endChar, randomText(random, 4));
+            index.update(text, newText, startLine, endLine + 1,
+                    endLine + 1 + newText.getLineCount() - text.getLineCount());
+            text = newText;
+            for (String word : new String[] { "foo", "bar", "ba", "x", "oob", "foob", "obarb" }) {
+                Assert.assertEquals(word, scan(text, word), toList(index.find(word)));
+            }
+            int fromLine = random.nextInt(text.getLineCount());
+            int toLine = fromLine + random.nextInt(20);
+            List<String> inRange = new ArrayList<>();
+            for (String position : scan(text, "foo")) {
+                int line = Integer.parseInt(position.substring(0, position.indexOf(':')));
+                if (line >= fromLine && line < toLine) {
+                    inRange.add(position);
+                }
+            }
+            Assert.assertEquals(inRange, toList(index.find("foo", fromLine, toLine)));
+        }
+    }
+
+    @Test
+    public void testFirstOccurrences() {
+        Random random = new Random(42);
+        TextBuffer text = RopeTextBuffer.of(randomText(random, 200));
+        WordIndex index = new WordIndex(c -> !Character.isWhitespace(c));
+        index.reset(text);
+        for (int i = 0; i < 1000; i++) {
+            int startLine = random.nextInt(text.getLineCount());
+            int endLine = Math.min(text.getLineCount() - 1, startLine + random.nextInt(3));
+            int startChar = random.nextInt(text.getLine(startLine).length() + 1);
+            int endChar = random.nextInt(text.getLine(endLine).length() + 1);
+            if (startLine == endLine && endChar < startChar) {
+                int tmp = startChar;
+                startChar = endChar;
+                endChar = tmp;
+            }
+            TextBuffer newText = text.replace(startLine, startChar, endLine, endChar, randomText(random, 4));
+            index.update(text, newText, startLine, endLine + 1,
+                    endLine + 1 + newText.getLineCount() - text.getLineCount());
+            text = newText;
+
+            Map<String, String> expected = new TreeMap<>();
+            for (int line = 0; line < text.getLineCount(); line++) {
+                String content = text.getLine(line);
+                int lineNumber = line;
+                int pos = 0;
+                for (String word : content.split("\\s+")) {
+                    if (!word.isEmpty()) {
+                        pos = content.indexOf(word, pos);
+                        expected.putIfAbsent(word, lineNumber + ":" + pos);
+                        pos += word.length();
+                    }
+                }
+            }
+            Map<String, String> actual = new TreeMap<>();
+            index.forEachFirstOccurrence((word, position) -> Assert.assertNull(
+                    actual.put(word, WordIndex.line(position) + ":" + WordIndex.column(position))));
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            b.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return b.toString();
+    }
+
+    private static List<String> scan(TextBuffer text, String word) {
+        List<String> result = new ArrayList<>();
+        for (int line = 0; line < text.getLineCount(); line++) {
+            String content = text.getLine(line);
+            for (int index = content.indexOf(word); index >= 0; index = content.indexOf(word, index + word.length())) {
+                result.add(line + ":" + index);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> toList(long[] positions) {
+        List<String> result = new ArrayList<>();
+        for (long position : positions) {
+            result.add(WordIndex.line(position) + ":" + WordIndex.column(position));
+        }
+        return result;
+    }
+}
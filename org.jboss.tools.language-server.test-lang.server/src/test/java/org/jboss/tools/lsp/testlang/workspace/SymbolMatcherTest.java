@@ -0,0 +1,49 @@
+package org.jboss.tools.lsp.testlang.workspace;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SymbolMatcherTest {
+
+    @Test
+    public void testPrefix() {
+        Assert.assertEquals(SymbolMatcher.PREFIX, SymbolMatcher.match("foo", "fooBar"));
+        Assert.assertEquals(SymbolMatcher.PREFIX, SymbolMatcher.match("", "fooBar"));
+        Assert.assertEquals(SymbolMatcher.PREFIX_IGNORE_CASE, SymbolMatcher.match("FOOb", "fooBar"));
+    }
+
+    @Test
+    public void testCamelCase() {
+        Assert.assertEquals(SymbolMatcher.CAMEL_CASE, SymbolMatcher.match("fB", "fooBar"));
+        Assert.assertEquals(SymbolMatcher.CAMEL_CASE, SymbolMatcher.match("fob", "fooBar"));
+        Assert.assertEquals(SymbolMatcher.CAMEL_CASE, SymbolMatcher.match("fBaB", "fooBarBaz"));
+        Assert.assertEquals(SymbolMatcher.CAMEL_CASE, SymbolMatcher.match("f2", "foo2"));
+        Assert.assertEquals(SymbolMatcher.CAMEL_CASE, SymbolMatcher.match("fb", "foo_bar"));
+    }
+
+    @Test(timeout = 10000)
+    public void testCamelCaseManyHumps() {
+        StringBuilder word = new StringBuilder("a");
+        StringBuilder query = new StringBuilder("a");
+        for (int i = 0; i < 40; i++) {
+            word.append("aA");
+            query.append('a');
+        }
+        // every split of the query over the humps fails on the last character
+        Assert.assertEquals(SymbolMatcher.NO_MATCH, SymbolMatcher.match(query + "b", word.toString()));
+        Assert.assertEquals(SymbolMatcher.CAMEL_CASE, SymbolMatcher.match(query + "b", word + "B"));
+    }
+
+    @Test
+    public void testFuzzy() {
+        Assert.assertEquals(SymbolMatcher.FUZZY, SymbolMatcher.match("far", "fooBar"));
+        Assert.assertEquals(SymbolMatcher.FUZZY, SymbolMatcher.match("fOR", "fooBar"));
+    }
+
+    @Test
+    public void testNoMatch() {
+        Assert.assertEquals(SymbolMatcher.NO_MATCH, SymbolMatcher.match("oB", "fooBar"));
+        Assert.assertEquals(SymbolMatcher.NO_MATCH, SymbolMatcher.match("fz", "fooBar"));
+        Assert.assertEquals(SymbolMatcher.NO_MATCH, SymbolMatcher.match("fooBarBaz", "fooBar"));
+    }
+}
@@ -0,0 +1,31 @@
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.eclipse.lsp4j.FileChangeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WorkspaceChangeQueueTest {
+
+    @Test
+    public void testDeduplicate() {
+        WorkspaceChangeQueue queue = new WorkspaceChangeQueue();
+        Path a = Paths.get("a.test");
+        Path b = Paths.get("b.test");
+        Assert.assertTrue(queue.add(a, FileChangeType.Created));
+        Assert.assertFalse(queue.add(b, FileChangeType.Changed));
+        Assert.assertFalse(queue.add(a, FileChangeType.Deleted));
+        Assert.assertEquals(2, queue.size());
+
+        Map<Path, FileChangeType> batch = queue.drain();
+        Assert.assertEquals(Arrays.asList(a, b), Arrays.asList(batch.keySet().toArray()));
+        Assert.assertEquals(FileChangeType.Deleted, batch.get(a));
+        Assert.assertEquals(FileChangeType.Changed, batch.get(b));
+        Assert.assertEquals(0, queue.size());
+        Assert.assertTrue(queue.add(a, FileChangeType.Changed));
+    }
+}
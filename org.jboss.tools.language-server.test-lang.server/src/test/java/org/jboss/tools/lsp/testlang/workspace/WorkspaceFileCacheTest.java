@@ -0,0 +1,99 @@
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.eclipse.lsp4j.FileChangeType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkspaceFileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("workspace").toPath();
+    }
+
+    @Test
+    public void testLines() throws IOException {
+        WorkspaceFileCache cache = new WorkspaceFileCache(1024);
+        WorkspaceFileCache.CachedFile file = cache.get(write("a.test", "foo\r\nbé\rbaz\n"));
+        Assert.assertEquals(4, file.getLineCount());
+        Assert.assertEquals("foo", file.getLine(0));
+        Assert.assertEquals("bé", file.getLine(1));
+        Assert.assertEquals(5, file.getLineStart(1));
+        Assert.assertEquals(8, file.getLineEnd(1));
+        Assert.assertEquals("baz", file.getLine(2));
+        Assert.assertEquals("", file.getLine(3));
+    }
+
+    @Test
+    public void testHitsAndChanges() throws IOException {
+        WorkspaceFileCache cache = new WorkspaceFileCache(1024);
+        Path a = write("a.test", "foo");
+        WorkspaceFileCache.CachedFile first = cache.get(a);
+        Assert.assertSame(first, cache.get(a));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+
+        write("a.test", "bar");
+        Files.setLastModifiedTime(a, FileTime.fromMillis(Files.getLastModifiedTime(a).toMillis() + 2000));
+        Assert.assertEquals("bar", cache.get(a).getLine(0));
+        Assert.assertEquals(2, cache.getMisses());
+
+        cache.fileChanged(a, FileChangeType.Changed);
+        Assert.assertEquals(0, cache.getCachedFiles());
+        Files.delete(a);
+        Assert.assertNull(cache.get(a));
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        WorkspaceFileCache cache = new WorkspaceFileCache(800);
+        Path a = write("a.test", repeat('a', 100));
+        Path b = write("b.test", repeat('b', 100));
+        Path large = write("large.test", repeat('c', 101));
+        Assert.assertNull(cache.get(large));
+        for (int i = 0; i < 8; i++) {
+            cache.get(write("f" + i + ".test", repeat('f', 100)));
+            // keep a recently used
+            cache.get(a);
+        }
+        Assert.assertEquals(8, cache.getCachedFiles());
+        Assert.assertEquals(800, cache.getCachedBytes());
+        long misses = cache.getMisses();
+        cache.get(a);
+        Assert.assertEquals(misses, cache.getMisses());
+        cache.get(b);
+        Assert.assertEquals(misses + 1, cache.getMisses());
+        Assert.assertEquals(800, cache.getCachedBytes());
+
+        cache.resynchronize();
+        Assert.assertEquals(0, cache.getCachedBytes());
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path path = root.resolve(name);
+        Files.createDirectories(path.getParent());
+        return Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,198 @@
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkspaceIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private WorkspaceIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("workspace").toPath();
+        index = new WorkspaceIndex(root);
+    }
+
+    @Test
+    public void testNoCandidatesBeforeReady() throws IOException {
+        write("a.test", "foo bar");
+        index.synchronize();
+        Assert.assertNull(index.findCandidates("foo"));
+    }
+
+    @Test
+    public void testFindCandidates() throws IOException {
+        Path a = write("a.test", "foo bar\nbaz");
+        Path b = write("b.test", "xfoobar");
+        write("c.txt", "foo");
+        index.synchronize();
+        index.setReady();
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, b)), new HashSet<>(index.findCandidates("foo")));
+        Assert.assertEquals(Collections.singleton(a), new HashSet<>(index.findCandidates("baz")));
+        Assert.assertTrue(index.findCandidates("qux").isEmpty());
+        Assert.assertNull(index.findCandidates("foo bar"));
+        // inside a word, and shorter than a trigram
+        Assert.assertEquals(Collections.singleton(b), new HashSet<>(index.findCandidates("oob")));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, b)), new HashSet<>(index.findCandidates("ba")));
+        Assert.assertEquals(Collections.singleton(b), new HashSet<>(index.findCandidates("x")));
+    }
+
+    @Test
+    public void testUpdateAndRemove() throws IOException {
+        Path a = write("a.test", "foo");
+        index.synchronize();
+        index.setReady();
+        write("a.test", "something else");
+        index.update(a);
+        Assert.assertTrue(index.findCandidates("foo").isEmpty());
+        Assert.assertEquals(Collections.singleton(a), new HashSet<>(index.findCandidates("else")));
+        index.remove(a);
+        Assert.assertTrue(index.findCandidates("else").isEmpty());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        Path a = write("a.test", "foo bar");
+        Path b = write("sub/b.test", "bar");
+        index.synchronize();
+        index.setReady();
+        Path storage = folder.getRoot().toPath().resolve("index/workspace.idx");
+        index.save(storage);
+
+        WorkspaceIndex loaded = new WorkspaceIndex(root);
+        Assert.assertTrue(loaded.load(storage));
+        loaded.setReady();
+        Assert.assertEquals(Collections.singleton(a), new HashSet<>(loaded.findCandidates("foo")));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, b)), new HashSet<>(loaded.findCandidates("bar")));
+    }
+
+    @Test
+    public void testReindexManyTimes() throws IOException {
+        write("b.test", "foo");
+        index.synchronize();
+        index.setReady();
+        Path a = null;
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            // grows with each version, so that the size tells them apart
+            padding.append(' ');
+            a = write("a.test", "foo" + padding + "w" + i);
+            index.update(a);
+        }
+        Assert.assertEquals(Collections.singleton(a), new HashSet<>(index.findCandidates("w299")));
+        Assert.assertTrue(index.findCandidates("w298").isEmpty());
+        Assert.assertEquals(2, index.findSymbols("foo", 100).size());
+
+        Path storage = folder.getRoot().toPath().resolve("workspace.idx");
+        index.save(storage);
+        Assert.assertEquals(Collections.singleton(a), new HashSet<>(index.findCandidates("w299")));
+        WorkspaceIndex loaded = new WorkspaceIndex(root);
+        Assert.assertTrue(loaded.load(storage));
+        loaded.setReady();
+        Assert.assertEquals(Collections.singleton(a), new HashSet<>(loaded.findCandidates("w299")));
+        Assert.assertTrue(loaded.findCandidates("w298").isEmpty());
+        Assert.assertEquals(2, loaded.findSymbols("foo", 100).size());
+    }
+
+    @Test
+    public void testLoadFromOtherRoot() throws IOException {
+        write("a.test", "foo");
+        index.synchronize();
+        index.setReady();
+        Path storage = folder.getRoot().toPath().resolve("workspace.idx");
+        index.save(storage);
+        Assert.assertFalse(new WorkspaceIndex(folder.newFolder("other").toPath()).load(storage));
+    }
+
+    @Test
+    public void testFindSymbols() throws IOException {
+        Path a = write("a.test", "fooBar foo\nxfoo FOOD");
+        Path b = write("b.test", "\n  fooBar fuzzyOwlOk");
+        index.synchronize();
+        List<WorkspaceSymbol> symbols = index.findSymbols("foo", 100);
+        Assert.assertEquals(Arrays.asList("foo", "fooBar", "fooBar", "FOOD", "fuzzyOwlOk"), words(symbols));
+        WorkspaceSymbol first = symbols.get(0);
+        Assert.assertEquals(a, first.getPath());
+        Assert.assertEquals(0, first.getLine());
+        Assert.assertEquals(7, first.getColumn());
+
+        Assert.assertEquals(Arrays.asList("fooBar", "fooBar"), words(index.findSymbols("fB", 100)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, b)),
+                index.findSymbols("fB", 100).stream().map(WorkspaceSymbol::getPath).collect(Collectors.toSet()));
+        Assert.assertEquals(Arrays.asList("foo", "fooBar"), words(index.findSymbols("f", 2)));
+        Assert.assertTrue(index.findSymbols("x y", 100).isEmpty());
+
+        index.remove(a);
+        Assert.assertEquals(Arrays.asList("fooBar", "fuzzyOwlOk"), words(index.findSymbols("foo", 100)));
+    }
+
+    @Test
+    public void testFindSymbolsAfterManyWords() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            content.append("w").append(i).append(' ');
+        }
+        write("a.test", content.toString());
+        index.synchronize();
+        Assert.assertEquals("w1234", index.findSymbols("w1234", 100).get(0).getWord());
+        // w12, w120..w129 and w1200..w1299 come before the fuzzy matches
+        List<String> prefixed = words(index.findSymbols("w12", 111));
+        Assert.assertEquals(111, prefixed.size());
+        Assert.assertTrue(prefixed.stream().allMatch(word -> word.startsWith("w12")));
+        Assert.assertEquals("w12", prefixed.get(0));
+    }
+
+    @Test
+    public void testFindSymbolsEmptyQuery() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 2999; i >= 0; i--) {
+            content.append("w").append(i).append(' ');
+        }
+        write("a.test", content.toString());
+        Path b = write("b.test", "a b c");
+        index.synchronize();
+        // shorter words first, then alphabetically
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "w0", "w1"), words(index.findSymbols("", 5)));
+        // the words only found in removed files are skipped
+        index.remove(b);
+        Assert.assertEquals(Arrays.asList("w0", "w1", "w2", "w3", "w4", "w5", "w6", "w7", "w8", "w9", "w10"),
+                words(index.findSymbols("", 11)));
+        Assert.assertEquals(3000, index.findSymbols("", 5000).size());
+        Assert.assertTrue(index.findSymbols("", 0).isEmpty());
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testFindSymbolsCancelled() throws IOException {
+        write("a.test", "foo fooBar");
+        index.synchronize();
+        index.findSymbols("foo", 100, () -> true);
+    }
+
+    private static List<String> words(List<WorkspaceSymbol> symbols) {
+        return symbols.stream().map(WorkspaceSymbol::getWord).collect(Collectors.toList());
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path path = root.resolve(name);
+        Files.createDirectories(path.getParent());
+        return Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,115 @@
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.lsp4j.FileChangeType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkspaceIndexerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private Set<Path> openFiles = Collections.synchronizedSet(new HashSet<>());
+    private WorkspaceIndexer indexer;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("workspace").toPath();
+        indexer = new WorkspaceIndexer(root, folder.getRoot().toPath().resolve("workspace.idx"), openFiles::contains);
+        indexer.getIndex().setReady();
+    }
+
+    @After
+    public void tearDown() {
+        indexer.shutdown();
+    }
+
+    @Test
+    public void testApplyChanges() throws IOException {
+        Path a = write("a.test", "foo");
+        Path b = write("b.txt", "foo");
+        indexer.fileChanged(a, FileChangeType.Created);
+        indexer.fileChanged(b, FileChangeType.Created);
+        indexer.applyChanges();
+        Assert.assertEquals(Collections.singleton(a), new HashSet<>(indexer.getIndex().findCandidates("foo")));
+
+        Files.delete(a);
+        indexer.fileChanged(a, FileChangeType.Deleted);
+        indexer.applyChanges();
+        Assert.assertTrue(indexer.getIndex().findCandidates("foo").isEmpty());
+    }
+
+    @Test
+    public void testSkipOpenFiles() throws IOException {
+        Path a = write("a.test", "foo");
+        indexer.fileChanged(a, FileChangeType.Created);
+        indexer.applyChanges();
+
+        openFiles.add(a);
+        // a different size, as the modification time may not have changed
+        write("a.test", "barbaz");
+        indexer.fileChanged(a, FileChangeType.Changed);
+        indexer.applyChanges();
+        Assert.assertEquals(Collections.singleton(a), new HashSet<>(indexer.getIndex().findCandidates("foo")));
+
+        openFiles.remove(a);
+        indexer.fileClosed(a.toUri().toString());
+        indexer.applyChanges();
+        Assert.assertTrue(indexer.getIndex().findCandidates("foo").isEmpty());
+        Assert.assertEquals(Collections.singleton(a), new HashSet<>(indexer.getIndex().findCandidates("bar")));
+    }
+
+    @Test
+    public void testSynchronizeSkipsOpenFiles() throws IOException {
+        Path a = write("a.test", "foo");
+        Path b = write("b.test", "foo");
+        openFiles.add(b);
+        indexer.getIndex().synchronize(openFiles::contains);
+        Assert.assertEquals(Collections.singleton(a), new HashSet<>(indexer.getIndex().findCandidates("foo")));
+
+        openFiles.remove(b);
+        indexer.fileClosed(b.toUri().toString());
+        indexer.applyChanges();
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, b)), new HashSet<>(indexer.getIndex().findCandidates("foo")));
+    }
+
+    @Test
+    public void testIgnoreFilesOutsideRoot() throws IOException {
+        Path outside = Files.write(folder.getRoot().toPath().resolve("outside.test"),
+                "foo".getBytes(StandardCharsets.UTF_8));
+        indexer.fileChanged(outside, FileChangeType.Created);
+        indexer.fileClosed(outside.toUri().toString());
+        indexer.applyChanges();
+        Assert.assertTrue(indexer.getIndex().findCandidates("foo").isEmpty());
+        indexer.getIndex().save(folder.getRoot().toPath().resolve("saved.idx"));
+    }
+
+    @Test
+    public void testIgnoreEventsAfterShutdown() throws IOException {
+        Path a = write("a.test", "foo");
+        indexer.shutdown();
+        indexer.fileChanged(a, FileChangeType.Created);
+        indexer.resynchronize();
+        indexer.shutdown();
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path path = root.resolve(name);
+        Files.createDirectories(path.getParent());
+        return Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,134 @@
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.lsp4j.Range;
+import org.jboss.tools.lsp.testlang.Utils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkspaceScannerTest {
+
+    private static final String[] WORDS = { "foo", "bar", "foobar", "é", "𝄞", "x", " ", "\n", "\r\n", "\r" };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private WorkspaceScanner scanner = new WorkspaceScanner();
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("workspace").toPath();
+    }
+
+    @Test
+    public void testColumnsAreUtf16() throws IOException {
+        write("a.test", "é𝄞foo\r\nfoofoo\rbar");
+        Assert.assertEquals(Arrays.asList("a.test:0:3", "a.test:1:0", "a.test:1:3"), scan("foo"));
+        Assert.assertEquals(Arrays.asList("a.test:0:1"), scan("𝄞f"));
+    }
+
+    @Test
+    public void testOnlyTestFiles() throws IOException {
+        write("a.txt", "foo");
+        write("sub/dir/b.test", "foo");
+        Assert.assertEquals(Arrays.asList("sub/dir/b.test:0:0"), scan("foo"));
+        Assert.assertEquals(Collections.emptyList(), scan("foo\nbar"));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testCancelled() throws IOException {
+        write("a.test", "foo");
+        scanner.scan(root, "foo", () -> true, (file, ranges) -> Assert.fail("cancelled"));
+    }
+
+    @Test
+    public void testMatchesLineScan() throws IOException {
+        Random random = new Random(42);
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            StringBuilder content = new StringBuilder();
+            int size = random.nextInt(4) == 0 ? 20000 : 50;
+            for (int j = 0; j < size; j++) {
+                content.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            files.add(write("dir" + (i % 5) + "/f" + i + ".test", content.toString()));
+        }
+        for (String needle : new String[] { "foo", "oof", "o", "é", "𝄞x", "bar foo", "foobar foobar",
+                "é𝄞x foo" }) {
+            Set<String> expected = new TreeSet<>();
+            for (Path file : files) {
+                String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                Utils.parse(new StringReader(content), (line, lineNumber) -> {
+                    for (int pos = line.indexOf(needle); pos >= 0; pos = line.indexOf(needle, pos + needle.length())) {
+                        expected.add(root.relativize(file) + ":" + lineNumber + ":" + pos);
+                    }
+                });
+            }
+            Assert.assertEquals(new ArrayList<>(expected), scan(needle));
+
+            Set<String> fromList = new ConcurrentSkipListSet<>();
+            scanner.scan(files, needle, (file, ranges) -> add(fromList, file, ranges));
+            Assert.assertEquals(expected, fromList);
+        }
+    }
+
+    @Test
+    public void testExecutor() throws IOException {
+        // stands in for the virtual thread executor of Java 21
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            scanner = new WorkspaceScanner(executor);
+            testMatchesLineScan();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        WorkspaceFileCache cache = new WorkspaceFileCache(1 << 20);
+        scanner = new WorkspaceScanner().withCache(cache);
+        testMatchesLineScan();
+        Assert.assertEquals(40, cache.getMisses());
+        Assert.assertTrue(cache.getHits() > 0);
+    }
+
+    private List<String> scan(String needle) throws IOException {
+        Set<String> result = new ConcurrentSkipListSet<>();
+        scanner.scan(root, needle, (file, ranges) -> add(result, file, ranges));
+        return new ArrayList<>(result);
+    }
+
+    private void add(Set<String> result, Path file, List<Range> ranges) {
+        for (Range range : ranges) {
+            result.add(root.relativize(file) + ":" + range.getStart().getLine() + ":"
+                    + range.getStart().getCharacter());
+        }
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path path = root.resolve(name);
+        Files.createDirectories(path.getParent());
+        return Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
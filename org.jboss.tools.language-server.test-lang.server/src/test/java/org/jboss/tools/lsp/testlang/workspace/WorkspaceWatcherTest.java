@@ -0,0 +1,107 @@
+package org.jboss.tools.lsp.testlang.workspace;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.FileChangeType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkspaceWatcherTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+    private WorkspaceWatcher watcher;
+    private final Map<Path, FileChangeType> changes = new HashMap<>();
+    private int resynchronized;
+
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        root = folder.newFolder("workspace").toPath();
+        Files.createDirectories(root.resolve("sub"));
+        watcher = new WorkspaceWatcher(root, new FileChangeListener() {
+            @Override
+            public void fileChanged(Path path, FileChangeType type) {
+                synchronized (changes) {
+                    changes.put(path, type);
+                    changes.notifyAll();
+                }
+            }
+
+            @Override
+            public void resynchronize() {
+                synchronized (changes) {
+                    resynchronized++;
+                    changes.notifyAll();
+                }
+            }
+        });
+        watcher.start();
+        // let the watcher register the directories
+        Thread.sleep(500);
+    }
+
+    @After
+    public void tearDown() {
+        watcher.stop();
+    }
+
+    @Test
+    public void testCreateChangeDelete() throws Exception {
+        Path a = write("sub/a.test", "foo");
+        Assert.assertEquals(FileChangeType.Created, awaitChange(a));
+        write("sub/a.test", "bar");
+        Assert.assertEquals(FileChangeType.Changed, awaitChange(a));
+        Files.delete(a);
+        Assert.assertEquals(FileChangeType.Deleted, awaitChange(a));
+    }
+
+    @Test
+    public void testNewDirectory() throws Exception {
+        Path b = write("new/deeper/b.test", "foo");
+        Assert.assertEquals(FileChangeType.Created, awaitChange(b));
+        Path c = write("new/deeper/c.test", "foo");
+        Assert.assertEquals(FileChangeType.Created, awaitChange(c));
+    }
+
+    @Test
+    public void testBurstIsCoalesced() throws Exception {
+        Path a = write("sub/a.test", "0");
+        for (int i = 1; i < 20; i++) {
+            write("sub/a.test", String.valueOf(i));
+        }
+        Assert.assertEquals(FileChangeType.Created, awaitChange(a));
+    }
+
+    private FileChangeType awaitChange(Path path) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        synchronized (changes) {
+            while (!changes.containsKey(path)) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                Assert.assertTrue("No event for " + path, remaining > 0);
+                changes.wait(remaining);
+            }
+            Assert.assertEquals(0, resynchronized);
+            return changes.remove(path);
+        }
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path path = root.resolve(name);
+        Files.createDirectories(path.getParent());
+        return Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}